@@ -0,0 +1,80 @@
+package com.example.demo.config.securityConfig;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * 从库复制延迟（毫秒）：按主库定时写入的心跳时间计算，主库空闲时也不会越积越大；
+     * 不是从库、WAL接收进程未在streaming（与主库断开后回放追平也会显示无延迟）或读不到心跳时返回NULL，该从库不参与路由
+     */
+    public static final String DEFAULT_LAG_QUERY = "select case when not pg_is_in_recovery() then null "
+            + "when not exists (select 1 from pg_stat_wal_receiver where status = 'streaming') then null "
+            + "else greatest(0, extract(epoch from now() - (select beat_time from replica_heartbeat where id = 1)) * 1000) end";
+
+    @Value("${datasource.replica.lag-query:" + DEFAULT_LAG_QUERY + "}")
+    private String lagQuery;
+
+    @Value("${datasource.replica.max-lag:5000}")
+    private long maxLag;
+
+    @Value("${datasource.replica.sticky-window:5000}")
+    private long stickyWindow;
+
+    @Value("${datasource.replica.heartbeat-sql:" + ReadWriteRoutingDataSource.DEFAULT_HEARTBEAT_SQL + "}")
+    private String heartbeatSql;
+
+    /**
+     * 主库沿用spring.datasource.*，从库配置在spring.datasource.replicas[n].*，用户名密码未配置时与主库相同；
+     * 没有配置从库时所有查询仍走主库
+     */
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties, Environment environment)
+            throws Exception {
+        DataSource primary = build(properties);
+        List<DataSource> replicas = new ArrayList<>();
+        List<DataSourceProperties> replicaProperties = Binder.get(environment)
+                .bind("spring.datasource.replicas", Bindable.listOf(DataSourceProperties.class))
+                .orElse(Collections.<DataSourceProperties>emptyList());
+        for (DataSourceProperties replica : replicaProperties) {
+            if (replica.getUsername() == null) {
+                replica.setUsername(properties.getUsername());
+                replica.setPassword(properties.getPassword());
+            }
+            if (replica.getDriverClassName() == null) {
+                replica.setDriverClassName(properties.getDriverClassName());
+            }
+            replica.setBeanClassLoader(getClass().getClassLoader());
+            replica.afterPropertiesSet();
+            replicas.add(build(replica));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, lagQuery, maxLag, stickyWindow, heartbeatSql);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    /*
+     * 与自动配置相同，连接池类型取spring.datasource.type
+     */
+    private static DataSource build(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().build();
+    }
+}
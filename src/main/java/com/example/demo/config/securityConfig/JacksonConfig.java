@@ -0,0 +1,39 @@
+package com.example.demo.config.securityConfig;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class JacksonConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> builderProvider;
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer filterCustomizer() {
+        // 带@JsonFilter的实体在没有指定过滤器时输出全部属性，只有稀疏字段集请求才会过滤
+        return builder -> builder.filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // CBOR和MessagePack与JSON共用同一套序列化配置，只换底层格式；追加在末尾，未指定Accept时仍返回JSON
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+        converters.add(new MappingJackson2CborHttpMessageConverter(
+                builderProvider.getObject().factory(new CBORFactory()).build()));
+        converters.add(new MessagePackHttpMessageConverter(
+                builderProvider.getObject().factory(new MessagePackFactory()).build()));
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.config.securityConfig;
+
+import com.alibaba.fastjson.JSON;
+import com.example.demo.service.MaintenanceService;
+import com.example.demo.utils.JSONResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.Resource;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+@Component
+public class MaintenanceFilter extends OncePerRequestFilter {
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // 维护期间只放行只读请求，查询可能读到恢复了一半的数据，但不会写入
+        String reason = maintenanceService.getReason();
+        String method = request.getMethod();
+        if (reason != null
+                && !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method)) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType("application/json;charset=utf-8");
+            PrintWriter out = response.getWriter();
+            out.write(JSON.toJSONString(JSONResult.error(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                    "系统维护中：" + reason)));
+            out.flush();
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
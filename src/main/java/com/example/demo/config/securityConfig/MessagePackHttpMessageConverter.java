@@ -0,0 +1,18 @@
+package com.example.demo.config.securityConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+/**
+ * MessagePack响应转换器，请求头Accept: application/x-msgpack时使用
+ */
+public class MessagePackHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    public static final MediaType APPLICATION_MSGPACK = new MediaType("application", "x-msgpack");
+    public static final MediaType APPLICATION_MSGPACK_STANDARD = new MediaType("application", "msgpack");
+
+    public MessagePackHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper, APPLICATION_MSGPACK, APPLICATION_MSGPACK_STANDARD);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.config.securityConfig;
+
+/**
+ * 当前线程的读写路由状态
+ * 线程内发生过写操作后，在粘滞窗口内的只读查询也走主库，保证读到自己刚写入的数据；
+ * 请求结束时由ReadWriteContextFilter清除
+ */
+public class ReadWriteContext {
+
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private ReadWriteContext() {
+    }
+
+    /**
+     * 记录一次写操作
+     */
+    public static void markWritten() {
+        LAST_WRITE.set(System.currentTimeMillis());
+    }
+
+    /**
+     * 是否需要粘在主库
+     *
+     * @param stickyWindow 写操作后粘滞的时长，毫秒
+     * @return 窗口内有过写操作时返回true
+     */
+    public static boolean isSticky(long stickyWindow) {
+        Long lastWrite = LAST_WRITE.get();
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - lastWrite > stickyWindow) {
+            LAST_WRITE.remove();
+            return false;
+        }
+        return true;
+    }
+
+    public static void clear() {
+        LAST_WRITE.remove();
+    }
+}
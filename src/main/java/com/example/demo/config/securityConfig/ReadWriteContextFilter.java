@@ -0,0 +1,25 @@
+package com.example.demo.config.securityConfig;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Component
+public class ReadWriteContextFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // 读己之写只在同一请求内保证，线程归还线程池前清掉
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteContext.clear();
+        }
+    }
+}
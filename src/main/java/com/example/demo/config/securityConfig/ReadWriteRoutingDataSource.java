@@ -0,0 +1,190 @@
+package com.example.demo.config.securityConfig;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离路由数据源
+ * 只读事务在健康的从库间轮询，其余一律走主库；从库延迟超过上限、检查失败或查不到延迟时摘除，全部不可用时回退主库。
+ * 主库上定时写心跳（见SQL/replica_heartbeat.sql），从库按读到的心跳时间计算延迟，与主库断开的从库心跳不再前进，随即被摘除。
+ * 当前线程刚写过数据时只读事务同样走主库（读己之写）。
+ * 只读标记在事务开始后才设置，必须套一层LazyConnectionDataSourceProxy，到真正执行SQL时再取连接
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica-";
+
+    public static final String DEFAULT_HEARTBEAT_SQL = "insert into replica_heartbeat (id, beat_time) values (1, now()) "
+            + "on conflict (id) do update set beat_time = excluded.beat_time";
+
+    private final Map<String, DataSource> replicas;
+    private final String lagQuery;
+    private final long maxLag;
+    private final long stickyWindow;
+    private final String heartbeatSql;
+    private final DataSource primary;
+    private volatile boolean heartbeatFailed = false;
+
+    /**
+     * 当前可用的从库
+     */
+    private volatile List<String> healthy = new ArrayList<>();
+    private final Map<String, Long> lags = new HashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicLong primaryCount = new AtomicLong();
+    private final AtomicLong replicaCount = new AtomicLong();
+    private final AtomicLong stickyCount = new AtomicLong();
+    private final AtomicLong fallbackCount = new AtomicLong();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicaList,
+                                      String lagQuery, long maxLag, long stickyWindow, String heartbeatSql) {
+        this.replicas = new LinkedHashMap<>();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaList.size(); i++) {
+            this.replicas.put(REPLICA + i, replicaList.get(i));
+            targets.put(REPLICA + i, replicaList.get(i));
+        }
+        this.lagQuery = lagQuery;
+        this.maxLag = maxLag;
+        this.stickyWindow = stickyWindow;
+        this.heartbeatSql = heartbeatSql;
+        this.primary = primary;
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryCount.incrementAndGet();
+            return PRIMARY;
+        }
+        if (ReadWriteContext.isSticky(stickyWindow)) {
+            stickyCount.incrementAndGet();
+            return PRIMARY;
+        }
+        List<String> candidates = this.healthy;
+        if (candidates.isEmpty()) {
+            fallbackCount.incrementAndGet();
+            return PRIMARY;
+        }
+        replicaCount.incrementAndGet();
+        return candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    /**
+     * 主库写心跳，从库按回放到的心跳时间计算延迟；写失败时从库延迟随之增大被摘除，读请求回退主库
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${datasource.replica.heartbeat-interval:1000}")
+    public void heartbeat() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(heartbeatSql);
+            if (heartbeatFailed) {
+                log.info("主库心跳恢复");
+                heartbeatFailed = false;
+            }
+        } catch (Exception e) {
+            if (!heartbeatFailed) {
+                log.warn("主库心跳写入失败，从库将被判为延迟：{}", e.getMessage());
+                heartbeatFailed = true;
+            }
+        }
+    }
+
+    /**
+     * 定时检查从库复制延迟，刷新可用从库列表
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${datasource.replica.check-interval:5000}")
+    public void checkReplicas() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        List<String> available = new ArrayList<>();
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            Long lag = lagOf(entry.getKey(), entry.getValue());
+            synchronized (lags) {
+                lags.put(entry.getKey(), lag);
+            }
+            if (lag != null && lag <= maxLag) {
+                available.add(entry.getKey());
+            }
+        }
+        if (!available.equals(this.healthy)) {
+            log.info("可用从库变更：{} -> {}", this.healthy, available);
+        }
+        this.healthy = available;
+    }
+
+    /**
+     * 路由统计
+     *
+     * @return 各从库延迟、可用从库、各路由计数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        synchronized (lags) {
+            statistics.put("lagMs", new HashMap<>(lags));
+        }
+        statistics.put("healthy", this.healthy);
+        statistics.put("maxLagMs", maxLag);
+        statistics.put("primaryCount", primaryCount.get());
+        statistics.put("replicaCount", replicaCount.get());
+        statistics.put("stickyCount", stickyCount.get());
+        statistics.put("fallbackCount", fallbackCount.get());
+        return statistics;
+    }
+
+    /**
+     * 关闭主库和从库连接池
+     */
+    public void close() {
+        for (Object target : getResolvedDataSources().values()) {
+            if (target instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) target).close();
+                } catch (Exception e) {
+                    log.warn("关闭数据源失败", e);
+                }
+            }
+        }
+    }
+
+    /*
+     * 查询复制延迟（毫秒），失败或结果为NULL时返回null，该从库不可用
+     */
+    private Long lagOf(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            long lag = Math.round(resultSet.getDouble(1));
+            return resultSet.wasNull() ? null : lag;
+        } catch (Exception e) {
+            log.warn("从库{}延迟检查失败：{}", name, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config.securityConfig;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * 定时任务线程池
+ * 默认的调度器只有一个线程，耗时长的任务（备份、软删除清理、分区维护）运行时会卡住心跳、延迟检查、计数落库和审计日志落盘；
+ * 长任务另外提交到各自的执行器，这里的线程只保证短周期任务互不等待
+ */
+@Slf4j
+@Configuration
+public class SchedulingConfig {
+
+    @Value("${scheduling.pool-size:8}")
+    private int poolSize;
+
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduled-");
+        scheduler.setRemoveOnCancelPolicy(true);
+        scheduler.setErrorHandler(t -> log.error("定时任务执行失败", t));
+        return scheduler;
+    }
+}
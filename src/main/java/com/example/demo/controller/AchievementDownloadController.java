@@ -3,6 +3,8 @@ package com.example.demo.controller;
 import com.example.demo.model.AchievementTable;
 import com.example.demo.model.DownloadRecords;
 import com.example.demo.service.AchievementTableService;
+import com.example.demo.service.AuditLogService;
+import com.example.demo.service.DownloadCountService;
 import com.example.demo.service.DownloadRecordsService;
 import com.example.demo.service.PermissionService;
 import com.example.demo.utils.JSONResult;
@@ -42,6 +44,12 @@ public class AchievementDownloadController {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private DownloadCountService downloadCountService;
+
+    @Autowired
+    private AuditLogService auditLogService;
+
     /**
      * 下载成果文件
      */
@@ -85,8 +93,8 @@ public class AchievementDownloadController {
             downloadRecordsService.insert(downloadRecord);
 
             // 更新下载计数
-            achievement.setAchievementDownloadCount(achievement.getAchievementDownloadCount() + 1);
-            achievementTableService.update(achievement);
+            downloadCountService.increment(achievementId);
+            auditLogService.record(AuditLogService.TYPE_DOWNLOAD, downloadRecord.getUserId(), "achievementId=" + achievementId);
 
             // 返回文件
             Resource resource = new FileSystemResource(file);
@@ -3,6 +3,7 @@ package com.example.demo.controller;
 import com.example.demo.model.AchievementTable;
 import com.example.demo.service.AchievementTableService;
 import com.example.demo.service.PermissionService;
+import com.example.demo.service.SimilarityService;
 import com.example.demo.utils.JSONResult;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,6 +32,9 @@ public class AchievementManageController {
     @Autowired
     private PermissionService permissionService;
 
+    @Autowired
+    private SimilarityService similarityService;
+
     /**
      * 获取成果列表（支持分页和筛选）
      */
@@ -198,14 +204,37 @@ public class AchievementManageController {
     }
 
     /**
-     * 获取推荐成果
+     * 获取推荐成果，传入成果ID时返回与该成果相似的成果
      */
     @GetMapping("/recommended")
     public ResponseEntity<JSONResult> getRecommendedAchievements(
             @RequestParam(defaultValue = "1") int pageNum,
-            @RequestParam(defaultValue = "10") int pageSize) {
+            @RequestParam(defaultValue = "10") int pageSize,
+            @RequestParam(required = false) Integer achievementId) {
         try {
-            List<AchievementTable> achievements = achievementTableService.queryRecommendedAchievements(pageNum, pageSize);
+            List<AchievementTable> achievements;
+            if (achievementId != null) {
+                achievements = new ArrayList<>();
+                long offset = (long) (Math.max(pageNum, 1) - 1) * Math.max(pageSize, 0);
+                int end = (int) Math.min(Integer.MAX_VALUE, offset + Math.max(pageSize, 0));
+                List<Integer> similarIds = similarityService.similar(achievementId, end);
+                if (offset < similarIds.size()) {
+                    // 本页的成果一次IN查询取回，再按相似度顺序排列
+                    List<Integer> pageIds = similarIds.subList((int) offset, similarIds.size());
+                    Map<Integer, AchievementTable> byId = new HashMap<>();
+                    for (AchievementTable achievement : achievementTableService.queryByIds(pageIds)) {
+                        byId.put(achievement.getAchievementId(), achievement);
+                    }
+                    for (Integer similarId : pageIds) {
+                        AchievementTable achievement = byId.get(similarId);
+                        if (achievement != null) {
+                            achievements.add(achievement);
+                        }
+                    }
+                }
+            } else {
+                achievements = achievementTableService.queryRecommendedAchievements(pageNum, pageSize);
+            }
             String msg = "获取推荐成果成功";
             JSONResult jsonResult = new JSONResult("success", HttpStatus.OK.value(), msg, achievements);
             return ResponseEntity.ok(jsonResult);
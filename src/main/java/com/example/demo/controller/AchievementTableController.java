@@ -2,18 +2,30 @@ package com.example.demo.controller;
 
 import com.example.demo.model.AchievementTable;
 import com.example.demo.model.SearchBody;
+import com.example.demo.model.Suggestion;
+import com.example.demo.service.AchievementCacheService;
 import com.example.demo.service.AchievementTableService;
+import com.example.demo.service.CacheInvalidationBus;
+import com.example.demo.service.NdjsonStreamService;
+import com.example.demo.service.SearchAnalyticsService;
+import com.example.demo.service.SearchCacheService;
+import com.example.demo.service.SearchCountService;
+import com.example.demo.service.SuggestionService;
+import com.example.demo.utils.AchievementFields;
 import com.example.demo.utils.JSONResult;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import lombok.extern.slf4j.Slf4j;
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
+import java.util.Map;
 
 /**
  * (AchievementTable)表控制层
@@ -30,6 +42,20 @@ public class AchievementTableController {
      */
     @Resource
     private AchievementTableService achievementTableService;
+    @Resource
+    private NdjsonStreamService ndjsonStreamService;
+    @Resource
+    private SearchCacheService searchCacheService;
+    @Resource
+    private AchievementCacheService achievementCacheService;
+    @Resource
+    private CacheInvalidationBus cacheInvalidationBus;
+    @Resource
+    private SearchCountService searchCountService;
+    @Resource
+    private SearchAnalyticsService searchAnalyticsService;
+    @Resource
+    private SuggestionService suggestionService;
 
     /**
      * 通过主键查询单条数据
@@ -108,6 +134,16 @@ public class AchievementTableController {
         return ResponseEntity.ok(jsonResult);
     }
 
+    /**
+     *
+     * 流式查询所有行数据，每行一个JSON对象（NDJSON），内存占用与表大小无关
+     * @param response 响应
+     */
+    @GetMapping(value = "/queryAllStream", produces = NdjsonStreamService.CONTENT_TYPE)
+    public void queryAllStream(HttpServletResponse response) {
+        this.ndjsonStreamService.write(response, () -> this.achievementTableService.streamAll());
+    }
+
     /**
      * 查询数据条数
      *
@@ -128,13 +164,14 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryAllWithPagination")
-    public ResponseEntity<JSONResult> queryAllWithPagination(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                             @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryAllWithPagination(pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryAllWithPagination(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                      @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                      @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryAllWithPagination(pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -143,13 +180,14 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryAllWithPatent")
-    public ResponseEntity<JSONResult> queryAllWithPatent(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                         @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryAllWithPatent(pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryAllWithPatent(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                  @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                  @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryAllWithPatent(pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -158,13 +196,14 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryAllWithPaper")
-    public ResponseEntity<JSONResult> queryAllWithPaper(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                        @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryAllWithPaper(pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryAllWithPaper(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                 @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                 @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryAllWithPaper(pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -173,13 +212,14 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryAllWithOthers")
-    public ResponseEntity<JSONResult> queryAllWithOthers(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                          @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryAllWithOthers(pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryAllWithOthers(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                  @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                  @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryAllWithOthers(pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -188,13 +228,14 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryAllWithPaginationForApproval")
-    public ResponseEntity<JSONResult> queryAllWithPaginationForApproval(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                             @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryAllWithPaginationForApproval(pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryAllWithPaginationForApproval(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                                 @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                                 @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryAllWithPaginationForApproval(pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "查询待审核数据成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -203,14 +244,15 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryByLikeApproval")
-    public ResponseEntity<JSONResult> queryByLikeApproval(@RequestParam String achievementName,
-                                                          @RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                          @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryByLikeApproval(achievementName, pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryByLikeApproval(@RequestParam String achievementName,
+                                                                   @RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                                   @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                                   @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryByLikeApproval(achievementName, pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "模糊搜索待审核数据成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
     }
 
     /**
@@ -219,14 +261,15 @@ public class AchievementTableController {
      * @return 所有数据
      */
     @GetMapping("/queryByLike")
-    public ResponseEntity<JSONResult> queryByLike(@RequestParam String achievementName,
-                                                    @RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                    @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<AchievementTable> res = this.achievementTableService.queryByLike(achievementName, pageNum, pageSize);
+    public ResponseEntity<MappingJacksonValue> queryByLike(@RequestParam String achievementName,
+                                                           @RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
+                                                           @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                           @RequestParam(value = "fields", required = false) String fields) {
+        List<AchievementTable> res = this.achievementTableService.queryByLike(achievementName, pageNum, pageSize, AchievementFields.columnsOf(fields));
         String msg = "模糊搜索数据成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
-        return ResponseEntity.ok(jsonResult);
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
         }
 
     //恢复单条删除数据
@@ -258,8 +301,9 @@ public class AchievementTableController {
      */
     @SuppressWarnings("unused")
     @PostMapping("/fuzzyQuery")
-    public ResponseEntity<JSONResult> fuzzyQuery(
-            @RequestBody SearchBody searchBody
+    public ResponseEntity<MappingJacksonValue> fuzzyQuery(
+            @RequestBody SearchBody searchBody,
+            @RequestParam(value = "fields", required = false) String fields
     ){
         log.info("fuzzyQuery");
 //        log.info("keywords:{}", searchBody.getKeywords());
@@ -281,12 +325,12 @@ public class AchievementTableController {
         jsonResult.setResultMsg("关键词搜索");
         if (searchBody != null) {
             // 调用服务层的多关键词模糊查询
-            result = achievementTableService.fuzzyQuery(searchBody, pageNum, pageSize);
+            long start = System.nanoTime();
+            result = achievementTableService.fuzzyQuery(searchBody, pageNum, pageSize, AchievementFields.columnsOf(fields));
+            searchAnalyticsService.record(searchBody, result == null ? 0 : result.size(), System.nanoTime() - start);
             if (result != null && !result.isEmpty()) {
-                for (AchievementTable achievementTable : result) {
-                    achievementTable.setSearchCount(achievementTable.getSearchCount() + 1);
-                    achievementTableService.update(achievementTable);
-                }
+                // 搜索次数在内存中累加，定时批量写库
+                searchCountService.increase(result);
                 jsonResult.setType("success");
                 jsonResult.setData(result);
             } else {
@@ -298,6 +342,65 @@ public class AchievementTableController {
             jsonResult.setResultMsg("没有提供有效的关键词");
         }
 
+        return ResponseEntity.ok(AchievementFields.filter(jsonResult, fields));
+    }
+
+    /**
+     * 搜索框联想，成果名、单位名、用户名前缀匹配，按热度排序
+     *
+     * @param prefix 输入前缀
+     * @param limit 返回条数
+     * @return 联想词列表
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<JSONResult> suggest(@RequestParam String prefix,
+                                              @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<Suggestion> res = this.suggestionService.suggest(prefix, limit);
+        String msg = "查询联想词成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 搜索缓存命中统计
+     *
+     * @return 命中数、未命中数、命中率等
+     */
+    @GetMapping("/searchCacheStatistics")
+    public ResponseEntity<JSONResult> searchCacheStatistics() {
+        Map<String, Object> res = this.searchCacheService.getStatistics();
+        String msg = "查询搜索缓存统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 成果实体缓存命中统计
+     *
+     * @return 一级、二级命中数、未命中数、命中率等
+     */
+    @GetMapping("/entityCacheStatistics")
+    public ResponseEntity<JSONResult> entityCacheStatistics() {
+        Map<String, Object> res = this.achievementCacheService.getStatistics();
+        String msg = "查询成果缓存统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 跨节点缓存失效总线统计
+     *
+     * @return 发布数、接收数、延迟分位等
+     */
+    @GetMapping("/cacheBusStatistics")
+    public ResponseEntity<JSONResult> cacheBusStatistics() {
+        Map<String, Object> res = this.cacheInvalidationBus.getStatistics();
+        String msg = "查询缓存失效总线统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
 
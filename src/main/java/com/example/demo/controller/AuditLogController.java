@@ -0,0 +1,76 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AuditLogService;
+import com.example.demo.utils.JSONResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 审计日志查询
+ *
+ * 事件类型：1操作日志、2登录、3登出、4下载、5审批
+ * 审计日志按节点存储，两个接口都只返回处理本次请求的节点上的数据，见AuditLogService
+ */
+@Slf4j
+@RestController
+@RequestMapping("auditLog")
+public class AuditLogController {
+    @Resource
+    private AuditLogService auditLogService;
+
+    /**
+     * 按时间范围查询本节点的审计事件，按写入顺序返回
+     *
+     * @param startTime 起始时间（含），yyyy-MM-dd HH:mm:ss
+     * @param endTime 结束时间（含），yyyy-MM-dd HH:mm:ss
+     * @param userId 用户ID
+     * @param type 事件类型
+     * @param limit 最多返回条数
+     * @return 事件列表
+     */
+    @GetMapping("/query")
+    public ResponseEntity<JSONResult> query(@RequestParam(value = "startTime", required = false) String startTime,
+                                            @RequestParam(value = "endTime", required = false) String endTime,
+                                            @RequestParam(value = "userId", required = false) Integer userId,
+                                            @RequestParam(value = "type", required = false) Integer type,
+                                            @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        List<Map<String, Object>> res;
+        try {
+            res = this.auditLogService.query(startTime, endTime, userId, type, limit);
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.ok(JSONResult.error(400, "时间格式应为yyyy-MM-dd HH:mm:ss"));
+        } catch (IOException e) {
+            log.error("审计日志读取失败", e);
+            return ResponseEntity.ok(JSONResult.error(500, "审计日志读取失败"));
+        }
+        String msg = "查询成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 审计日志存储统计
+     *
+     * @return 节点、段数、字节数、偏移量
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<JSONResult> statistics() {
+        Map<String, Object> res = this.auditLogService.getStatistics();
+        String msg = "查询成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+}
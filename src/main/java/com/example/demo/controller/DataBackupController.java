@@ -2,28 +2,98 @@ package com.example.demo.controller;
 
 import com.example.demo.service.DataBackupService;
 import com.example.demo.utils.JSONResult;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
 @RestController
 public class DataBackupController {
 
     @Autowired
     private DataBackupService dataBackupService;
 
+    // 后台开始一次备份，type=incremental时为增量备份，返回备份ID，进度见/DataBackup/progress
     @GetMapping("/DataBackup")
+    public ResponseEntity<JSONResult> triggerBackup(@RequestParam(value = "type", required = false, defaultValue = "full") String type) {
+        String res = dataBackupService.startBackup("incremental".equals(type));
+        if (res == null) {
+            return ResponseEntity.ok(JSONResult.error(409, "已有备份或恢复正在运行"));
+        }
+        String msg = "Backup triggered manually!";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg, res);
+        return ResponseEntity.ok(jsonResult);
+    }
 
-    public ResponseEntity<JSONResult> triggerBackup() {
-        dataBackupService.backupDatabase();
-        //return "Backup triggered manually!";
+    // 当前或最近一次备份的进度：状态、各表已导出行数和估计行数
+    @GetMapping("/DataBackup/progress")
+    public ResponseEntity<JSONResult> progress() {
+        Map<String, Object> res = dataBackupService.getProgress();
+        String msg = res == null ? "尚未执行过备份" : "查询备份进度成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg, res);
+        return ResponseEntity.ok(jsonResult);
+    }
 
-        //AchievementTable res = this.achievementTableService.queryById(id);
-        String msg = "Backup triggered manually!";
+    // 已完成的备份列表
+    @GetMapping("/DataBackup/list")
+    public ResponseEntity<JSONResult> list() throws IOException {
+        List<Map<String, Object>> res = dataBackupService.listBackups();
+        String msg = "查询备份列表成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg, res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 重新校验一个备份的行数和校验和
+    @PostMapping("/DataBackup/verify/{id}")
+    public ResponseEntity<JSONResult> verify(@PathVariable("id") String id) {
+        List<String> res;
+        try {
+            res = dataBackupService.verify(id);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(JSONResult.error(404, e.getMessage()));
+        } catch (IOException e) {
+            log.error("备份校验失败 {}", id, e);
+            return ResponseEntity.ok(JSONResult.error(500, "备份清单读取失败"));
+        }
+        String msg = res.isEmpty() ? "备份校验通过" : "备份校验失败";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult(res.isEmpty() ? "success" : "fail",statusCode,msg, res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 后台按备份链恢复到指定备份，需开启backup.restore.enabled，进度见/DataBackup/progress
+    @PostMapping("/DataBackup/restore/{id}")
+    public ResponseEntity<JSONResult> restore(@PathVariable("id") String id) {
+        boolean res;
+        try {
+            res = dataBackupService.startRestore(id);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.ok(JSONResult.error(403, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.ok(JSONResult.error(404, e.getMessage()));
+        } catch (IOException e) {
+            log.error("读取备份链失败 {}", id, e);
+            return ResponseEntity.ok(JSONResult.error(500, "备份清单读取失败"));
+        }
+        if (!res) {
+            return ResponseEntity.ok(JSONResult.error(409, "已有备份或恢复正在运行"));
+        }
+        String msg = "Restore triggered manually!";
         int statusCode = HttpStatus.OK.value();
-        JSONResult jsonResult = new JSONResult("success",statusCode,msg, null);
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg, res);
         return ResponseEntity.ok(jsonResult);
     }
 }
@@ -1,5 +1,9 @@
 package com.example.demo.controller;
+import com.example.demo.config.securityConfig.ReadWriteRoutingDataSource;
 import com.example.demo.service.DataStatisticService;
+import com.example.demo.service.PartitionMaintenanceService;
+import com.example.demo.service.SoftDeletePurgeService;
+import com.example.demo.service.StatementMetricsService;
 import com.example.demo.model.DataStatistic;
 import com.example.demo.service.UserRolePermissionsService;
 import lombok.extern.slf4j.Slf4j;
@@ -11,6 +15,8 @@ import com.example.demo.utils.JSONResult;
 import org.springframework.http.ResponseEntity;
 
 import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -20,6 +26,14 @@ public class DataStatisticController {
     private DataStatisticService dataStatisticService;
     @Resource
     private UserRolePermissionsService userRolePermissionsService;
+    @Resource
+    private ReadWriteRoutingDataSource readWriteRoutingDataSource;
+    @Resource
+    private StatementMetricsService statementMetricsService;
+    @Resource
+    private PartitionMaintenanceService partitionMaintenanceService;
+    @Resource
+    private SoftDeletePurgeService softDeletePurgeService;
 
 
     // 用户登录接口
@@ -50,6 +64,79 @@ public class DataStatisticController {
         return ResponseEntity.ok(JSONResult.error(400, "当前系统无人在线！"));
     }
 
+    // 读写分离路由统计：从库延迟、可用从库、主从路由次数
+    @GetMapping("/dataSourceRouting")
+    public ResponseEntity<JSONResult> dataSourceRouting(){
+        Map<String, Object> res = readWriteRoutingDataSource.getStatistics();
+        String msg = "查询数据源路由统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // SQL语句级统计，sort可选total（累计耗时）、p99、count、slow
+    @GetMapping("/statementMetrics")
+    public ResponseEntity<JSONResult> statementMetrics(@RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                       @RequestParam(value = "sort", defaultValue = "total") String sort){
+        List<Map<String, Object>> res = statementMetricsService.getStatistics(limit, sort);
+        String msg = "查询SQL统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 清空SQL语句级统计，调整索引后重新观察
+    @PostMapping("/statementMetrics/reset")
+    public ResponseEntity<JSONResult> resetStatementMetrics(){
+        statementMetricsService.reset();
+        String msg = "SQL统计已清空";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,null);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 事件表分区状态：各月分区估计行数、已归档文件、上一次维护结果
+    @GetMapping("/partitions")
+    public ResponseEntity<JSONResult> partitions(){
+        Map<String, Object> res = partitionMaintenanceService.getStatistics();
+        String msg = "查询分区状态成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 立即执行一次分区维护：预建分区、归档过期分区
+    @PostMapping("/partitions/maintain")
+    public ResponseEntity<JSONResult> maintainPartitions(){
+        Map<String, Object> res = partitionMaintenanceService.maintain();
+        String msg = "分区维护已执行";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 软删除清理状态：各表软删除和已过保留期的行数、归档表大小、上一次清理结果
+    @GetMapping("/purge")
+    public ResponseEntity<JSONResult> purgeStatistics(){
+        Map<String, Object> res = softDeletePurgeService.getStatistics();
+        String msg = "查询清理状态成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    // 后台开始一次软删除清理：过期的软删除行移入归档表，各表回收的空间见GET /purge的lastRun
+    @PostMapping("/purge")
+    public ResponseEntity<JSONResult> purge(){
+        if (!softDeletePurgeService.start()) {
+            return ResponseEntity.ok(JSONResult.error(409, "软删除清理正在运行"));
+        }
+        String msg = "软删除清理已开始";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,null);
+        return ResponseEntity.ok(jsonResult);
+    }
+
     // 根据用户名获取用户的登录时间
     @GetMapping("/getLogInTimeByUsername")
     public ResponseEntity<JSONResult> getLogInTimeByUsername(String userName){
@@ -2,12 +2,14 @@ package com.example.demo.controller;
 
 import com.example.demo.model.DownloadRecords;
 import com.example.demo.service.DownloadRecordsService;
+import com.example.demo.service.NdjsonStreamService;
 import com.example.demo.utils.JSONResult;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 
@@ -25,6 +27,8 @@ public class DownloadRecordsController {
      */
     @Resource
     private DownloadRecordsService downloadRecordsService;
+    @Resource
+    private NdjsonStreamService ndjsonStreamService;
 
     /**
      * 通过主键查询单条数据
@@ -88,29 +92,50 @@ public class DownloadRecordsController {
 
     /**
      *
-     * 查询所有行数据
+     * 查询所有行数据，可按下载时间范围过滤，只扫描范围内月份的分区
+     * @param startTime 下载时间下界（含），如2024-06-01
+     * @param endTime 下载时间上界（不含）
      * @return 所有行数据
      */
     @GetMapping("/queryAll")
-    public ResponseEntity<JSONResult> queryAll() {
-        List<DownloadRecords> res = this.downloadRecordsService.queryAll();
+    public ResponseEntity<JSONResult> queryAll(@RequestParam(value = "startTime", required = false) String startTime,
+                                               @RequestParam(value = "endTime", required = false) String endTime) {
+        List<DownloadRecords> res = this.downloadRecordsService.queryAll(startTime, endTime);
         String msg = "查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
+
+    /**
+     *
+     * 流式查询所有行数据，每行一个JSON对象（NDJSON），内存占用与表大小无关
+     * @param startTime 下载时间下界（含）
+     * @param endTime 下载时间上界（不含）
+     * @param response 响应
+     */
+    @GetMapping(value = "/queryAllStream", produces = NdjsonStreamService.CONTENT_TYPE)
+    public void queryAllStream(@RequestParam(value = "startTime", required = false) String startTime,
+                               @RequestParam(value = "endTime", required = false) String endTime,
+                               HttpServletResponse response) {
+        this.ndjsonStreamService.write(response, () -> this.downloadRecordsService.streamAll(startTime, endTime));
+    }
     
     /**
      *
      * 分页查询所有行数据
      * @param pageNum 页数
      * @param pageSize 页大小
+     * @param startTime 下载时间下界（含）
+     * @param endTime 下载时间上界（不含）
      * @return 所有行数据
      */
     @GetMapping("/queryAllWithPagination")
     public ResponseEntity<JSONResult> queryAllWithPagination(@RequestParam(value = "pageNum", defaultValue = "1") int pageNum,
-                                                             @RequestParam(value = "pageSize", defaultValue = "10") int pageSize) {
-        List<DownloadRecords> res = this.downloadRecordsService.queryAllWithPagination(pageNum, pageSize);
+                                                             @RequestParam(value = "pageSize", defaultValue = "10") int pageSize,
+                                                             @RequestParam(value = "startTime", required = false) String startTime,
+                                                             @RequestParam(value = "endTime", required = false) String endTime) {
+        List<DownloadRecords> res = this.downloadRecordsService.queryAllWithPagination(pageNum, pageSize, startTime, endTime);
         String msg = "分页查询所有行成功";
         int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
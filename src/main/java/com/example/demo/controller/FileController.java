@@ -22,7 +22,9 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -42,6 +44,10 @@ public class FileController {
     private VersionHistoryService versionHistoryService;
     @Resource
     private ApprovalRecordsService approvalRecordsService;
+    @Resource
+    private AchievementArchiveService achievementArchiveService;
+    @Resource
+    private AchievementDownloadService achievementDownloadService;
 
     private String templatePath = "C:/data/template/";
     private String achievementPath = "C:/data/achievement/";
@@ -371,10 +377,17 @@ public class FileController {
                 jsonResult = new JSONResult("fail", statusCode, "操作失败", "文件归档失败");
                 return jsonResult;
             }
-            Integer res_vh = this.versionHistoryService.insert(versionHistory);
-            Integer res_fr = this.fileRecordService.insert(fileRecord);
-            Integer res_ar = this.approvalRecordsService.update(approvalRecord);
-            Integer res_at = this.achievementTableService.update(achievement);
+            // 各表在一个事务里写入，缓存、索引和全文抽取由发件箱在提交后处理；写库失败时把文件移回审核区
+            try {
+                this.achievementArchiveService.archive(approvalRecord, achievement, versionHistory, fileRecord, endFile);
+            } catch (RuntimeException e) {
+                log.error("成果{}归档写库失败", achievementId, e);
+                if (!endFile.renameTo(startFile)) {
+                    log.error("归档文件未能移回审核区：{}", endFile.getPath());
+                }
+                jsonResult = new JSONResult("fail", statusCode, "操作失败", "成果归档失败");
+                return jsonResult;
+            }
             jsonResult = new JSONResult("success", statusCode, "操作成功", "成果上传成功");
             return jsonResult;
 
@@ -442,11 +455,22 @@ public class FileController {
         LocalDateTime now = LocalDateTime.now();
         DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         List<String> fileNames = new ArrayList<>();
+        if (achievementIds == null || achievementIds.isEmpty()) {
+            statusCode = HttpStatus.NOT_FOUND.value();
+            jsonResult = new JSONResult("fail", statusCode, "表单提交失败", "未找到成果数据");
+            return jsonResult;
+        }
+
+        // 一次查出全部成果，避免逐个queryById
+        Map<Integer, AchievementTable> achievements = new HashMap<>();
+        for (AchievementTable achievement : this.achievementTableService.queryByIds(achievementIds)) {
+            achievements.put(achievement.getAchievementId(), achievement);
+        }
 
         String fileName;
         for(Integer achievementId : achievementIds){
 
-            AchievementTable res = this.achievementTableService.queryById(achievementId);
+            AchievementTable res = achievements.get(achievementId);
 
             if (res == null) {
                 statusCode = HttpStatus.NOT_FOUND.value();
@@ -462,43 +486,16 @@ public class FileController {
                 jsonResult = new JSONResult("fail",statusCode,"表单提交失败",res.getAchievementName()+"文件不存在");
                 return jsonResult;
             }
-        }
-        for(Integer achievementId : achievementIds){
-            DownloadRecords downloadRecords = new DownloadRecords();
-            AchievementTable res = this.achievementTableService.queryById(achievementId);
-
-            if (res == null) {
-                statusCode = HttpStatus.NOT_FOUND.value();
-                jsonResult = new JSONResult("fail", statusCode, "表单提交失败", "未找到成果数据");
-                return jsonResult;
-            }
-
-            downloadRecords.setDownloadTime(now.format(formatter2));
-            downloadRecords.setUserId(userId);
-            fileName = res.getAchievementName()+res.getAchievementVersion()+".zip";
-
             fileNames.add(fileName);
+        }
 
-            downloadRecords.setAchievementId(achievementId);
-
-
-            Integer res_insert = this.downloadRecordsService.insert(downloadRecords);//
-
-            if(res_insert == 0){
-                statusCode = HttpStatus.OK.value();
-                jsonResult = new JSONResult("fail",statusCode,"表单提交失败","下载记录表插入失败");
-                return jsonResult;
-            }
-
-            res.setAchievementDownloadCount(res.getAchievementDownloadCount()+1);
-
-            Integer res_edit = this.achievementTableService.update(res);
-
-            if(res_edit == 0){
-                statusCode = HttpStatus.OK.value();
-                jsonResult = new JSONResult("fail",statusCode,"表单提交失败","下载统计次数修改失败");
-                return jsonResult;
-            }
+        try {
+            this.achievementDownloadService.recordDownloads(achievementIds, userId, now.format(formatter2));
+        } catch (Exception e) {
+            log.error("下载表单登记失败", e);
+            statusCode = HttpStatus.OK.value();
+            jsonResult = new JSONResult("fail",statusCode,"表单提交失败",e.getMessage());
+            return jsonResult;
         }
 
         statusCode = HttpStatus.OK.value();
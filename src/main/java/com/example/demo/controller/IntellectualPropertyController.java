@@ -2,6 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.model.IntellectualProperty;
 import com.example.demo.service.IntellectualPropertyService;
+import com.example.demo.service.NdjsonStreamService;
 import com.example.demo.utils.JSONResult;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.data.domain.Page;
@@ -11,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import lombok.extern.slf4j.Slf4j;
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 /**
@@ -27,6 +29,8 @@ public class IntellectualPropertyController {
      */
     @Resource
     private IntellectualPropertyService intellectualPropertyService;
+    @Resource
+    private NdjsonStreamService ndjsonStreamService;
 
     /**
      * 通过主键查询单条数据
@@ -101,6 +105,16 @@ public class IntellectualPropertyController {
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
+
+    /**
+     *
+     * 流式查询所有行数据，每行一个JSON对象（NDJSON），内存占用与表大小无关
+     * @param response 响应
+     */
+    @GetMapping(value = "/queryAllStream", produces = NdjsonStreamService.CONTENT_TYPE)
+    public void queryAllStream(HttpServletResponse response) {
+        this.ndjsonStreamService.write(response, () -> this.intellectualPropertyService.streamAll());
+    }
     
     /**
      *
@@ -2,6 +2,7 @@ package com.example.demo.controller;
 
 import com.example.demo.model.LogRecords;
 import com.example.demo.service.LogRecordsService;
+import com.example.demo.service.LogWriteBehindService;
 import com.example.demo.utils.JSONResult;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.data.domain.Page;
@@ -11,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import lombok.extern.slf4j.Slf4j;
 import javax.annotation.Resource;
+import java.util.Map;
 
 /**
  * (LogRecords)表控制层
@@ -27,6 +29,8 @@ public class LogRecordsController {
      */
     @Resource
     private LogRecordsService logRecordsService;
+    @Resource
+    private LogWriteBehindService logWriteBehindService;
 
     /**
      * 通过主键查询单条数据
@@ -45,19 +49,33 @@ public class LogRecordsController {
     }
 
     /**
-     * 新增数据
+     * 新增数据，异步批量写库，返回时日志已入队
      *
      * @param logRecords 实体
      * @return 新增结果
      */
     @PostMapping("/add")
     public ResponseEntity<JSONResult> add(@RequestBody LogRecords logRecords) {
-        log.info("add LogRecords");
-        log.info("logRecords: {}", logRecords.getUserId());
-        log.info("logRecords: "+logRecords.getLogIntro());
-        Integer res = this.logRecordsService.insert(logRecords);
+        log.debug("add LogRecords userId={}", logRecords.getUserId());
+        if (!this.logWriteBehindService.append(logRecords)) {
+            return ResponseEntity.ok(JSONResult.error(503, "日志队列已满，本条日志未记录"));
+        }
         String msg = "数据插入成功";
         int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,1);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 日志异步写入统计
+     *
+     * @return 入队、写入、丢弃条数和批次耗时
+     */
+    @GetMapping("/writeBehindStatistics")
+    public ResponseEntity<JSONResult> writeBehindStatistics() {
+        Map<String, Object> res = this.logWriteBehindService.getStatistics();
+        String msg = "查询成功";
+        int statusCode = HttpStatus.OK.value();
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
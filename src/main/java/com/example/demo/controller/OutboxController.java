@@ -0,0 +1,53 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.OutboxService;
+import com.example.demo.utils.JSONResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+/**
+ * 事务性发件箱运维
+ */
+@Slf4j
+@RestController
+@RequestMapping("outbox")
+public class OutboxController {
+    @Resource
+    private OutboxService outboxService;
+
+    /**
+     * 分发统计
+     *
+     * @return 写入、处理、失败事件数，批次耗时，待处理和已放弃的事件数
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<JSONResult> statistics() {
+        Map<String, Object> res = this.outboxService.getStatistics();
+        String msg = "查询成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+
+    /**
+     * 失败次数已达上限的事件重新投递
+     *
+     * @return 重新投递的事件数
+     */
+    @PostMapping("/retry")
+    public ResponseEntity<JSONResult> retry() {
+        Integer res = this.outboxService.retryDead();
+        String msg = "已重新投递";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
+}
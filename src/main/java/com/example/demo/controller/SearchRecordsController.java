@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.model.SearchRecords;
+import com.example.demo.service.SearchAnalyticsService;
 import com.example.demo.service.SearchRecordsService;
 import com.example.demo.utils.JSONResult;
 import org.springframework.http.HttpStatus;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -25,6 +27,8 @@ public class SearchRecordsController {
      */
     @Resource
     private SearchRecordsService searchRecordsService;
+    @Resource
+    private SearchAnalyticsService searchAnalyticsService;
 
     /**
      * 通过主键查询单条数据
@@ -116,6 +120,18 @@ public class SearchRecordsController {
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
-    
-    
+
+    /**
+     * 搜索分析统计：热门查询、无结果查询、耗时分位
+     * @param limit 热门查询和无结果查询的返回条数
+     * @return 统计数据
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<JSONResult> analytics(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        Map<String, Object> res = this.searchAnalyticsService.getStatistics(limit);
+        String msg = "查询搜索分析统计成功";
+        int statusCode = HttpStatus.OK.value();
+        JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
+        return ResponseEntity.ok(jsonResult);
+    }
 }
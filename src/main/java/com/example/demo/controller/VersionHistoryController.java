@@ -2,12 +2,14 @@ package com.example.demo.controller;
 
 import com.example.demo.model.VersionHistory;
 import com.example.demo.service.VersionHistoryService;
+import com.example.demo.service.NdjsonStreamService;
 import com.example.demo.utils.JSONResult;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 /**
@@ -24,6 +26,8 @@ public class VersionHistoryController {
      */
     @Resource
     private VersionHistoryService versionHistoryService;
+    @Resource
+    private NdjsonStreamService ndjsonStreamService;
 
     /**
      * 通过主键查询单条数据
@@ -98,6 +102,16 @@ public class VersionHistoryController {
         JSONResult jsonResult = new JSONResult("success",statusCode,msg,res);
         return ResponseEntity.ok(jsonResult);
     }
+
+    /**
+     *
+     * 流式查询所有行数据，每行一个JSON对象（NDJSON），内存占用与表大小无关
+     * @param response 响应
+     */
+    @GetMapping(value = "/queryAllStream", produces = NdjsonStreamService.CONTENT_TYPE)
+    public void queryAllStream(HttpServletResponse response) {
+        this.ndjsonStreamService.write(response, () -> this.versionHistoryService.streamAll());
+    }
     
     /**
      *
@@ -0,0 +1,34 @@
+package com.example.demo.mapper;
+
+import com.example.demo.model.AchievementContent;
+
+/**
+ * (AchievementContent)表数据库访问层
+ */
+public interface AchievementContentMapper {
+
+    /**
+     * 通过成果ID查询全文内容
+     *
+     * @param achievementId 成果ID
+     * @return 实例对象
+     */
+    AchievementContent queryById(Integer achievementId);
+
+    /**
+     * 新增数据
+     *
+     * @param achievementContent 实例对象
+     * @return 影响行数
+     */
+    Integer insert(AchievementContent achievementContent);
+
+    /**
+     * 通过成果ID删除数据
+     *
+     * @param achievementId 成果ID
+     * @return 影响行数
+     */
+    Integer deleteById(Integer achievementId);
+
+}
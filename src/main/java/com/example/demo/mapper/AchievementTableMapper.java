@@ -3,9 +3,11 @@ package com.example.demo.mapper;
 import com.example.demo.model.AchievementTable;
 import com.example.demo.model.SearchBody;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.annotations.Mapper;
 import org.springframework.data.domain.Pageable;
 import java.util.List;
+import java.util.Map;
 
 /**
  * (AchievementTable)表数据库访问层
@@ -23,6 +25,14 @@ public interface AchievementTableMapper {
      */
     AchievementTable queryById(Integer achievementId);
 
+    /**
+     * 通过ID批量查询数据
+     *
+     * @param achievementIds 主键列表
+     * @return 对象列表，不存在或已删除的ID不返回
+     */
+    List<AchievementTable> queryByIds(@Param("achievementIds") List<Integer> achievementIds);
+
     /**
      * 新增数据
      *
@@ -55,70 +65,104 @@ public interface AchievementTableMapper {
      */
     List<AchievementTable> queryAll();
 
+    /**
+     * 以游标逐行查询所有行数据，需在事务内读完
+     *
+     * @return 游标
+     */
+    Cursor<AchievementTable> streamAll();
+
     Integer countAchievements();
     /**
      * 通过实体作为筛选条件查询
      *
      * @param offset 查询起始位置
      * @param limit 查询条数
+     * @param columns 查询列，null表示默认列
      * @return 对象列表
      */
-    List<AchievementTable> queryAllWithPagination(@Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryAllWithPagination(@Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 通过专利作为筛选条件查询
      *
      * @param offset 查询起始位置
      * @param limit 查询条数
+     * @param columns 查询列，null表示默认列
      * @return 对象列表
      */
-    List<AchievementTable> queryAllWithPatent(@Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryAllWithPatent(@Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 通过论文作为筛选条件查询
      *
      * @param offset 查询起始位置
      * @param limit 查询条数
+     * @param columns 查询列，null表示默认列
      * @return 对象列表
      */
-    List<AchievementTable> queryAllWithPaper(@Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryAllWithPaper(@Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 通过其他作为筛选条件查询
      *
      * @param offset 查询起始位置
      * @param limit 查询条数
+     * @param columns 查询列，null表示默认列
      * @return 对象列表
      */
-    List<AchievementTable> queryAllWithOthers(@Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryAllWithOthers(@Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 通过审批记录表中的待审批作为筛选条件查询
      *
      * @param offset 查询起始位置
      * @param limit 查询条数
+     * @param columns 查询列，null表示默认列
      * @return 对象列表
      */
-    List<AchievementTable> queryAllWithPaginationForApproval(@Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryAllWithPaginationForApproval(@Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 分页模糊查询待审核数据
      *
      * @return 对象列表
      */
-    List<AchievementTable> queryByLikeApproval(@Param("achievementName") String achievementName, @Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryByLikeApproval(@Param("achievementName") String achievementName, @Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     /**
      * 分页模糊查询所有成果数据
      *
      * @return 对象列表
      */
-    List<AchievementTable> queryByLike(@Param("achievementName") String achievementName, @Param("offset") int offset, @Param("limit") int limit);
+    List<AchievementTable> queryByLike(@Param("achievementName") String achievementName, @Param("offset") int offset, @Param("limit") int limit, @Param("columns") List<String> columns);
 
     Integer restoreById(Integer achievementId);
     //一键恢复所有被删除的数据
     Integer restoreAll();
 
+    /**
+     * 把已移入归档表的成果移回并恢复
+     *
+     * @param achievementId 主键
+     * @return 恢复行数
+     */
+    Integer restoreArchivedById(@Param("achievementId") Integer achievementId);
+
+    /**
+     * 把归档表中的成果全部移回并恢复
+     *
+     * @return 恢复行数
+     */
+    Integer restoreArchivedAll();
+
+    /**
+     * 归档表是否已安装（SQL/soft_delete_archive.sql）
+     *
+     * @return 是否存在achievement_table_archive
+     */
+    Boolean archiveInstalled();
+
     /*
      * 精确条件查询
      */
@@ -126,7 +170,69 @@ public interface AchievementTableMapper {
     /*
      * 模糊条件查询
      */
-    List<AchievementTable> fuzzyQuery(SearchBody searchBody, @Param("offset") int offset , @Param("limit") int limit);
+    List<AchievementTable> fuzzyQuery(SearchBody searchBody, @Param("offset") int offset , @Param("limit") int limit, @Param("columns") List<String> columns);
+
+    /**
+     * 批量累加搜索次数，每个成果占3个绑定参数，调用方须分段
+     *
+     * @param deltas 成果ID -> 搜索次数增量
+     * @return 影响行数
+     */
+    Integer increaseSearchCount(@Param("deltas") Map<Integer, Long> deltas);
+
+    /**
+     * 批量累加下载次数，每个成果占3个绑定参数，调用方须分段
+     *
+     * @param deltas 成果ID -> 下载次数增量
+     * @return 影响行数
+     */
+    Integer increaseDownloadCount(@Param("deltas") Map<Integer, Long> deltas);
+
+    /**
+     * 查询下载计数批次是否已写库
+     *
+     * @param flushId 批次号
+     * @return 记录数
+     */
+    Integer countDownloadCountFlush(@Param("flushId") String flushId);
+
+    /**
+     * 登记已写库的下载计数批次
+     *
+     * @param flushId 批次号
+     * @return 影响行数
+     */
+    Integer insertDownloadCountFlush(@Param("flushId") String flushId);
+
+    /**
+     * 清理过期的下载计数批次登记
+     *
+     * @return 影响行数
+     */
+    Integer pruneDownloadCountFlush();
+
+    /**
+     * 按审批记录重算成果的审批状态
+     *
+     * @param achievementId 成果ID
+     * @return 影响行数
+     */
+    Integer refreshApprovalState(@Param("achievementId") Integer achievementId);
+
+    /**
+     * 查询成果是否已审批且未删除
+     *
+     * @param achievementId 成果ID
+     * @return 是否已审批，成果不存在时为null
+     */
+    Boolean queryApprovedById(@Param("achievementId") Integer achievementId);
+
+    /**
+     * 查询所有已审批且未删除的成果ID
+     *
+     * @return 成果ID列表
+     */
+    List<Integer> queryApprovedIds();
 
 }
 
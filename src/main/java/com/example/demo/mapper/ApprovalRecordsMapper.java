@@ -77,6 +77,14 @@ public interface ApprovalRecordsMapper {
      *
      */
     Integer approvalTrue(ApprovalRecords approvalRecords);
+
+    /**
+     * 查询审批记录对应的成果ID，不过滤已删除的记录
+     *
+     * @param approvalId 主键
+     * @return 成果ID
+     */
+    Integer queryAchievementIdByApprovalId(Integer approvalId);
 }
 
 
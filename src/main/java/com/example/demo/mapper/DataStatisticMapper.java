@@ -11,8 +11,8 @@ public interface DataStatisticMapper {
     Integer userLoginInsert(@Param("userId") Integer userId, @Param("userName") String userName, @Param("logInTime") String logInTime, @Param("logOutTime") String logOutTime, @Param("duration") String duration);
 
 
-    // 更新登出时长
-    Integer updateLogOutInfo(@Param("userName") String userName, @Param("logOutTime") String logOutTime, @Param("duration") String duration);
+    // 更新登出时长，只找since之后的登录记录
+    Integer updateLogOutInfo(@Param("userName") String userName, @Param("logOutTime") String logOutTime, @Param("duration") String duration, @Param("since") String since);
 
     // 获取当前用户在线时长
     Integer onlineUserDuration(@Param("userName") String userName, @Param("logInTime") String logInTime, @Param("logOutTime") String logOutTime);
@@ -22,7 +22,8 @@ public interface DataStatisticMapper {
     //获取当前系统在线用户数量
     Integer countOnlineUser();
 
-    String getLogInTimeByUsername(@Param("userName") String userName);
+    // 获取用户最近一次登录时间，只找since之后的登录记录
+    String getLogInTimeByUsername(@Param("userName") String userName, @Param("since") String since);
 
     // 获取用户下载次数
     //Integer getDownloadCount();
@@ -2,6 +2,7 @@ package com.example.demo.mapper;
 
 import com.example.demo.model.DownloadRecords;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 
@@ -29,6 +30,14 @@ public interface DownloadRecordsMapper {
      */
     Integer insert(DownloadRecords downloadRecords);
 
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    Integer insertBatch(@Param("entities") List<DownloadRecords> entities);
+
     /**
      * 修改数据
      *
@@ -48,17 +57,31 @@ public interface DownloadRecordsMapper {
     /**
      *查询所有行数据
      *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
      *return 表中所有行数据
      *
      */
-    List<DownloadRecords> queryAll();
+    List<DownloadRecords> queryAll(@Param("startTime") String startTime, @Param("endTime") String endTime);
+
+    /**
+     * 以游标逐行查询所有行数据，需在事务内读完
+     *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
+     * @return 游标
+     */
+    Cursor<DownloadRecords> streamAll(@Param("startTime") String startTime, @Param("endTime") String endTime);
     
     /**
      *分页查询所有行数据
      *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
      *return 页中所有行数据
      *
      */
-     List<DownloadRecords> queryAllWithPagination (@Param("offset") int offset , @Param("limit") int limit);
+     List<DownloadRecords> queryAllWithPagination (@Param("offset") int offset , @Param("limit") int limit,
+                                                   @Param("startTime") String startTime, @Param("endTime") String endTime);
 }
 
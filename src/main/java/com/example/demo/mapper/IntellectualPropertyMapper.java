@@ -2,6 +2,7 @@ package com.example.demo.mapper;
 
 import com.example.demo.model.IntellectualProperty;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.annotations.Mapper;
 import org.springframework.data.domain.Pageable;
 import java.util.List;
@@ -53,6 +54,13 @@ public interface IntellectualPropertyMapper {
      *
      */
     List<IntellectualProperty> queryAll();
+
+    /**
+     * 以游标逐行查询所有行数据，需在事务内读完
+     *
+     * @return 游标
+     */
+    Cursor<IntellectualProperty> streamAll();
     
     /**
      *分页查询所有行数据
@@ -30,6 +30,14 @@ public interface LogRecordsMapper {
      */
     Integer insert(LogRecords logRecords);
 
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    Integer insertBatch(@Param("entities") List<LogRecords> entities);
+
     /**
      * 修改数据
      *
@@ -0,0 +1,76 @@
+package com.example.demo.mapper;
+
+import com.example.demo.model.OutboxEvent;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * (OutboxEvent)表数据库访问层
+ */
+public interface OutboxEventMapper {
+
+    /**
+     * 新增事件
+     *
+     * @param outboxEvent 实例对象
+     * @return 影响行数
+     */
+    Integer insert(OutboxEvent outboxEvent);
+
+    /**
+     * 取一批到期的待处理事件并加行锁，已被其他事务锁定的跳过
+     *
+     * @param limit 最多条数
+     * @param maxAttempts 失败次数达到该值的不再取出
+     * @param eventTypes 只取这些类型，本节点没有处理器的类型留给其他节点
+     * @return 事件，按ID升序
+     */
+    List<OutboxEvent> claimBatch(@Param("limit") int limit, @Param("maxAttempts") int maxAttempts,
+                                 @Param("eventTypes") Collection<String> eventTypes);
+
+    /**
+     * 标记为已处理
+     *
+     * @param eventIds 事件ID
+     * @return 影响行数
+     */
+    Integer markProcessed(@Param("eventIds") List<Long> eventIds);
+
+    /**
+     * 记录一次失败，delaySeconds秒后再重试
+     *
+     * @param eventId 事件ID
+     * @param lastError 错误信息
+     * @param delaySeconds 重试间隔（秒）
+     * @return 影响行数
+     */
+    Integer markFailed(@Param("eventId") Long eventId, @Param("lastError") String lastError, @Param("delaySeconds") long delaySeconds);
+
+    /**
+     * 失败次数已达上限的事件重新投递
+     *
+     * @param maxAttempts 最大失败次数
+     * @return 影响行数
+     */
+    Integer resetDead(@Param("maxAttempts") int maxAttempts);
+
+    /**
+     * 删除早于指定时间处理完成的事件
+     *
+     * @param before 时间
+     * @return 影响行数
+     */
+    Integer deleteProcessedBefore(@Param("before") String before);
+
+    /**
+     * 待处理和已放弃的事件数，最早一条待处理事件的创建时间
+     *
+     * @param maxAttempts 最大失败次数
+     * @return pending、dead、oldestPending
+     */
+    Map<String, Object> countUnprocessed(@Param("maxAttempts") int maxAttempts);
+
+}
@@ -60,5 +60,12 @@ public interface SearchRecordsMapper {
      *
      */
      List<SearchRecords> queryAllWithPagination (@Param("offset") int offset , @Param("limit") int limit);
-}
 
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    Integer insertBatch(@Param("entities") List<SearchRecords> entities);
+}
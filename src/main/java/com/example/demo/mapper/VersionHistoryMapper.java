@@ -2,6 +2,7 @@ package com.example.demo.mapper;
 
 import com.example.demo.model.VersionHistory;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.util.List;
 
@@ -52,6 +53,13 @@ public interface VersionHistoryMapper {
      *
      */
     List<VersionHistory> queryAll();
+
+    /**
+     * 以游标逐行查询所有行数据，需在事务内读完
+     *
+     * @return 游标
+     */
+    Cursor<VersionHistory> streamAll();
     
     /**
      *分页查询所有行数据
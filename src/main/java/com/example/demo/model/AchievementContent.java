@@ -0,0 +1,54 @@
+package com.example.demo.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * (AchievementContent)实体类
+ * 成果归档文件中抽取出的全文内容
+ */
+public class AchievementContent implements Serializable {
+    private static final long serialVersionUID = -5529130497318064052L;
+
+    private Integer achievementId;
+
+    private String fileName;
+
+    private String content;
+
+    private Date extractTime;
+
+
+    public Integer getAchievementId() {
+        return achievementId;
+    }
+
+    public void setAchievementId(Integer achievementId) {
+        this.achievementId = achievementId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public Date getExtractTime() {
+        return extractTime;
+    }
+
+    public void setExtractTime(Date extractTime) {
+        this.extractTime = extractTime;
+    }
+
+}
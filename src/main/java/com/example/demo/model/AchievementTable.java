@@ -1,6 +1,8 @@
 package com.example.demo.model;
 
 
+import com.example.demo.utils.AchievementFields;
+import com.fasterxml.jackson.annotation.JsonFilter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.Serializable;
@@ -11,6 +13,7 @@ import java.io.Serializable;
  * @author makejava
  * @since 2025-01-15 11:03:53
  */
+@JsonFilter(AchievementFields.FILTER)
 public class AchievementTable implements Serializable {
     private static final long serialVersionUID = -41145833230926355L;
 
@@ -0,0 +1,83 @@
+package com.example.demo.model;
+
+import java.io.Serializable;
+
+/**
+ * (OutboxEvent)实体类
+ * 与业务写操作同一事务插入的待分发事件
+ */
+public class OutboxEvent implements Serializable {
+    private static final long serialVersionUID = 3186602741550931475L;
+
+    private Long eventId;
+
+    private String eventType;
+
+    private Integer aggregateId;
+
+    private String payload;
+
+    private String createdTime;
+
+    private Integer attempts;
+
+    private String lastError;
+
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(Long eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public Integer getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(Integer aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getCreatedTime() {
+        return createdTime;
+    }
+
+    public void setCreatedTime(String createdTime) {
+        this.createdTime = createdTime;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+}
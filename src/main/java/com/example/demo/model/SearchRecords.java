@@ -23,6 +23,10 @@ public class SearchRecords implements Serializable {
 
     private Boolean tableStatus;
 
+    private Integer resultCount;
+
+    private Integer latencyMs;
+
 
     public Integer getSearchId() {
         return searchId;
@@ -72,5 +76,20 @@ public class SearchRecords implements Serializable {
         this.tableStatus = tableStatus;
     }
 
-}
+    public Integer getResultCount() {
+        return resultCount;
+    }
+
+    public void setResultCount(Integer resultCount) {
+        this.resultCount = resultCount;
+    }
 
+    public Integer getLatencyMs() {
+        return latencyMs;
+    }
+
+    public void setLatencyMs(Integer latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.example.demo.model;
+
+import java.io.Serializable;
+
+/**
+ * 搜索框联想词
+ * type：achievement 成果名，organization 单位名，user 用户名
+ */
+public class Suggestion implements Serializable {
+    private static final long serialVersionUID = 3904518765203147784L;
+
+    private String type;
+
+    private Integer id;
+
+    private String text;
+
+    private Long score;
+
+    public Suggestion() {
+    }
+
+    public Suggestion(String type, Integer id, String text, Long score) {
+        this.type = type;
+        this.id = id;
+        this.text = text;
+        this.score = score;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Long getScore() {
+        return score;
+    }
+
+    public void setScore(Long score) {
+        this.score = score;
+    }
+
+}
@@ -27,6 +27,15 @@ public class AchievementApprovalService {
     @Autowired
     private AuditRecordMapper auditRecordMapper;
 
+    @Autowired
+    private AchievementCacheService achievementCacheService;
+
+    @Autowired
+    private AuditLogService auditLogService;
+
+    @Autowired
+    private OutboxService outboxService;
+
     /**
      * 获取待审核列表
      */
@@ -105,6 +114,7 @@ public class AchievementApprovalService {
             achievement.setAuditTime(new Date());
             achievement.setAuditorId(auditorId);
             achievementTableMapper.updateById(achievement);
+            achievementCacheService.invalidate(achievementId);
 
             // 记录审核记录
             AuditRecord auditRecord = new AuditRecord();
@@ -115,6 +125,9 @@ public class AchievementApprovalService {
             auditRecord.setAuditComment("审核通过");
             auditRecordMapper.insert(auditRecord);
 
+            auditLogService.record(AuditLogService.TYPE_APPROVAL, auditorId, "approve achievementId=" + achievementId);
+            // 审批状态、搜索缓存和索引刷新随事务提交后由发件箱分发
+            outboxService.publish(OutboxService.ACHIEVEMENT_APPROVED, achievementId, null);
             log.info("成果审核通过: {}", achievementId);
             return true;
         } catch (Exception e) {
@@ -145,6 +158,7 @@ public class AchievementApprovalService {
             achievement.setAuditTime(new Date());
             achievement.setAuditorId(auditorId);
             achievementTableMapper.updateById(achievement);
+            achievementCacheService.invalidate(achievementId);
 
             // 记录审核记录
             AuditRecord auditRecord = new AuditRecord();
@@ -155,6 +169,7 @@ public class AchievementApprovalService {
             auditRecord.setAuditComment(reason);
             auditRecordMapper.insert(auditRecord);
 
+            auditLogService.record(AuditLogService.TYPE_APPROVAL, auditorId, "reject achievementId=" + achievementId + " reason=" + reason);
             log.info("成果审核拒绝: {}", achievementId);
             return true;
         } catch (Exception e) {
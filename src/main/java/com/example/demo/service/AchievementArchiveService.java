@@ -0,0 +1,71 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.mapper.ApprovalRecordsMapper;
+import com.example.demo.mapper.FileRecordMapper;
+import com.example.demo.mapper.VersionHistoryMapper;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.model.ApprovalRecords;
+import com.example.demo.model.FileRecord;
+import com.example.demo.model.VersionHistory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 成果归档服务
+ * 审核完成归档时的版本记录、文件记录、审批记录和成果状态在一个事务里写入，并写入归档事件；
+ * 审批状态重算、搜索缓存、联想词/相似度索引和全文索引由发件箱在提交后分发，不在请求里执行
+ */
+@Slf4j
+@Service
+public class AchievementArchiveService {
+    @Resource
+    private VersionHistoryMapper versionHistoryMapper;
+    @Resource
+    private FileRecordMapper fileRecordMapper;
+    @Resource
+    private ApprovalRecordsMapper approvalRecordsMapper;
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private AchievementCacheService achievementCacheService;
+    @Resource
+    private AuditLogService auditLogService;
+    @Resource
+    private OutboxService outboxService;
+
+    /**
+     * 写入归档结果，任一步失败整体回滚
+     *
+     * @param approvalRecords 审批记录
+     * @param achievementTable 成果
+     * @param versionHistory 版本记录
+     * @param fileRecord 文件记录
+     * @param archiveFile 已归档的文件
+     */
+    @Transactional
+    public void archive(ApprovalRecords approvalRecords, AchievementTable achievementTable,
+                        VersionHistory versionHistory, FileRecord fileRecord, File archiveFile) {
+        this.versionHistoryMapper.insert(versionHistory);
+        this.fileRecordMapper.insert(fileRecord);
+        this.approvalRecordsMapper.update(approvalRecords);
+        this.achievementTableMapper.update(achievementTable);
+        // 单条成果缓存读多，仍在提交时失效，避免读到归档前的状态
+        this.achievementCacheService.invalidate(achievementTable.getAchievementId());
+        this.auditLogService.record(AuditLogService.TYPE_APPROVAL, approvalRecords.getUserId(),
+                "archive approvalId=" + approvalRecords.getApprovalId() + " achievementId=" + achievementTable.getAchievementId()
+                        + " file=" + archiveFile.getName());
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("file", archiveFile.getPath());
+        payload.put("category", achievementTable.getAchievementCategory());
+        this.outboxService.publish(OutboxService.ACHIEVEMENT_ARCHIVED, achievementTable.getAchievementId(), payload);
+        log.info("成果{}归档完成：{}", achievementTable.getAchievementId(), archiveFile.getName());
+    }
+}
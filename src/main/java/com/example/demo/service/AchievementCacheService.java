@@ -0,0 +1,335 @@
+package com.example.demo.service;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.bean.BeanUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.example.demo.model.AchievementTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 成果实体缓存
+ * 一级缓存为进程内LRU，二级缓存为可选的Redis；按ID读穿，写操作时按ID失效。
+ * 每个ID带有版本号，失效时版本号加一，加载期间发生失效的结果不会写入缓存；
+ * 同一ID并发未命中时只有一个线程查库，其余线程等待同一个结果
+ */
+@Slf4j
+@Service
+public class AchievementCacheService {
+    private static final String REDIS_ENTITY = "achievement:entity:";
+    private static final String REDIS_VERSION = "achievement:version:";
+    private static final String REDIS_EPOCH = "achievement:epoch";
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+    @Resource
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    @Value("${achievement.cache.capacity:10000}")
+    private int capacity;
+
+    @Value("${achievement.cache.ttl:600000}")
+    private long ttl;
+
+    @Value("${achievement.cache.redis-enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${achievement.cache.redis-ttl:3600000}")
+    private long redisTtl;
+
+    private Cache<Integer, CachedAchievement> cache;
+
+    /**
+     * 成果ID -> 本地版本号，失效时加一
+     */
+    private final ConcurrentHashMap<Integer, Long> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 全部失效时加一，使所有正在加载的结果作废
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * 正在加载的成果，防止缓存击穿
+     */
+    private final ConcurrentHashMap<Integer, CompletableFuture<AchievementTable>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong redisHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidateCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // 详情页和下载校验按ID访问，热点随时间迁移，LRU即可
+        this.cache = CacheUtil.newLRUCache(capacity, ttl);
+    }
+
+    /**
+     * 读穿查询
+     *
+     * @param achievementId 成果ID
+     * @param loader 未命中时查库
+     * @return 成果副本，不存在时返回null
+     */
+    public AchievementTable get(Integer achievementId, Function<Integer, AchievementTable> loader) {
+        if (achievementId == null) {
+            return null;
+        }
+        CachedAchievement cached = this.cache.get(achievementId);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return copy(cached.achievement);
+        }
+        CompletableFuture<AchievementTable> future = new CompletableFuture<>();
+        CompletableFuture<AchievementTable> running = loading.putIfAbsent(achievementId, future);
+        if (running != null) {
+            return copy(await(running));
+        }
+        try {
+            future.complete(load(achievementId, loader));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(achievementId, future);
+        }
+        return copy(future.getNow(null));
+    }
+
+    /**
+     * 成果写入后失效缓存并通知其他节点；在事务内调用时提交后再失效一次，避免提交前读到旧数据又写回缓存
+     *
+     * @param achievementId 成果ID
+     */
+    public void invalidate(Integer achievementId) {
+        invalidate(achievementId, null);
+    }
+
+    /**
+     * 成果写入后失效缓存并通知其他节点，其他节点按类别失效各自的搜索缓存
+     *
+     * @param achievementId 成果ID
+     * @param achievementCategory 写入前的类别，未知时为null，其他节点按当前类别失效
+     */
+    public void invalidate(final Integer achievementId, String achievementCategory) {
+        if (achievementId == null) {
+            return;
+        }
+        evict(achievementId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(achievementId);
+                }
+            });
+        }
+        this.cacheInvalidationBus.publish(CacheInvalidationBus.TYPE_ACHIEVEMENT, achievementId, achievementCategory);
+    }
+
+    /**
+     * 清空全部缓存并通知其他节点
+     */
+    public void invalidateAll() {
+        invalidateLocalAll();
+        if (redisEnabled) {
+            try {
+                redisTemplate.opsForValue().increment(REDIS_EPOCH);
+            } catch (Exception e) {
+                log.warn("Redis成果缓存全部失效失败", e);
+            }
+        }
+        this.cacheInvalidationBus.publish(CacheInvalidationBus.TYPE_ACHIEVEMENT, CacheInvalidationBus.ALL);
+    }
+
+    /**
+     * 只失效本节点一级缓存，用于处理其他节点广播的失效事件，Redis已由发布方处理
+     *
+     * @param achievementId 成果ID
+     */
+    public void invalidateLocal(Integer achievementId) {
+        versions.merge(achievementId, 1L, Long::sum);
+        this.cache.remove(achievementId);
+        invalidateCount.incrementAndGet();
+    }
+
+    /**
+     * 只清空本节点一级缓存
+     */
+    public void invalidateLocalAll() {
+        epoch.incrementAndGet();
+        invalidateCount.addAndGet(this.cache.size());
+        this.cache.clear();
+    }
+
+    /**
+     * 缓存命中统计
+     *
+     * @return 一级命中数、二级命中数、未命中数、命中率、失效数、当前条目数
+     */
+    public Map<String, Object> getStatistics() {
+        long hits = hitCount.get() + redisHitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("hitCount", hitCount.get());
+        statistics.put("redisHitCount", redisHitCount.get());
+        statistics.put("missCount", misses);
+        statistics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        statistics.put("invalidateCount", invalidateCount.get());
+        statistics.put("size", this.cache.size());
+        statistics.put("capacity", capacity);
+        statistics.put("redisEnabled", redisEnabled);
+        return statistics;
+    }
+
+    /*
+     * 先记下版本号再加载，写回时版本号没变才放入一级缓存
+     */
+    private AchievementTable load(Integer achievementId, Function<Integer, AchievementTable> loader) {
+        long localEpoch = epoch.get();
+        Long localVersion = versions.get(achievementId);
+
+        AchievementTable achievement;
+        RedisEntry redisEntry = redisEnabled ? readRedis(achievementId) : null;
+        if (redisEntry != null && redisEntry.valid) {
+            redisHitCount.incrementAndGet();
+            achievement = redisEntry.achievement;
+        } else {
+            missCount.incrementAndGet();
+            achievement = loader.apply(achievementId);
+            if (redisEntry != null) {
+                writeRedis(achievementId, achievement, redisEntry);
+            }
+        }
+
+        if (localEpoch == epoch.get() && equals(localVersion, versions.get(achievementId))) {
+            this.cache.put(achievementId, new CachedAchievement(achievement));
+        }
+        return achievement;
+    }
+
+    private void evict(Integer achievementId) {
+        invalidateLocal(achievementId);
+        if (redisEnabled) {
+            try {
+                redisTemplate.opsForValue().increment(REDIS_VERSION + achievementId);
+                redisTemplate.delete(REDIS_ENTITY + achievementId);
+            } catch (Exception e) {
+                log.warn("Redis成果缓存失效失败：{}", achievementId, e);
+            }
+        }
+    }
+
+    /*
+     * 一次取回实体、版本号和全局失效代数，实体上记录的版本与当前一致才有效
+     */
+    private RedisEntry readRedis(Integer achievementId) {
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(Arrays.asList(
+                    REDIS_ENTITY + achievementId, REDIS_VERSION + achievementId, REDIS_EPOCH));
+            if (values == null) {
+                return null;
+            }
+            RedisEntry entry = new RedisEntry(parseLong(values.get(1)), parseLong(values.get(2)));
+            String value = values.get(0);
+            if (value != null) {
+                JSONObject json = JSON.parseObject(value);
+                entry.valid = json.getLongValue("version") == entry.version
+                        && json.getLongValue("epoch") == entry.epoch;
+                entry.achievement = json.getObject("entity", AchievementTable.class);
+            }
+            return entry;
+        } catch (Exception e) {
+            log.warn("读取Redis成果缓存失败：{}", achievementId, e);
+            return null;
+        }
+    }
+
+    /*
+     * 写入加载前读到的版本号，加载期间被其他节点失效时，这条记录读取时会被判为无效
+     */
+    private void writeRedis(Integer achievementId, AchievementTable achievement, RedisEntry entry) {
+        try {
+            JSONObject json = new JSONObject();
+            json.put("version", entry.version);
+            json.put("epoch", entry.epoch);
+            json.put("entity", achievement);
+            redisTemplate.opsForValue().set(REDIS_ENTITY + achievementId, json.toJSONString(),
+                    redisTtl, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("写入Redis成果缓存失败：{}", achievementId, e);
+        }
+    }
+
+    private static AchievementTable await(CompletableFuture<AchievementTable> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待成果加载被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("成果加载失败", e.getCause());
+        }
+    }
+
+    /*
+     * 调用方会修改返回的对象，缓存中只保留自己的副本
+     */
+    private static AchievementTable copy(AchievementTable achievement) {
+        return achievement == null ? null : BeanUtil.copyProperties(achievement, AchievementTable.class);
+    }
+
+    private static long parseLong(String value) {
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    private static boolean equals(Long a, Long b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * 一级缓存条目，成果不存在时achievement为null，同样缓存以挡住对已删除成果的重复查询
+     */
+    private static class CachedAchievement {
+        private final AchievementTable achievement;
+
+        private CachedAchievement(AchievementTable achievement) {
+            this.achievement = achievement == null ? null : copy(achievement);
+        }
+    }
+
+    private static class RedisEntry {
+        private final long version;
+        private final long epoch;
+        private boolean valid;
+        private AchievementTable achievement;
+
+        private RedisEntry(long version, long epoch) {
+            this.version = version;
+            this.epoch = epoch;
+        }
+    }
+}
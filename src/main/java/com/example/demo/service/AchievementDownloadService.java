@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import com.example.demo.model.DownloadRecords;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 成果下载登记
+ * 下载表单提交时，所有下载记录在一个事务里批量插入；提交后下载次数交给DownloadCountService在内存中累加，
+ * 不再逐行更新成果表。累加是最后一步且不会抛出异常，调用方收到错误时下载既没有登记也没有计数
+ */
+@Service
+public class AchievementDownloadService {
+
+    @Resource
+    private DownloadRecordsService downloadRecordsService;
+    @Resource
+    private DownloadCountService downloadCountService;
+    @Resource
+    private AuditLogService auditLogService;
+
+    /**
+     * 登记一次下载表单
+     *
+     * @param achievementIds 成果ID，重复出现的ID按次数累计
+     * @param userId 用户ID
+     * @param downloadTime 下载时间
+     */
+    @Transactional
+    public void recordDownloads(List<Integer> achievementIds, Integer userId, String downloadTime) {
+        List<DownloadRecords> records = new ArrayList<>(achievementIds.size());
+        Map<Integer, Long> deltas = new LinkedHashMap<>();
+        for (Integer achievementId : achievementIds) {
+            DownloadRecords downloadRecords = new DownloadRecords();
+            downloadRecords.setAchievementId(achievementId);
+            downloadRecords.setUserId(userId);
+            downloadRecords.setDownloadTime(downloadTime);
+            records.add(downloadRecords);
+            Long delta = deltas.get(achievementId);
+            deltas.put(achievementId, delta == null ? 1L : delta + 1);
+        }
+
+        Integer inserted = this.downloadRecordsService.insertBatch(records);
+        if (inserted == null || inserted != records.size()) {
+            throw new IllegalStateException("下载记录表插入失败");
+        }
+        for (Integer achievementId : achievementIds) {
+            this.auditLogService.record(AuditLogService.TYPE_DOWNLOAD, userId, "achievementId=" + achievementId);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    downloadCountService.increase(deltas);
+                }
+            });
+        } else {
+            this.downloadCountService.increase(deltas);
+        }
+    }
+}
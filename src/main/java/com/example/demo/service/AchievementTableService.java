@@ -1,17 +1,23 @@
 package com.example.demo.service;
 
 import com.example.demo.model.AchievementTable;
+import com.example.demo.model.OutboxEvent;
 import com.example.demo.mapper.AchievementTableMapper;
 import com.example.demo.model.SearchBody;
 import com.example.demo.service.AchievementTableService;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * (AchievementTable)表服务实现类
@@ -24,6 +30,40 @@ import java.util.List;
 public class AchievementTableService implements AchievementTableMapper {
     @Resource
     private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private SearchCacheService searchCacheService;
+    @Resource
+    private SuggestionService suggestionService;
+    @Resource
+    private SimilarityService similarityService;
+    @Resource
+    private ApprovalStateService approvalStateService;
+    @Resource
+    private AchievementCacheService achievementCacheService;
+    @Resource
+    private CacheInvalidationBus cacheInvalidationBus;
+    @Resource
+    private OutboxService outboxService;
+
+    /**
+     * 是否已安装归档表，启动时检查一次；未安装时恢复只处理热表
+     */
+    private volatile boolean archiveInstalled;
+
+    @PostConstruct
+    public void init() {
+        try {
+            this.archiveInstalled = Boolean.TRUE.equals(this.achievementTableMapper.archiveInstalled());
+        } catch (RuntimeException e) {
+            log.warn("检查成果归档表失败，恢复时不查询归档表", e);
+        }
+        if (!this.archiveInstalled) {
+            log.info("未安装achievement_table_archive，恢复只处理成果表中的软删除行");
+        }
+        this.cacheInvalidationBus.register(CacheInvalidationBus.TYPE_ACHIEVEMENT, this::onRemoteInvalidation);
+        this.outboxService.register(OutboxService.ACHIEVEMENT_APPROVED, this::onOutboxEvents);
+        this.outboxService.register(OutboxService.ACHIEVEMENT_ARCHIVED, this::onOutboxEvents);
+    }
 
     /**
      * 通过ID查询单条数据
@@ -33,7 +73,21 @@ public class AchievementTableService implements AchievementTableMapper {
      */
     @Override
     public AchievementTable queryById(Integer achievementId) {
-        return this.achievementTableMapper.queryById(achievementId);
+        return this.achievementCacheService.get(achievementId, this.achievementTableMapper::queryById);
+    }
+
+    /**
+     * 通过ID批量查询数据
+     *
+     * @param achievementIds 主键列表
+     * @return 对象列表
+     */
+    @Override
+    public List<AchievementTable> queryByIds(List<Integer> achievementIds) {
+        if (achievementIds == null || achievementIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return this.achievementTableMapper.queryByIds(achievementIds);
     }
 
     /**
@@ -44,7 +98,11 @@ public class AchievementTableService implements AchievementTableMapper {
      */
     @Override
     public Integer insert(AchievementTable achievementTable) {
-        return this.achievementTableMapper.insert(achievementTable);
+        Integer res = this.achievementTableMapper.insert(achievementTable);
+        this.achievementCacheService.invalidate(achievementTable.getAchievementId(), achievementTable.getAchievementCategory());
+        this.searchCacheService.invalidate(achievementTable.getAchievementId(), achievementTable.getAchievementCategory());
+        afterWrite(achievementTable.getAchievementId());
+        return res;
     }
 
     /**
@@ -55,7 +113,14 @@ public class AchievementTableService implements AchievementTableMapper {
      */
     @Override
     public Integer update(AchievementTable achievementTable) {
+        String achievementCategory = achievementTable.getAchievementCategory();
+        if (achievementCategory == null || achievementCategory.isEmpty()) {
+            achievementCategory = categoryOf(achievementTable.getAchievementId());
+        }
         this.achievementTableMapper.update(achievementTable);
+        this.achievementCacheService.invalidate(achievementTable.getAchievementId(), achievementCategory);
+        this.searchCacheService.invalidate(achievementTable.getAchievementId(), achievementCategory);
+        afterWrite(achievementTable.getAchievementId());
         return achievementTable.getAchievementId();
     }
 
@@ -67,7 +132,13 @@ public class AchievementTableService implements AchievementTableMapper {
      */
     @Override
     public Integer deleteById(Integer achievementId) {
+        String achievementCategory = categoryOf(achievementId);
         Integer res = this.achievementTableMapper.deleteById(achievementId);
+        this.achievementCacheService.invalidate(achievementId, achievementCategory);
+        this.searchCacheService.invalidate(achievementId, achievementCategory);
+        this.suggestionService.onAchievementDeleted(achievementId);
+        this.similarityService.onAchievementDeleted(achievementId);
+        this.approvalStateService.sync(achievementId);
         return res;
     }
     
@@ -77,20 +148,33 @@ public class AchievementTableService implements AchievementTableMapper {
      *return 表中所有行数据
      *
      */
+     @Transactional(readOnly = true)
      @Override
      public List<AchievementTable> queryAll(){
         return this.achievementTableMapper.queryAll();
      }
 
+    /**
+     * 以游标逐行查询所有行数据
+     *
+     * @return 游标
+     */
+     @Override
+     public Cursor<AchievementTable> streamAll(){
+        return this.achievementTableMapper.streamAll();
+     }
+
      /**
-     *统计行数
+     *统计已审批成果数，优先取内存中的已审批集合
      *
      *return 表中行数
      *
      */
+     @Transactional(readOnly = true)
      @Override
      public Integer countAchievements() {
-         return this.achievementTableMapper.countAchievements();
+         Integer res = this.approvalStateService.approvedCount();
+         return res != null ? res : this.achievementTableMapper.countAchievements();
      }
 
      /**
@@ -101,10 +185,16 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 表中所有行数据
      *
      */
-     @Override
+     @Transactional(readOnly = true)
      public List<AchievementTable> queryAllWithPagination(int pageNum, int pageSize) {
+         return queryAllWithPagination(pageNum, pageSize, null);
+     }
+
+     @Transactional(readOnly = true)
+     @Override
+     public List<AchievementTable> queryAllWithPagination(int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryAllWithPagination(offset, pageSize);
+         return this.achievementTableMapper.queryAllWithPagination(offset, pageSize, columns);
      }
 
      /**
@@ -115,10 +205,16 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 表中所有行数据
      *
      */
-     @Override
+     @Transactional(readOnly = true)
      public List<AchievementTable> queryAllWithPatent(int pageNum, int pageSize) {
+         return queryAllWithPatent(pageNum, pageSize, null);
+     }
+
+     @Transactional(readOnly = true)
+     @Override
+     public List<AchievementTable> queryAllWithPatent(int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryAllWithPatent(offset, pageSize);
+         return this.achievementTableMapper.queryAllWithPatent(offset, pageSize, columns);
      }
 
      /**
@@ -129,10 +225,16 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 表中所有行数据
      *
      */
-     @Override
+     @Transactional(readOnly = true)
      public List<AchievementTable> queryAllWithPaper(int pageNum, int pageSize) {
+         return queryAllWithPaper(pageNum, pageSize, null);
+     }
+
+     @Transactional(readOnly = true)
+     @Override
+     public List<AchievementTable> queryAllWithPaper(int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryAllWithPaper(offset, pageSize);
+         return this.achievementTableMapper.queryAllWithPaper(offset, pageSize, columns);
      }
 
      /**
@@ -143,10 +245,16 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 分页对象
      *
      */
-     @Override
+     @Transactional(readOnly = true)
      public List<AchievementTable> queryAllWithOthers(int pageNum, int pageSize) {
+         return queryAllWithOthers(pageNum, pageSize, null);
+     }
+
+     @Transactional(readOnly = true)
+     @Override
+     public List<AchievementTable> queryAllWithOthers(int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryAllWithOthers(offset, pageSize);
+         return this.achievementTableMapper.queryAllWithOthers(offset, pageSize, columns);
      }
 
      /**
@@ -157,10 +265,14 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 分页对象
      *
      */
-     @Override
      public List<AchievementTable> queryAllWithPaginationForApproval(int pageNum, int pageSize) {
+         return queryAllWithPaginationForApproval(pageNum, pageSize, null);
+     }
+
+     @Override
+     public List<AchievementTable> queryAllWithPaginationForApproval(int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryAllWithPaginationForApproval(offset, pageSize);
+         return this.achievementTableMapper.queryAllWithPaginationForApproval(offset, pageSize, columns);
      }
 
      /**
@@ -169,10 +281,14 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 分页对象
      *
      */
+     public List<AchievementTable> queryByLikeApproval(String achievementName, int pageNum, int pageSize) {
+         return queryByLikeApproval(achievementName, pageNum, pageSize, null);
+     }
+
      @Override
-     public List<AchievementTable> queryByLikeApproval(String achievementName,int pageNum, int pageSize) {
+     public List<AchievementTable> queryByLikeApproval(String achievementName, int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryByLikeApproval(achievementName, offset, pageSize);
+         return this.achievementTableMapper.queryByLikeApproval(achievementName, offset, pageSize, columns);
      }
 
      /**
@@ -181,27 +297,59 @@ public class AchievementTableService implements AchievementTableMapper {
      *@return 分页对象
      *
      */
-     @Override
+     @Transactional(readOnly = true)
      public List<AchievementTable> queryByLike(String achievementName, int pageNum, int pageSize) {
+         return queryByLike(achievementName, pageNum, pageSize, null);
+     }
+
+     @Transactional(readOnly = true)
+     @Override
+     public List<AchievementTable> queryByLike(String achievementName, int pageNum, int pageSize, List<String> columns) {
          int offset = (pageNum - 1) * pageSize;
-         return this.achievementTableMapper.queryByLike(achievementName, offset, pageSize);
+         return this.achievementTableMapper.queryByLike(achievementName, offset, pageSize, columns);
      }
-    //通过主键恢复删除的数据
+    //通过主键恢复删除的数据，已移入归档表的从归档表移回
+    @Transactional
     @Override
     public Integer restoreById(Integer achievementId){
         Integer res = this.achievementTableMapper.restoreById(achievementId);
+        if ((res == null || res == 0) && this.archiveInstalled) {
+            res = this.achievementTableMapper.restoreArchivedById(achievementId);
+        }
+        this.achievementCacheService.invalidate(achievementId);
+        // 被删除的成果查不到类别，直接清空搜索缓存
+        this.searchCacheService.invalidateAll();
+        this.approvalStateService.sync(achievementId);
+        afterWrite(achievementId);
         return res;
     }
-    //一键恢复所有被删除的数据
+    //一键恢复所有被删除的数据，包括已移入归档表的
+    @Transactional
     @Override
     public Integer restoreAll(){
         Integer res = this.achievementTableMapper.restoreAll();
+        if (this.archiveInstalled) {
+            res += this.achievementTableMapper.restoreArchivedAll();
+        }
+        reloadAll();
         return res;
     }
 
+    /**
+     * 成果表整体变化后（一键恢复、备份恢复）清空本节点的缓存、重建索引和审批状态，并通知其他节点
+     */
+    public void reloadAll() {
+        this.achievementCacheService.invalidateAll();
+        this.searchCacheService.invalidateAll();
+        this.suggestionService.rebuild();
+        this.similarityService.rebuild();
+        this.approvalStateService.reload();
+    }
+
     /*
      * 精确查询条件数据
      */
+    @Transactional(readOnly = true)
     @Override
     public List<AchievementTable> queryAllByLimit(AchievementTable achievementTable) {
 
@@ -209,12 +357,156 @@ public class AchievementTableService implements AchievementTableMapper {
         return this.achievementTableMapper.queryAllByLimit(achievementTable);
     }
     /*
-     * 精确查询条件数据
+     * 模糊条件查询，先查搜索缓存
      */
-    @Override
     public List<AchievementTable> fuzzyQuery(SearchBody searchBody, int pageNum, int pageSize) {
+        return fuzzyQuery(searchBody, pageNum, pageSize, null);
+    }
+
+    /*
+     * 模糊条件查询，只取指定列，不同列集合分开缓存
+     * 未命中时的结果要写入搜索缓存，不走只读事务：从库的延迟数据一旦缓存，会在TTL内一直返回，这里固定查主库
+     */
+    @Override
+    public List<AchievementTable> fuzzyQuery(SearchBody searchBody, int pageNum, int pageSize, List<String> columns) {
 
         int offset = (pageNum - 1) * pageSize ;
-        return this.achievementTableMapper.fuzzyQuery(searchBody, offset, pageSize);
+        SearchBody normalized = SearchCacheService.normalize(searchBody);
+        String key = SearchCacheService.buildKey(normalized, offset, pageSize);
+        if (columns != null) {
+            key = key + "|" + String.join(",", columns);
+        }
+        // 先记下失效代数，查询期间有写入失效时这次结果不写入缓存
+        long generation = this.searchCacheService.generation();
+        List<AchievementTable> res = this.searchCacheService.get(key);
+        if (res != null) {
+            return res;
+        }
+        res = this.achievementTableMapper.fuzzyQuery(normalized, offset, pageSize, columns);
+        this.searchCacheService.put(key, normalized, res, generation);
+        return res;
+    }
+
+    /*
+     * 批量累加搜索次数，只改计数列，不失效搜索缓存
+     */
+    @Override
+    public Integer increaseSearchCount(Map<Integer, Long> deltas) {
+        return this.achievementTableMapper.increaseSearchCount(deltas);
+    }
+
+    /*
+     * 批量累加下载次数，只改计数列，不失效搜索缓存
+     */
+    @Override
+    public Integer increaseDownloadCount(Map<Integer, Long> deltas) {
+        return this.achievementTableMapper.increaseDownloadCount(deltas);
+    }
+
+    @Override
+    public Integer countDownloadCountFlush(String flushId) {
+        return this.achievementTableMapper.countDownloadCountFlush(flushId);
+    }
+
+    @Override
+    public Integer insertDownloadCountFlush(String flushId) {
+        return this.achievementTableMapper.insertDownloadCountFlush(flushId);
+    }
+
+    @Override
+    public Integer pruneDownloadCountFlush() {
+        return this.achievementTableMapper.pruneDownloadCountFlush();
+    }
+
+    /*
+     * 审批状态投影，由ApprovalStateService维护
+     */
+    @Override
+    public Integer refreshApprovalState(Integer achievementId) {
+        return this.achievementTableMapper.refreshApprovalState(achievementId);
+    }
+
+    @Override
+    public Integer restoreArchivedById(Integer achievementId) {
+        return this.achievementTableMapper.restoreArchivedById(achievementId);
+    }
+
+    @Override
+    public Integer restoreArchivedAll() {
+        return this.achievementTableMapper.restoreArchivedAll();
+    }
+
+    @Override
+    public Boolean archiveInstalled() {
+        return this.archiveInstalled;
+    }
+
+    @Override
+    public Boolean queryApprovedById(Integer achievementId) {
+        return this.achievementTableMapper.queryApprovedById(achievementId);
+    }
+
+    @Override
+    public List<Integer> queryApprovedIds() {
+        return this.achievementTableMapper.queryApprovedIds();
+    }
+
+    /*
+     * 写操作后按最新数据增量更新联想词和相似成果索引
+     */
+    private void afterWrite(Integer achievementId) {
+        if (achievementId == null) {
+            return;
+        }
+        AchievementTable current = this.achievementTableMapper.queryById(achievementId);
+        this.suggestionService.onAchievementChanged(achievementId, current);
+        this.similarityService.onAchievementChanged(achievementId, current);
+    }
+
+    /*
+     * 审核通过、归档事件：失效该成果的搜索缓存，增量更新联想词和相似成果索引；
+     * 归档事件带了写入时的类别，审核通过按当前类别失效。
+     * 事件只在取到它的节点上处理，失效成果缓存时经缓存失效总线通知其他节点，由onRemoteInvalidation刷新各自的缓存和索引
+     */
+    private void onOutboxEvents(List<OutboxEvent> events) {
+        for (OutboxEvent outboxEvent : events) {
+            Integer achievementId = outboxEvent.getAggregateId();
+            Object category = this.outboxService.payloadOf(outboxEvent).get("category");
+            String achievementCategory = category == null ? categoryOf(achievementId) : category.toString();
+            this.searchCacheService.invalidate(achievementId, achievementCategory);
+            this.achievementCacheService.invalidate(achievementId, achievementCategory);
+            afterWrite(achievementId);
+        }
+    }
+
+    /*
+     * 其他节点写入成果后，本节点按最新数据刷新各项本地缓存和索引；
+     * 搜索缓存与本地写入一样按类别失效，类别随事件带来，没有带时按当前类别
+     */
+    private void onRemoteInvalidation(String id, String category) {
+        if (CacheInvalidationBus.ALL.equals(id)) {
+            this.searchCacheService.invalidateAll();
+            this.achievementCacheService.invalidateLocalAll();
+            this.suggestionService.rebuild();
+            this.similarityService.rebuild();
+            this.approvalStateService.reload();
+            return;
+        }
+        Integer achievementId = Integer.valueOf(id);
+        this.searchCacheService.invalidate(achievementId, category == null ? categoryOf(achievementId) : category);
+        this.achievementCacheService.invalidateLocal(achievementId);
+        this.approvalStateService.sync(achievementId);
+        afterWrite(achievementId);
+    }
+
+    /*
+     * 查询成果当前类别，用于搜索缓存失效，查不到时返回null
+     */
+    private String categoryOf(Integer achievementId) {
+        if (achievementId == null) {
+            return null;
+        }
+        AchievementTable current = this.achievementTableMapper.queryById(achievementId);
+        return current == null ? null : current.getAchievementCategory();
     }
 }
@@ -9,6 +9,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
@@ -23,6 +24,12 @@ import java.util.List;
 public class ApprovalRecordsService implements ApprovalRecordsMapper {
     @Resource
     private ApprovalRecordsMapper approvalRecordsMapper;
+    @Resource
+    private ApprovalStateService approvalStateService;
+    @Resource
+    private AuditLogService auditLogService;
+    @Resource
+    private OutboxService outboxService;
 
     /**
      * 通过ID查询单条数据
@@ -43,7 +50,12 @@ public class ApprovalRecordsService implements ApprovalRecordsMapper {
      */
     @Override
     public Integer insert(ApprovalRecords approvalRecords) {
-        return this.approvalRecordsMapper.insert(approvalRecords);
+        Integer res = this.approvalRecordsMapper.insert(approvalRecords);
+        this.approvalStateService.refresh(approvalRecords.getAchievementId());
+        this.auditLogService.record(AuditLogService.TYPE_APPROVAL, approvalRecords.getUserId(),
+                "submit approvalId=" + approvalRecords.getApprovalId() + " achievementId=" + approvalRecords.getAchievementId()
+                        + " approvalType=" + approvalRecords.getApprovalType());
+        return res;
     }
 
     /**
@@ -55,6 +67,9 @@ public class ApprovalRecordsService implements ApprovalRecordsMapper {
     @Override
     public Integer update(ApprovalRecords approvalRecords) {
         this.approvalRecordsMapper.update(approvalRecords);
+        afterWrite(approvalRecords.getApprovalId());
+        this.auditLogService.record(AuditLogService.TYPE_APPROVAL, approvalRecords.getUserId(),
+                "update approvalId=" + approvalRecords.getApprovalId() + " approvalStatus=" + approvalRecords.getApprovalStatus());
         return approvalRecords.getApprovalId();
     }
 
@@ -67,6 +82,7 @@ public class ApprovalRecordsService implements ApprovalRecordsMapper {
     @Override
     public Integer deleteById(Integer approvalId) {
         Integer res = this.approvalRecordsMapper.deleteById(approvalId);
+        afterWrite(approvalId);
         return res;
     }
 
@@ -106,12 +122,38 @@ public class ApprovalRecordsService implements ApprovalRecordsMapper {
     }
 
     /**
-     * 审批通过
+     * 审批通过，成果审批状态由发件箱事件异步重算
      *
      * @return 是否成功
      */
+    @Transactional
     @Override
     public Integer approvalTrue(ApprovalRecords approvalRecords){
-        return this.approvalRecordsMapper.approvalTrue(approvalRecords);
+        Integer res = this.approvalRecordsMapper.approvalTrue(approvalRecords);
+        this.outboxService.publish(OutboxService.APPROVAL_APPROVED, approvalRecords.getApprovalId(), null);
+        this.auditLogService.record(AuditLogService.TYPE_APPROVAL, approvalRecords.getUserId(),
+                "approve approvalId=" + approvalRecords.getApprovalId());
+        return res;
+    }
+
+    /**
+     * 查询审批记录对应的成果ID
+     *
+     * @param approvalId 主键
+     * @return 成果ID
+     */
+    @Override
+    public Integer queryAchievementIdByApprovalId(Integer approvalId) {
+        return this.approvalRecordsMapper.queryAchievementIdByApprovalId(approvalId);
+    }
+
+    /*
+     * 审批记录变化后重算所属成果的审批状态，修改和删除时请求里不一定带成果ID，按审批记录查
+     */
+    private void afterWrite(Integer approvalId) {
+        if (approvalId == null) {
+            return;
+        }
+        this.approvalStateService.refresh(this.approvalRecordsMapper.queryAchievementIdByApprovalId(approvalId));
     }
 }
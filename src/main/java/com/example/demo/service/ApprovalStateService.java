@@ -0,0 +1,129 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.mapper.ApprovalRecordsMapper;
+import com.example.demo.model.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 成果审批状态投影
+ * achievement_table上的approved、approval_pending列随审批记录变化按成果重算，列表查询不再子查询approval_records；
+ * 已审批且未删除的成果ID常驻内存，供计数等热点路径直接使用；审批通过、审核通过和归档经发件箱事件异步重算
+ */
+@Slf4j
+@Service
+public class ApprovalStateService {
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private ApprovalRecordsMapper approvalRecordsMapper;
+    @Resource
+    private OutboxService outboxService;
+    @Resource
+    private AchievementCacheService achievementCacheService;
+
+    private final Set<Integer> approvedIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loaded = false;
+
+    @PostConstruct
+    public void init() {
+        this.outboxService.register(OutboxService.APPROVAL_APPROVED, this::onApprovalApproved);
+        this.outboxService.register(OutboxService.ACHIEVEMENT_APPROVED, this::onAchievementChanged);
+        this.outboxService.register(OutboxService.ACHIEVEMENT_ARCHIVED, this::onAchievementChanged);
+    }
+
+    /**
+     * 成果是否已审批且未删除
+     *
+     * @param achievementId 成果ID
+     * @return 是否已审批
+     */
+    public boolean isApproved(Integer achievementId) {
+        if (!loaded) {
+            return Boolean.TRUE.equals(this.achievementTableMapper.queryApprovedById(achievementId));
+        }
+        return achievementId != null && approvedIds.contains(achievementId);
+    }
+
+    /**
+     * 已审批且未删除的成果数，内存集合未加载时返回null
+     *
+     * @return 成果数
+     */
+    public Integer approvedCount() {
+        return loaded ? approvedIds.size() : null;
+    }
+
+    /**
+     * 审批记录变化后重算成果的审批状态
+     *
+     * @param achievementId 成果ID
+     */
+    public void refresh(Integer achievementId) {
+        if (achievementId == null) {
+            return;
+        }
+        this.achievementTableMapper.refreshApprovalState(achievementId);
+        sync(achievementId);
+    }
+
+    /**
+     * 成果删除或恢复后同步内存集合，审批状态列本身不变
+     *
+     * @param achievementId 成果ID
+     */
+    public void sync(Integer achievementId) {
+        if (achievementId == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(this.achievementTableMapper.queryApprovedById(achievementId))) {
+            approvedIds.add(achievementId);
+        } else {
+            approvedIds.remove(achievementId);
+        }
+    }
+
+    /**
+     * 定时全量重载内存集合，兜底直接改库等绕过服务层的变更
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${approval.state.reload-interval:3600000}")
+    public void reload() {
+        long start = System.currentTimeMillis();
+        Set<Integer> current = ConcurrentHashMap.newKeySet();
+        current.addAll(this.achievementTableMapper.queryApprovedIds());
+        approvedIds.retainAll(current);
+        approvedIds.addAll(current);
+        loaded = true;
+        log.info("已审批成果集合加载完成，{}条，耗时{}ms", approvedIds.size(), System.currentTimeMillis() - start);
+    }
+
+    /*
+     * 审批通过事件的聚合ID是审批记录ID，按审批记录查所属成果；
+     * 事件只在取到它的节点上处理，失效成果缓存时经缓存失效总线通知其他节点同步审批状态
+     */
+    private void onApprovalApproved(List<OutboxEvent> events) {
+        for (OutboxEvent outboxEvent : events) {
+            Integer achievementId = this.approvalRecordsMapper.queryAchievementIdByApprovalId(outboxEvent.getAggregateId());
+            refresh(achievementId);
+            this.achievementCacheService.invalidate(achievementId);
+        }
+    }
+
+    /*
+     * 审核通过、归档事件的聚合ID即成果ID，其他节点由AchievementTableService处理同一事件时广播
+     */
+    private void onAchievementChanged(List<OutboxEvent> events) {
+        for (OutboxEvent outboxEvent : events) {
+            refresh(outboxEvent.getAggregateId());
+        }
+    }
+}
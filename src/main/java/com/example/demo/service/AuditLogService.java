@@ -0,0 +1,201 @@
+package com.example.demo.service;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.example.demo.utils.SegmentedLog;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 审计日志
+ * 操作日志、登录登出、下载、审批事件全部追加写入本地分段日志（SegmentedLog），不进关系库；
+ * 写入只是锁内的一次内存拷贝，由专用线程定时落盘，不占用共用的调度线程，按时间范围、用户、类型顺序读取。
+ * 审计日志只增不删，段文件需随数据目录一起备份。
+ * 只记录本节点：多节点部署时每个节点各写各的目录，查询和统计只覆盖处理该请求的节点，结果中的node标明来源；
+ * 需要完整的审计记录时，按node在每个节点分别查询，或定期收集各节点的段文件（按段文件名的偏移量顺序读取）
+ */
+@Slf4j
+@Service
+public class AuditLogService {
+    public static final int TYPE_LOG = 1;
+    public static final int TYPE_LOGIN = 2;
+    public static final int TYPE_LOGOUT = 3;
+    public static final int TYPE_DOWNLOAD = 4;
+    public static final int TYPE_APPROVAL = 5;
+
+    private static final String[] TYPE_NAMES = {"", "log", "login", "logout", "download", "approval"};
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${audit.log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${audit.log.dir:C:/data/audit/}")
+    private String auditDir;
+
+    @Value("${audit.log.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${audit.log.index-interval:4096}")
+    private int indexInterval;
+
+    /**
+     * 节点标识，默认主机名
+     */
+    @Value("${audit.log.node-id:}")
+    private String nodeId;
+
+    @Value("${audit.log.sync-interval:1000}")
+    private long syncInterval;
+
+    private SegmentedLog auditLog;
+    private ScheduledExecutorService syncExecutor;
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (nodeId == null || nodeId.isEmpty()) {
+            try {
+                nodeId = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                nodeId = "unknown";
+            }
+        }
+        if (enabled) {
+            this.auditLog = new SegmentedLog(new File(auditDir), segmentBytes, indexInterval);
+            this.syncExecutor = new ScheduledThreadPoolExecutor(1,
+                    ThreadFactoryBuilder.create().setNamePrefix("audit-log-sync-").setDaemon(true).build());
+            this.syncExecutor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+            log.info("审计日志只记录本节点{}的事件，目录{}", nodeId, auditDir);
+        }
+    }
+
+    /**
+     * 追加一条审计事件，写入失败只记错误日志，不影响业务；在事务内调用时等事务提交后再写，回滚的操作不留记录
+     *
+     * @param type 事件类型
+     * @param userId 用户ID，未知时为null
+     * @param content 事件内容
+     */
+    public void record(int type, Integer userId, String content) {
+        if (auditLog == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(type, userId, content);
+                }
+            });
+            return;
+        }
+        append(type, userId, content);
+    }
+
+    private void append(int type, Integer userId, String content) {
+        try {
+            auditLog.append(type, userId, System.currentTimeMillis(), content);
+        } catch (IOException | RuntimeException e) {
+            failedCount.incrementAndGet();
+            log.error("审计日志写入失败 type={} userId={} content={}", type, userId, content, e);
+        }
+    }
+
+    /**
+     * 按时间范围查询
+     *
+     * @param startTime 起始时间（含），yyyy-MM-dd HH:mm:ss
+     * @param endTime 结束时间（含），yyyy-MM-dd HH:mm:ss
+     * @param userId 用户ID，为null不过滤
+     * @param type 事件类型，为null不过滤
+     * @param limit 最多返回条数
+     * @return 本节点的事件列表，按写入顺序
+     * @throws IOException 读取失败
+     */
+    public List<Map<String, Object>> query(String startTime, String endTime, Integer userId, Integer type, int limit) throws IOException {
+        List<Map<String, Object>> res = new ArrayList<>();
+        if (auditLog == null) {
+            return res;
+        }
+        long from = startTime == null ? 0L : toMillis(startTime);
+        long to = endTime == null ? Long.MAX_VALUE : toMillis(endTime);
+        for (SegmentedLog.Record record : auditLog.readByTime(from, to, userId, type, limit)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("node", nodeId);
+            item.put("offset", record.getOffset());
+            item.put("time", LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getTimestamp()), ZoneId.systemDefault()).format(FORMATTER));
+            item.put("type", record.getType() < TYPE_NAMES.length ? TYPE_NAMES[record.getType()] : String.valueOf(record.getType()));
+            item.put("userId", record.getUserId());
+            item.put("content", record.getContent());
+            res.add(item);
+        }
+        return res;
+    }
+
+    /**
+     * 存储统计
+     *
+     * @return 节点、段数、字节数、偏移量、写入失败次数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("node", nodeId);
+        statistics.put("enabled", auditLog != null);
+        if (auditLog != null) {
+            statistics.putAll(auditLog.getStatistics());
+        }
+        statistics.put("failedCount", failedCount.get());
+        return statistics;
+    }
+
+    /**
+     * 定时落盘，在专用线程上执行，进程崩溃最多丢失一个周期内的事件
+     */
+    public void sync() {
+        if (auditLog == null) {
+            return;
+        }
+        try {
+            auditLog.sync();
+        } catch (Exception e) {
+            // 抛出的异常会让定时任务不再执行
+            log.error("审计日志落盘失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+            syncExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (auditLog != null) {
+            auditLog.close();
+        }
+    }
+
+    private static long toMillis(String time) {
+        return LocalDateTime.parse(time, FORMATTER).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
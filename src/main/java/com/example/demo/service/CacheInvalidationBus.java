@@ -0,0 +1,409 @@
+package com.example.demo.service;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.example.demo.utils.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 跨节点缓存失效总线
+ * 写操作提交后通过Redis发布订阅广播 节点|序号|版本|时间戳|实体类型|ID|附加信息，其他节点收到后失效各自的本地缓存；
+ * 附加信息由发布方给出（如成果写入前的类别），接收方据此缩小失效范围，可为空。
+ * 本节点的事件由单个发布线程按序分配序号并发出，收到的事件也由单个线程按到达顺序处理：
+ * 序号跳过（seq > last + 1）时先把后面的事件暂存，等缺的序号在乱序窗口内补到后按序处理；
+ * 窗口内没补到说明中间有消息丢失（断线重连等），此时所有类型全部失效。不大于已处理序号的是重复或过期事件，直接丢弃。
+ * 版本取自Redis上按实体类型递增的计数器，全局有序，同一ID收到的版本不大于已处理版本的事件不再处理，
+ * 避免多个节点先后写同一ID时旧事件晚到又触发一次重建。
+ * 发布到应用的延迟计入直方图，超过上限的计数并告警
+ */
+@Slf4j
+@Service
+public class CacheInvalidationBus implements MessageListener {
+    /**
+     * 实体类型：成果
+     */
+    public static final String TYPE_ACHIEVEMENT = "achievement";
+    /**
+     * 实体类型：注销的JWT
+     */
+    public static final String TYPE_JWT_BLACKLIST = "jwt";
+    /**
+     * ID为该值时表示该类型全部失效
+     */
+    public static final String ALL = "*";
+
+    private static final String SEPARATOR = "|";
+    private static final String REDIS_VERSION = "cache:bus:version:";
+
+    /**
+     * 记录已处理版本的ID数上限，超出时淘汰最早的
+     */
+    private static final int MAX_TRACKED_VERSIONS = 100000;
+
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${cache.bus.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.bus.channel:cache:invalidation}")
+    private String channel;
+
+    @Value("${cache.bus.max-lag:5000}")
+    private long maxLag;
+
+    /**
+     * 序号不连续时等待缺失消息的时间（毫秒），超过后按丢失处理
+     */
+    @Value("${cache.bus.reorder-window:1000}")
+    private long reorderWindow;
+
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 实体类型 -> 本地失效处理，参数为ID或ALL、附加信息
+     */
+    private final Map<String, List<BiConsumer<String, String>>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * 发布节点 -> 最后收到的序号
+     */
+    private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+    /**
+     * 发布节点 -> 序号 -> 等待前面序号补齐的事件，只在接收线程中访问
+     */
+    private final Map<String, TreeMap<Long, Pending>> pendings = new HashMap<>();
+
+    /**
+     * 实体类型|ID -> 已处理的版本，只在接收线程中访问
+     */
+    private final Map<String, Long> appliedVersions = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_VERSIONS;
+        }
+    };
+
+    /**
+     * 单线程发布，序号顺序即发出顺序
+     */
+    private ExecutorService publishExecutor;
+
+    /**
+     * 单线程处理收到的事件，同时负责乱序窗口到期后的丢失检查
+     */
+    private ScheduledExecutorService receiveExecutor;
+
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong lateCount = new AtomicLong();
+    private final AtomicLong gapCount = new AtomicLong();
+    private final AtomicLong reorderedCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            this.publishExecutor = singleThread("cache-bus-publisher-");
+            this.receiveExecutor = new ScheduledThreadPoolExecutor(1,
+                    ThreadFactoryBuilder.create().setNamePrefix("cache-bus-receiver-").setDaemon(true).build());
+            redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(channel));
+            log.info("缓存失效总线已启动，节点{}，频道{}", nodeId, channel);
+        }
+    }
+
+    /**
+     * 注册本地失效处理，同一类型可注册多个
+     *
+     * @param type 实体类型
+     * @param handler 收到其他节点的失效事件时调用，参数为ID或ALL
+     */
+    public void register(String type, Consumer<String> handler) {
+        register(type, (id, tag) -> handler.accept(id));
+    }
+
+    /**
+     * 注册本地失效处理，需要发布方附加信息时使用
+     *
+     * @param type 实体类型
+     * @param handler 收到其他节点的失效事件时调用，参数为ID或ALL、附加信息（没有时为null）
+     */
+    public void register(String type, BiConsumer<String, String> handler) {
+        handlers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * 广播失效事件，在事务内调用时提交后再发布，其他节点不会读到未提交前的旧数据
+     *
+     * @param type 实体类型
+     * @param id ID，全部失效时传ALL
+     */
+    public void publish(String type, Object id) {
+        publish(type, id, null);
+    }
+
+    /**
+     * 广播带附加信息的失效事件
+     *
+     * @param type 实体类型
+     * @param id ID，全部失效时传ALL
+     * @param tag 附加信息，可为null
+     */
+    public void publish(final String type, final Object id, final String tag) {
+        if (!enabled || id == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(type, String.valueOf(id), tag);
+                }
+            });
+        } else {
+            enqueue(type, String.valueOf(id), tag);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        final String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        receiveExecutor.execute(() -> handle(body));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        redisMessageListenerContainer.removeMessageListener(this);
+        publishExecutor.shutdown();
+        receiveExecutor.shutdown();
+        publishExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        receiveExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /*
+     * 在接收线程中处理一条事件
+     */
+    private void handle(String body) {
+        long receivedAt = System.currentTimeMillis();
+        // 附加信息在最后，本身可以含分隔符；旧格式没有附加信息
+        String[] parts = body.split("\\|", 7);
+        if (parts.length < 6) {
+            log.warn("忽略格式错误的缓存失效事件");
+            return;
+        }
+        String publisher = parts[0];
+        if (nodeId.equals(publisher)) {
+            return;
+        }
+        receivedCount.incrementAndGet();
+        long seq = Long.parseLong(parts[1]);
+        long version = Long.parseLong(parts[2]);
+        long delay = Math.max(0, receivedAt - Long.parseLong(parts[3]));
+        lag.record(delay);
+        if (delay > maxLag) {
+            lateCount.incrementAndGet();
+            log.warn("缓存失效事件延迟{}ms，来自节点{}", delay, publisher);
+        }
+
+        Long last = lastSequences.get(publisher);
+        if (last != null && seq <= last) {
+            staleCount.incrementAndGet();
+            return;
+        }
+        if (last != null && seq > last + 1) {
+            // 前面的序号可能还在路上，先暂存，窗口到期仍未补齐再按丢失处理
+            TreeMap<Long, Pending> pending = pendings.computeIfAbsent(publisher, key -> new TreeMap<>());
+            if (pending.putIfAbsent(seq, new Pending(parts, receivedAt)) != null) {
+                staleCount.incrementAndGet();
+                return;
+            }
+            receiveExecutor.schedule(() -> checkGap(publisher), reorderWindow, TimeUnit.MILLISECONDS);
+            return;
+        }
+        lastSequences.put(publisher, seq);
+        dispatch(parts, version);
+        drain(publisher);
+    }
+
+    /*
+     * 依次处理已经连上的暂存事件
+     */
+    private void drain(String publisher) {
+        TreeMap<Long, Pending> pending = pendings.get(publisher);
+        if (pending == null) {
+            return;
+        }
+        Map.Entry<Long, Pending> first;
+        while ((first = pending.firstEntry()) != null && first.getKey() == lastSequences.get(publisher) + 1) {
+            pending.pollFirstEntry();
+            reorderedCount.incrementAndGet();
+            lastSequences.put(publisher, first.getKey());
+            dispatch(first.getValue().parts, Long.parseLong(first.getValue().parts[2]));
+        }
+        if (pending.isEmpty()) {
+            pendings.remove(publisher);
+        }
+    }
+
+    /*
+     * 乱序窗口到期，最早的暂存事件前仍缺序号则认为消息已丢失
+     */
+    private void checkGap(String publisher) {
+        TreeMap<Long, Pending> pending = pendings.get(publisher);
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        Map.Entry<Long, Pending> first = pending.firstEntry();
+        if (System.currentTimeMillis() - first.getValue().receivedAt < reorderWindow) {
+            // 前面的缺口已补齐，剩下的是后来的新缺口，由它自己的检查处理
+            return;
+        }
+        long last = lastSequences.get(publisher);
+        long latest = pending.lastKey();
+        pendings.remove(publisher);
+        lastSequences.put(publisher, latest);
+        // 丢过消息时不知道漏了哪些ID，所有类型全部失效，暂存的事件也一并覆盖
+        gapCount.incrementAndGet();
+        log.warn("节点{}的缓存失效事件序号从{}跳到{}，本地缓存全部失效", publisher, last, first.getKey());
+        for (String key : handlers.keySet()) {
+            apply(key, ALL, null);
+        }
+    }
+
+    private void dispatch(String[] parts, long version) {
+        String type = parts[4];
+        String id = parts[5];
+        if (!ALL.equals(id)) {
+            String key = type + SEPARATOR + id;
+            Long applied = appliedVersions.get(key);
+            if (applied != null && version <= applied) {
+                staleCount.incrementAndGet();
+                return;
+            }
+            appliedVersions.put(key, version);
+        }
+        apply(type, id, parts.length > 6 && !parts[6].isEmpty() ? parts[6] : null);
+    }
+
+    /**
+     * 总线统计
+     *
+     * @return 节点、发布数、接收数、延迟分位（毫秒）、超时数、乱序补齐数、丢失检测数、处理失败数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("enabled", enabled);
+        statistics.put("nodeId", nodeId);
+        statistics.put("publishedCount", publishedCount.get());
+        statistics.put("receivedCount", receivedCount.get());
+        statistics.put("lagMs", lag.summary());
+        statistics.put("maxLagMs", maxLag);
+        statistics.put("lateCount", lateCount.get());
+        statistics.put("reorderWindowMs", reorderWindow);
+        statistics.put("reorderedCount", reorderedCount.get());
+        statistics.put("gapCount", gapCount.get());
+        statistics.put("staleCount", staleCount.get());
+        statistics.put("failedCount", failedCount.get());
+        statistics.put("peers", new ArrayList<>(lastSequences.keySet()));
+        return statistics;
+    }
+
+    private void enqueue(final String type, final String id, final String tag) {
+        try {
+            publishExecutor.execute(() -> send(type, id, tag));
+        } catch (RuntimeException e) {
+            // 停机过程中发布，其他节点靠定时重载兜底
+            failedCount.incrementAndGet();
+            log.warn("缓存失效事件未发布：{} {}", type, id, e);
+        }
+    }
+
+    /*
+     * 只在发布线程中调用，序号按发出顺序递增
+     */
+    private void send(String type, String id, String tag) {
+        long seq = sequence.incrementAndGet();
+        try {
+            Long version = redisTemplate.opsForValue().increment(REDIS_VERSION + type);
+            String message = nodeId + SEPARATOR + seq + SEPARATOR + version
+                    + SEPARATOR + System.currentTimeMillis() + SEPARATOR + type + SEPARATOR + id
+                    + SEPARATOR + (tag == null ? "" : tag);
+            redisTemplate.convertAndSend(channel, message);
+            publishedCount.incrementAndGet();
+        } catch (Exception e) {
+            // 序号已经占用，其他节点会按丢失处理
+            failedCount.incrementAndGet();
+            log.warn("缓存失效事件发布失败：{} {}", type, id, e);
+        }
+    }
+
+    private static ExecutorService singleThread(String namePrefix) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                ThreadFactoryBuilder.create().setNamePrefix(namePrefix).setDaemon(true).build());
+    }
+
+    private void apply(String type, String id, String tag) {
+        List<BiConsumer<String, String>> list = handlers.get(type);
+        if (list == null) {
+            return;
+        }
+        for (BiConsumer<String, String> handler : list) {
+            try {
+                handler.accept(id, tag);
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                log.error("处理缓存失效事件失败：{} {}", type, id, e);
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final String[] parts;
+        private final long receivedAt;
+
+        private Pending(String[] parts, long receivedAt) {
+            this.parts = parts;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.demo.service;
+
+import cn.hutool.core.thread.ThreadFactoryBuilder;
+import com.example.demo.mapper.AchievementContentMapper;
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.model.AchievementContent;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.model.OutboxEvent;
+import com.example.demo.utils.RateLimiter;
+import com.example.demo.utils.TextExtractor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 归档文件全文索引服务
+ * 成果归档事件由发件箱分发过来，把zip提交到后台线程池，抽取文本写入achievement_content，
+ * 模糊查询的关键词会同时匹配这部分内容；
+ * 线程为低优先级且按速率限流，队列有界，满了该事件处理失败，由发件箱稍后重试
+ */
+@Slf4j
+@Service
+public class ContentIndexService {
+    @Resource
+    private AchievementContentMapper achievementContentMapper;
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private SearchCacheService searchCacheService;
+    @Resource
+    private OutboxService outboxService;
+
+    @Value("${content.index.threads:2}")
+    private int threads;
+
+    @Value("${content.index.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${content.index.files-per-second:2}")
+    private double filesPerSecond;
+
+    @Value("${content.index.max-chars:1000000}")
+    private int maxChars;
+
+    @Value("${content.index.max-entry-bytes:104857600}")
+    private long maxEntryBytes;
+
+    private ThreadPoolExecutor executor;
+
+    private RateLimiter rateLimiter;
+
+    @PostConstruct
+    public void init() {
+        this.rateLimiter = new RateLimiter(filesPerSecond);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                ThreadFactoryBuilder.create()
+                        .setNamePrefix("content-index-")
+                        .setDaemon(true)
+                        .setPriority(Thread.MIN_PRIORITY)
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.outboxService.register(OutboxService.ACHIEVEMENT_ARCHIVED, this::onArchived);
+    }
+
+    /**
+     * 提交归档文件抽取任务
+     *
+     * @param achievementId 成果ID
+     * @param zip 归档文件
+     * @return 已入队返回true，队列已满返回false
+     */
+    public boolean submit(final Integer achievementId, final File zip) {
+        try {
+            this.executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        rateLimiter.acquire();
+                        index(achievementId, zip);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 抽取归档文件文本并写库
+     *
+     * @param achievementId 成果ID
+     * @param zip 归档文件
+     */
+    public void index(Integer achievementId, File zip) {
+        long start = System.currentTimeMillis();
+        try {
+            String text = TextExtractor.extract(zip, maxChars, maxEntryBytes);
+            AchievementContent achievementContent = new AchievementContent();
+            achievementContent.setAchievementId(achievementId);
+            achievementContent.setFileName(zip.getName());
+            achievementContent.setContent(text);
+            achievementContent.setExtractTime(new Date());
+            this.achievementContentMapper.deleteById(achievementId);
+            this.achievementContentMapper.insert(achievementContent);
+            AchievementTable achievementTable = this.achievementTableMapper.queryById(achievementId);
+            this.searchCacheService.invalidate(achievementId,
+                    achievementTable == null ? null : achievementTable.getAchievementCategory());
+            log.info("成果{}全文索引完成，{}字，耗时{}ms", achievementId, text.length(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("成果{}全文索引失败：{}", achievementId, zip.getPath(), e);
+        }
+    }
+
+    /*
+     * 归档事件：提交全文抽取，队列满时抛出异常让发件箱退避重试
+     */
+    private void onArchived(List<OutboxEvent> events) {
+        for (OutboxEvent outboxEvent : events) {
+            Object file = this.outboxService.payloadOf(outboxEvent).get("file");
+            if (file == null) {
+                continue;
+            }
+            if (!submit(outboxEvent.getAggregateId(), new File(file.toString()))) {
+                throw new IllegalStateException("全文索引队列已满，成果" + outboxEvent.getAggregateId() + "稍后重试");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -1,67 +1,558 @@
 package com.example.demo.service;
 
+import com.example.demo.utils.BackupEngine;
+import com.example.demo.utils.RestoreEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 数据库备份
+ * 进程内逻辑备份，不再调用kbsdump：所有表在同一快照下并行导出为压缩、带校验和的NDJSON分块，
+ * 每次备份一个目录，目录名即备份ID，清单见BackupEngine。备份完成后重新读取全部分块校验行数和校验和，校验不通过的备份清单改名作废。
+ * 每月一次全量备份，每天一次增量备份接在最近一次备份之后；没有可用的上一次备份或刚恢复过时增量改为全量。
+ * 备份成功后清理已被覆盖的变更记录。变更记录表backup_change_log所有节点共用，备份前先取数据库咨询锁，
+ * 同一时间只有一个节点在备份，其他节点的定时备份直接跳过；多节点部署时backup.dir须为共享目录，
+ * 否则各节点的增量链互不相通，一个节点清理后另一个节点的增量会漏掉变更。恢复按增量链从全量备份开始并行重放，索引在装入后重建，默认关闭。
+ * 恢复默认写入backup.restore.url指定的另一个库，核对无误后再把应用切换过去，不影响正在服务的库；
+ * 开启backup.restore.in-place时才在正在服务的库上恢复（需先停止其他节点）：恢复期间本节点进入维护模式拒绝写入，
+ * 结束后丢弃恢复前累计的计数增量，清空缓存并重建联想、相似和审批状态索引。
+ * 同一时间只运行一个备份或恢复，进度通过/DataBackup/progress查询
+ */
+@Slf4j
 @Service
 public class DataBackupService {
-//    public String backupKingbaseDatabase(String dbName, String backupPath, String dbHost, String dbUser, String dbPort) {
-//        // 构造 kbsdump 命令
-//        String command = String.format("kbsdump -h %s -U %s -p %s -d %s -F c -f %s",
-//                dbHost, dbUser, dbPort, dbName, backupPath);
-//
-//        // 使用 ProcessBuilder 执行命令
-//        ProcessBuilder processBuilder = new ProcessBuilder();
-//        processBuilder.command("bash", "-c", command);
-//
-//        try {
-//            Process process = processBuilder.start();
-//            int exitCode = process.waitFor();  // 等待命令执行完成
-//
-//            if (exitCode == 0) {
-//                return "Backup successful! File saved at: " + backupPath;
-//            } else {
-//                return "Backup failed!";
-//            }
-//        } catch (IOException | InterruptedException e) {
-//            e.printStackTrace();
-//            return "Error during backup: " + e.getMessage();
-//        }
-//    }
-// 定时任务：每月1号0点执行数据库备份
-@Scheduled(cron = "0 0 0 1 * ?")  // cron 表达式：每月1号0点执行
-public void backupDatabase() {
-    String dbName = "your_database";  // 替换为你的数据库名
-    String backupPath = "/path/to/backup/your_database_backup_" + System.currentTimeMillis() + ".sql";
-    String dbHost = "localhost";
-    String dbUser = "your_username";
-    String dbPassword = "your_password";
-    String dbPort = "54321";  // 例如人大金仓数据库端口
-
-    // 执行备份操作
-    String result = backupDatabaseCommand(dbName, backupPath, dbHost, dbUser, dbPassword, dbPort);
-    System.out.println(result);  // 输出备份结果
-}
+    private static final DateTimeFormatter ID_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String RESTORED_MARKER = "restored";
+    /**
+     * 备份用的咨询锁键，所有节点相同
+     */
+    private static final long BACKUP_LOCK_KEY = 0x6261636b7570L;
+
+    @Resource
+    private DataSource dataSource;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private MaintenanceService maintenanceService;
+    @Resource
+    private AchievementTableService achievementTableService;
+    @Resource
+    private SearchCountService searchCountService;
+    @Resource
+    private DownloadCountService downloadCountService;
+
+    @Value("${backup.dir:C:/data/backup/}")
+    private String backupDir;
+
+    @Value("${backup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${backup.chunk-rows:100000}")
+    private int chunkRows;
+
+    @Value("${backup.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${backup.verify:true}")
+    private boolean verifyAfterBackup;
+
+    @Value("${backup.restore.enabled:false}")
+    private boolean restoreEnabled;
+
+    @Value("${backup.restore.parallelism:4}")
+    private int restoreParallelism;
+
+    @Value("${backup.restore.batch-size:1000}")
+    private int restoreBatchSize;
+
+    @Value("${backup.restore.maintenance-work-mem:512MB}")
+    private String restoreMaintenanceWorkMem;
+
+    /**
+     * 恢复目标库，为空时只能在开启in-place后恢复到正在服务的库
+     */
+    @Value("${backup.restore.url:}")
+    private String restoreUrl;
+
+    @Value("${backup.restore.username:}")
+    private String restoreUsername;
+
+    @Value("${backup.restore.password:}")
+    private String restorePassword;
 
-    // 调用数据库备份命令
-    private String backupDatabaseCommand(String dbName, String backupPath, String dbHost, String dbUser, String dbPassword, String dbPort) {
-        String command = String.format("kbsdump -h %s -U %s -p %s -d %s -F c -f %s", dbHost, dbUser, dbPort, dbName, backupPath);
-        ProcessBuilder processBuilder = new ProcessBuilder();
-        processBuilder.command("bash", "-c", command);
+    @Value("${backup.restore.in-place:false}")
+    private boolean restoreInPlace;
+
+    /**
+     * 进入维护模式后等待进行中的写请求结束的时间
+     */
+    @Value("${backup.restore.drain-ms:2000}")
+    private long restoreDrainMs;
+
+    private BackupEngine engine;
+    private RestoreEngine restoreEngine;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService launcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "backup-launcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile Progress progress;
+
+    @PostConstruct
+    public void init() {
+        this.engine = new BackupEngine(dataSource::getConnection, objectMapper, parallelism, chunkRows, fetchSize);
+        DataSource restoreTarget = restoreUrl.isEmpty() ? dataSource
+                : new DriverManagerDataSource(restoreUrl, restoreUsername, restorePassword);
+        this.restoreEngine = new RestoreEngine(restoreTarget::getConnection, objectMapper, restoreParallelism, restoreBatchSize,
+                restoreMaintenanceWorkMem);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        launcher.shutdownNow();
+    }
+
+    /**
+     * 定时全量备份，默认每月1号0点；在launcher线程上运行，不占用调度线程
+     */
+    @Scheduled(cron = "${backup.full-cron:0 0 0 1 * ?}")
+    public void backupDatabase() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("上一次备份尚未结束，跳过本次全量备份");
+            return;
+        }
+        launcher.execute(() -> runBackup(null));
+    }
+
+    /**
+     * 定时增量备份，默认每天1点；在launcher线程上运行，不占用调度线程
+     */
+    @Scheduled(cron = "${backup.incremental-cron:0 0 1 * * ?}")
+    public void backupIncremental() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("上一次备份尚未结束，跳过本次增量备份");
+            return;
+        }
+        launcher.execute(() -> runBackup(parentOf()));
+    }
+
+    /**
+     * 后台开始一次备份
+     *
+     * @param incremental 是否增量备份
+     * @return 备份ID，已有备份或恢复在运行时返回null
+     */
+    public String startBackup(boolean incremental) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        JsonNode parent = incremental ? parentOf() : null;
+        String id = idOf(parent);
+        launcher.execute(() -> runBackup(id, parent));
+        return id;
+    }
+
+    /**
+     * 后台按备份链恢复到指定备份，需开启backup.restore.enabled，并配置backup.restore.url或开启backup.restore.in-place
+     *
+     * @param id 链尾的备份ID
+     * @return 已有备份或恢复在运行时返回false
+     * @throws IOException 清单无法读取
+     */
+    public boolean startRestore(String id) throws IOException {
+        if (!restoreEnabled) {
+            throw new IllegalStateException("未开启恢复功能");
+        }
+        if (restoreUrl.isEmpty() && !restoreInPlace) {
+            throw new IllegalStateException("未配置恢复目标库backup.restore.url；在正在服务的库上恢复需开启backup.restore.in-place并先停止其他节点");
+        }
+        List<File> chain = chainOf(id);
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        launcher.execute(() -> runRestore(id, chain));
+        return true;
+    }
+
+    /**
+     * 恢复到指定备份所需的备份链，从全量备份开始
+     *
+     * @param id 链尾的备份ID
+     * @return 备份目录
+     * @throws IOException 清单无法读取
+     */
+    public List<File> chainOf(String id) throws IOException {
+        LinkedList<File> chain = new LinkedList<>();
+        String current = id;
+        while (true) {
+            File dir = backupDirOf(current);
+            File manifestFile = new File(dir, BackupEngine.MANIFEST);
+            if (!manifestFile.isFile()) {
+                throw new IllegalArgumentException("备份不存在或未完成: " + current);
+            }
+            chain.addFirst(dir);
+            JsonNode manifest = objectMapper.readTree(manifestFile);
+            if (!"incremental".equals(manifest.path("type").asText())) {
+                return chain;
+            }
+            current = manifest.path("parent").asText();
+        }
+    }
+
+    /**
+     * 当前或最近一次备份的进度
+     *
+     * @return 状态、每张表已导出行数和估计行数，没有备份过时为null
+     */
+    public Map<String, Object> getProgress() {
+        Progress current = progress;
+        return current == null ? null : current.toMap();
+    }
+
+    /**
+     * 已完成的备份，按快照时间倒序
+     *
+     * @return 每个备份的ID、类型、上一次备份、快照时间、行数、字节数
+     */
+    public List<Map<String, Object>> listBackups() throws IOException {
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (JsonNode manifest : manifests()) {
+            long rows = 0;
+            long bytes = 0;
+            for (JsonNode table : manifest.path("tables")) {
+                rows += table.path("rows").asLong();
+                for (JsonNode chunk : table.path("chunks")) {
+                    bytes += chunk.path("bytes").asLong();
+                }
+                for (JsonNode chunk : table.path("deleteChunks")) {
+                    bytes += chunk.path("bytes").asLong();
+                }
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", manifest.path("id").asText());
+            item.put("type", manifest.path("type").asText());
+            item.put("parent", manifest.has("parent") ? manifest.path("parent").asText() : null);
+            item.put("snapshotTime", manifest.path("snapshotTime").asText());
+            item.put("finishedAt", manifest.path("finishedAt").asText());
+            item.put("tables", manifest.path("tables").size());
+            item.put("rows", rows);
+            item.put("bytes", bytes);
+            res.add(item);
+        }
+        return res;
+    }
+
+    /**
+     * 校验备份：重新计算每个分块的行数和校验和
+     *
+     * @param id 备份ID
+     * @return 出错的分块说明，为空表示通过
+     */
+    public List<String> verify(String id) throws IOException {
+        File dir = backupDirOf(id);
+        if (!new File(dir, BackupEngine.MANIFEST).isFile()) {
+            throw new IllegalArgumentException("备份不存在或未完成: " + id);
+        }
+        return BackupEngine.verify(dir, objectMapper);
+    }
+
+    /**
+     * 备份目录，ID只允许字母、数字和短横线
+     *
+     * @param id 备份ID
+     * @return 目录
+     */
+    public File backupDirOf(String id) {
+        if (id == null || !id.matches("[A-Za-z0-9-]+")) {
+            throw new IllegalArgumentException("备份ID不合法: " + id);
+        }
+        return new File(backupDir, id);
+    }
+
+    /*
+     * 已完成的备份清单，按快照时间倒序
+     */
+    private List<JsonNode> manifests() throws IOException {
+        List<JsonNode> res = new ArrayList<>();
+        File[] dirs = new File(backupDir).listFiles(file -> new File(file, BackupEngine.MANIFEST).isFile());
+        if (dirs == null) {
+            return res;
+        }
+        for (File dir : dirs) {
+            res.add(objectMapper.readTree(new File(dir, BackupEngine.MANIFEST)));
+        }
+        res.sort((a, b) -> b.path("snapshotTime").asText().compareTo(a.path("snapshotTime").asText()));
+        return res;
+    }
 
+    /*
+     * 增量备份接在最近一次备份之后，没有可用的备份或恢复后尚未全量备份时返回null，即改为全量
+     */
+    private JsonNode parentOf() {
+        if (new File(backupDir, RESTORED_MARKER).exists()) {
+            return null;
+        }
+        try {
+            List<JsonNode> manifests = manifests();
+            // 早于变更捕获的备份没有txidSnapshot，不能作为增量的起点
+            return manifests.isEmpty() || !manifests.get(0).has("txidSnapshot") ? null : manifests.get(0);
+        } catch (IOException e) {
+            log.warn("读取备份清单失败，改为全量备份", e);
+            return null;
+        }
+    }
+
+    private static String idOf(JsonNode parent) {
+        return (parent == null ? "full-" : "incr-") + LocalDateTime.now().format(ID_FORMATTER);
+    }
+
+    private void runBackup(JsonNode parent) {
+        runBackup(idOf(parent), parent);
+    }
+
+    private void runBackup(String id, JsonNode parent) {
+        File restored = new File(backupDir, RESTORED_MARKER);
+        Progress current = new Progress(id, "RUNNING");
+        progress = current;
+        File dir = new File(backupDir, id);
+        Connection lock = null;
+        try {
+            lock = tryLock();
+            if (lock == null) {
+                current.status = "SKIPPED";
+                current.error = "其他节点正在备份";
+                log.warn("其他节点正在备份，跳过{}", id);
+                return;
+            }
+            Map<String, Object> manifest = parent == null
+                    ? engine.backup(dir, id, current)
+                    : engine.incrementalBackup(dir, id, parent, current);
+            if (verifyAfterBackup) {
+                current.status = "VERIFYING";
+                List<String> errors = BackupEngine.verify(dir, objectMapper);
+                if (!errors.isEmpty()) {
+                    // 作废清单，之后的增量备份不会接在这次备份之后
+                    Files.move(new File(dir, BackupEngine.MANIFEST).toPath(), new File(dir, BackupEngine.MANIFEST + ".invalid").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    throw new IllegalStateException("备份校验失败: " + errors);
+                }
+            }
+            if (parent == null && restored.exists() && !restored.delete()) {
+                log.warn("无法删除恢复标记{}", restored.getPath());
+            }
+            current.status = "SUCCESS";
+            log.info("备份完成 {} {}行", id, current.totalRows());
+            try {
+                int purged = engine.purgeChanges((String) manifest.get("txidSnapshot"));
+                log.info("清理已备份的变更记录{}条", purged);
+            } catch (SQLException e) {
+                log.warn("清理变更记录失败", e);
+            }
+        } catch (Exception e) {
+            current.status = "FAILED";
+            current.error = String.valueOf(e.getMessage());
+            log.error("备份失败 {}", id, e);
+        } finally {
+            unlock(lock);
+            current.finishedAt = LocalDateTime.now().format(FORMATTER);
+            running.set(false);
+        }
+    }
+
+    /*
+     * 取备份咨询锁，成功时返回持有锁的连接，备份结束后由unlock释放；已被其他节点持有时返回null
+     */
+    private Connection tryLock() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        try (PreparedStatement ps = connection.prepareStatement("select pg_try_advisory_lock(?)")) {
+            ps.setLong(1, BACKUP_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return connection;
+                }
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        connection.close();
+        return null;
+    }
+
+    /*
+     * 咨询锁属于会话，连接归还连接池前必须显式释放
+     */
+    private void unlock(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try (Connection c = connection;
+             PreparedStatement ps = c.prepareStatement("select pg_advisory_unlock(?)")) {
+            ps.setLong(1, BACKUP_LOCK_KEY);
+            ps.execute();
+        } catch (SQLException e) {
+            log.warn("释放备份咨询锁失败", e);
+        }
+    }
+
+    private void runRestore(String id, List<File> chain) {
+        Progress current = new Progress("restore-" + id, "RESTORING");
+        progress = current;
+        boolean inPlace = restoreUrl.isEmpty();
+        try {
+            if (inPlace) {
+                // 恢复出的数据与原库的变更记录不再对应，下一次备份必须是全量
+                File restored = new File(backupDir, RESTORED_MARKER);
+                if (!restored.exists() && !restored.createNewFile()) {
+                    throw new IOException("无法创建恢复标记" + restored.getPath());
+                }
+                maintenanceService.begin("正在恢复备份" + id);
+                Thread.sleep(restoreDrainMs);
+            }
+            Map<String, Object> res = restoreEngine.restore(chain, current);
+            List<?> errors = (List<?>) res.get("errors");
+            if (!errors.isEmpty()) {
+                throw new IllegalStateException("恢复后核对失败: " + errors);
+            }
+            current.status = "SUCCESS";
+            log.info("已恢复到备份 {} {}行，耗时{}", id, current.totalRows(), res.get("timings"));
+        } catch (Exception e) {
+            current.status = "FAILED";
+            current.error = String.valueOf(e.getMessage());
+            log.error("恢复失败 {}", id, e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            if (inPlace) {
+                // 成功与否库中数据都已变化，内存中的状态一律按当前库重建
+                resetAfterRestore();
+                maintenanceService.end();
+            }
+            current.finishedAt = LocalDateTime.now().format(FORMATTER);
+            running.set(false);
+        }
+    }
+
+    /*
+     * 在正在服务的库上恢复之后：丢弃恢复前累计的计数增量，清空成果和搜索缓存，重建联想、相似和审批状态索引
+     */
+    private void resetAfterRestore() {
+        searchCountService.discard();
+        try {
+            downloadCountService.discard();
+        } catch (IOException | RuntimeException e) {
+            log.error("恢复后丢弃下载计数增量失败", e);
+        }
         try {
-            Process process = processBuilder.start();
-            int exitCode = process.waitFor();  // 等待命令执行完成
-            if (exitCode == 0) {
-                return "Backup successful! File saved at: " + backupPath;
-            } else {
-                return "Backup failed!";
+            achievementTableService.reloadAll();
+        } catch (RuntimeException e) {
+            log.error("恢复后重建缓存和索引失败", e);
+        }
+    }
+
+    /*
+     * 备份进度，工作线程更新，接口线程读取
+     */
+    private static class Progress implements BackupEngine.Listener {
+        private final String id;
+        private final String startedAt = LocalDateTime.now().format(FORMATTER);
+        private volatile String status;
+        private volatile String finishedAt;
+        private volatile String error;
+        private final Map<String, TableProgress> tables = new ConcurrentHashMap<>();
+
+        private Progress(String id, String status) {
+            this.id = id;
+            this.status = status;
+        }
+
+        @Override
+        public void onTableStart(String table, long estimatedRows) {
+            tables.put(table, new TableProgress(estimatedRows));
+        }
+
+        @Override
+        public void onRows(String table, long rows) {
+            tables.get(table).rows.set(rows);
+        }
+
+        @Override
+        public void onTableDone(String table, long rows) {
+            TableProgress tableProgress = tables.get(table);
+            tableProgress.rows.set(rows);
+            tableProgress.done = true;
+        }
+
+        private long totalRows() {
+            long rows = 0;
+            for (TableProgress tableProgress : tables.values()) {
+                rows += tableProgress.rows.get();
             }
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
-            return "Error during backup: " + e.getMessage();
+            return rows;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> res = new LinkedHashMap<>();
+            res.put("id", id);
+            res.put("status", status);
+            res.put("startedAt", startedAt);
+            res.put("finishedAt", finishedAt);
+            res.put("error", error);
+            res.put("rows", totalRows());
+            Map<String, Object> tableMap = new TreeMap<>();
+            for (Map.Entry<String, TableProgress> entry : tables.entrySet()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("rows", entry.getValue().rows.get());
+                item.put("estimatedRows", entry.getValue().estimatedRows);
+                item.put("done", entry.getValue().done);
+                tableMap.put(entry.getKey(), item);
+            }
+            res.put("tables", tableMap);
+            return res;
+        }
+    }
+
+    private static class TableProgress {
+        private final long estimatedRows;
+        private final AtomicLong rows = new AtomicLong();
+        private volatile boolean done;
+
+        private TableProgress(long estimatedRows) {
+            this.estimatedRows = estimatedRows;
         }
     }
 }
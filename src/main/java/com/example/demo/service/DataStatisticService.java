@@ -4,6 +4,7 @@ import com.alibaba.druid.sql.visitor.functions.Now;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import com.example.demo.mapper.DataStatisticMapper;
 import org.springframework.stereotype.Service;
 import com.example.demo.utils.JSONResult;
@@ -28,6 +29,12 @@ public class DataStatisticService {
     private DataStatisticMapper dataStatisticMapper;
     @Resource
     private UserRolePermissionsMapper userRolePermissionsMapper;
+    @Resource
+    private AuditLogService auditLogService;
+
+    // 登录记录按月分区，查找未登出的登录记录时只看最近这些天，超过的视为已失效会话
+    @Value("${statistics.session-window-days:31}")
+    private int sessionWindowDays;
 
 
     public Integer userLoginInsert(Integer userId, String userName) {
@@ -41,6 +48,7 @@ public class DataStatisticService {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         String formattedLogInTime = sdf.format(logIn_Time);
 
+        auditLogService.record(AuditLogService.TYPE_LOGIN, userId, userName);
         return this.dataStatisticMapper.userLoginInsert(userId, userName, formattedLogInTime, formattedLogInTime, null);
     }
 
@@ -67,8 +75,9 @@ public class DataStatisticService {
         String formattedLogOutTime = sdf.format(logOut_Time);
 
         String onlineDuration = onlineUserDuration(userName);
+        auditLogService.record(AuditLogService.TYPE_LOGOUT, null, userName + " duration=" + onlineDuration);
 
-        return this.dataStatisticMapper.updateLogOutInfo(userName, formattedLogOutTime, onlineDuration);
+        return this.dataStatisticMapper.updateLogOutInfo(userName, formattedLogOutTime, onlineDuration, sessionSince());
     }
 
 
@@ -77,7 +86,12 @@ public class DataStatisticService {
         log.info("getLogInTimeByUsername");
         log.info("userName " + userName);
 
-        return this.dataStatisticMapper.getLogInTimeByUsername(userName);
+        return this.dataStatisticMapper.getLogInTimeByUsername(userName, sessionSince());
+    }
+
+    // 会话窗口起点，格式与login_time一致，用作分区裁剪条件
+    private String sessionSince() {
+        return LocalDateTime.now().minusDays(sessionWindowDays).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
     }
 
     // 计算当前用户的在线时长
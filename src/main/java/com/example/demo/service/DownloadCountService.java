@@ -0,0 +1,340 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.utils.StripedCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 成果下载次数统计
+ * 下载时只在内存中累加并追加一行本地日志，定时按成果ID分段合并成批量UPDATE写入achievement_download_count。
+ * 日志每段以批次号开头，批次内每段以“批次号-段号”登记，登记和该段增量在同一事务内提交；
+ * 某段失败时整个批次留待重试，已提交的段跳过，重启后按日志恢复未写库的增量，不会重复累加
+ */
+@Slf4j
+@Service
+public class DownloadCountService {
+    private static final String JOURNAL = "download-count.journal";
+    private static final String FLUSHING = "download-count.journal.flushing";
+    private static final String HEADER = "#";
+
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private PlatformTransactionManager transactionManager;
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    /**
+     * 每条UPDATE最多累加的成果数；分段号记入登记表，有批次待重试时不要修改
+     */
+    private static final int FLUSH_CHUNK = 500;
+
+    @Value("${download.count.journal-dir:C:/data/journal/}")
+    private String journalDir;
+
+    /**
+     * 每条日志是否强制落盘；关闭时只保证进程崩溃不丢，断电可能丢失最后几条
+     */
+    @Value("${download.count.journal-sync:false}")
+    private boolean journalSync;
+
+    private final StripedCounter downloadCounter = new StripedCounter();
+    /**
+     * 串行化flush和discard，锁住期间下载照常追加到日志
+     */
+    private final Object flushLock = new Object();
+    private TransactionTemplate transactionTemplate;
+
+    private File journalFile;
+    private File flushingFile;
+    private FileOutputStream journalStream;
+    private Writer journalWriter;
+
+    @PostConstruct
+    public void init() throws IOException {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        File dir = new File(journalDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建下载计数日志目录" + journalDir);
+        }
+        this.journalFile = new File(dir, JOURNAL);
+        this.flushingFile = new File(dir, FLUSHING);
+        // 上次写库中断的批次留在flushing文件里，由下一次flush按批次号重试；当前日志直接恢复进内存继续追加
+        if (journalFile.exists()) {
+            truncateTornTail(journalFile);
+            Map<Integer, Long> deltas = new HashMap<>();
+            String flushId = readJournal(journalFile, deltas);
+            downloadCounter.restore(deltas);
+            if (flushId != null) {
+                openJournal(null);
+                log.info("从下载计数日志恢复{}条未写库的增量", deltas.size());
+                return;
+            }
+            // 没有批次号说明文件在写头部时就中断了，里面不会有增量
+            Files.delete(journalFile.toPath());
+        }
+        openJournal(UUID.randomUUID().toString());
+    }
+
+    /**
+     * 记录一次下载
+     *
+     * @param achievementId 成果ID
+     */
+    public void increment(Integer achievementId) {
+        add(achievementId, 1L);
+    }
+
+    /**
+     * 记录多次下载
+     *
+     * @param deltas 成果ID -> 下载次数
+     */
+    public void increase(Map<Integer, Long> deltas) {
+        for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 查询尚未写库的下载次数
+     *
+     * @param achievementId 成果ID
+     * @return 未写库的增量
+     */
+    public long pending(Integer achievementId) {
+        return downloadCounter.pending(achievementId);
+    }
+
+    /**
+     * 定时将累计的下载次数写库
+     * 先重试上次失败的批次，成功后才切出新批次，保证同一时刻最多只有一个批次在途
+     */
+    @Scheduled(fixedDelayString = "${download.count.flush-interval:10000}")
+    public void flush() {
+        if (maintenanceService.isActive()) {
+            return;
+        }
+        synchronized (flushLock) {
+            flushJournal();
+        }
+    }
+
+    /**
+     * 丢弃尚未写库的下载次数，包括写库失败待重试的批次，用于整库恢复之后：增量是在恢复前的数据上累计的
+     *
+     * @throws IOException 日志无法重建
+     */
+    public void discard() throws IOException {
+        synchronized (flushLock) {
+            Files.deleteIfExists(flushingFile.toPath());
+            synchronized (this) {
+                Map<Integer, Long> deltas = downloadCounter.drain();
+                journalWriter.close();
+                Files.deleteIfExists(journalFile.toPath());
+                openJournal(UUID.randomUUID().toString());
+                log.warn("丢弃{}条未写库的下载次数增量", deltas.size());
+            }
+        }
+    }
+
+    private void flushJournal() {
+        try {
+            if (flushingFile.exists()) {
+                if (!apply(flushingFile)) {
+                    return;
+                }
+                Files.delete(flushingFile.toPath());
+            }
+            synchronized (this) {
+                Map<Integer, Long> deltas = downloadCounter.drain();
+                if (deltas.isEmpty()) {
+                    return;
+                }
+                journalWriter.close();
+                try {
+                    Files.move(journalFile.toPath(), flushingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // 日志没有切走，增量仍在当前日志里，放回内存继续追加
+                    downloadCounter.restore(deltas);
+                    openJournal(null);
+                    throw e;
+                }
+                openJournal(UUID.randomUUID().toString());
+            }
+            if (apply(flushingFile)) {
+                Files.delete(flushingFile.toPath());
+            }
+        } catch (IOException e) {
+            log.error("下载计数日志切换失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        synchronized (this) {
+            journalWriter.close();
+        }
+    }
+
+    /*
+     * 日志追加和内存累加在同一把锁内，flush切日志时内存中的增量与日志内容始终一致；
+     * 调用时下载记录已提交，日志写失败也照常累加到内存，只是进程崩溃时这部分会丢
+     */
+    private synchronized void add(Integer achievementId, long delta) {
+        if (achievementId == null || delta == 0) {
+            return;
+        }
+        try {
+            journalWriter.write(achievementId + " " + delta + "\n");
+            journalWriter.flush();
+            if (journalSync) {
+                journalStream.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            log.error("下载计数日志写入失败，成果{}的{}次下载只记在内存中", achievementId, delta, e);
+        }
+        downloadCounter.add(achievementId, delta);
+    }
+
+    /*
+     * 按批次号分段幂等地写入一个日志文件中的增量，全部段都已提交时返回true
+     */
+    private boolean apply(File file) {
+        final Map<Integer, Long> deltas = new HashMap<>();
+        final String flushId;
+        try {
+            flushId = readJournal(file, deltas);
+        } catch (IOException e) {
+            log.error("读取下载计数日志失败", e);
+            return false;
+        }
+        if (flushId == null || deltas.isEmpty()) {
+            return true;
+        }
+        try {
+            // 分段之前的版本按整个批次登记
+            if (achievementTableMapper.countDownloadCountFlush(flushId) > 0) {
+                log.info("下载计数批次{}已写库，跳过", flushId);
+                return true;
+            }
+        } catch (Exception e) {
+            log.error("下载计数批次{}查询失败，留待下次写入", flushId, e);
+            return false;
+        }
+        List<Map<Integer, Long>> chunks = StripedCounter.partition(deltas, FLUSH_CHUNK);
+        boolean applied = true;
+        for (int i = 0; i < chunks.size(); i++) {
+            final String chunkId = flushId + "-" + i;
+            final Map<Integer, Long> chunk = chunks.get(i);
+            try {
+                this.transactionTemplate.execute(status -> {
+                    if (achievementTableMapper.countDownloadCountFlush(chunkId) > 0) {
+                        return null;
+                    }
+                    achievementTableMapper.insertDownloadCountFlush(chunkId);
+                    achievementTableMapper.increaseDownloadCount(chunk);
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("下载次数写库失败，批次{}的{}条增量留待下次写入", chunkId, chunk.size(), e);
+                applied = false;
+            }
+        }
+        if (applied) {
+            achievementTableMapper.pruneDownloadCountFlush();
+        }
+        return applied;
+    }
+
+    /*
+     * 进程崩溃时最后一行可能只写了一半（如"12 34"只写出"12 3"），按行尾换行符截掉，
+     * 否则读出错误的增量，追加写入时下一条也会接在这半行后面
+     */
+    private static void truncateTornTail(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long length = raf.length();
+            long end = length;
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < length) {
+                raf.setLength(end);
+                raf.getFD().sync();
+                log.warn("下载计数日志末尾有{}字节不完整的记录，已截断", length - end);
+            }
+        }
+    }
+
+    /*
+     * 读取日志，返回批次号
+     */
+    private static String readJournal(File file, Map<Integer, Long> deltas) throws IOException {
+        String flushId = null;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(HEADER)) {
+                    flushId = line.substring(HEADER.length()).trim();
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 2) {
+                    continue;
+                }
+                try {
+                    Integer achievementId = Integer.valueOf(parts[0]);
+                    long delta = Long.parseLong(parts[1]);
+                    Long total = deltas.get(achievementId);
+                    deltas.put(achievementId, total == null ? delta : total + delta);
+                } catch (NumberFormatException e) {
+                    log.warn("跳过损坏的下载计数日志行：{}", line);
+                }
+            }
+        }
+        return flushId;
+    }
+
+    /*
+     * 打开日志追加写入，新文件先写入批次号
+     */
+    private void openJournal(String flushId) throws IOException {
+        this.journalStream = new FileOutputStream(journalFile, true);
+        this.journalWriter = new OutputStreamWriter(journalStream, StandardCharsets.UTF_8);
+        if (flushId != null) {
+            journalWriter.write(HEADER + flushId + "\n");
+            journalWriter.flush();
+            journalStream.getChannel().force(false);
+        }
+    }
+}
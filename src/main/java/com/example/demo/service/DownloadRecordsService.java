@@ -2,6 +2,7 @@ package com.example.demo.service;
 
 import com.example.demo.mapper.DownloadRecordsMapper;
 import com.example.demo.model.DownloadRecords;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -40,6 +41,17 @@ public class DownloadRecordsService implements DownloadRecordsMapper {
         return this.downloadRecordsMapper.insert(downloadRecords);
     }
 
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    @Override
+    public Integer insertBatch(List<DownloadRecords> entities) {
+        return this.downloadRecordsMapper.insertBatch(entities);
+    }
+
     /**
      * 修改数据
      *
@@ -67,24 +79,40 @@ public class DownloadRecordsService implements DownloadRecordsMapper {
     /**
      * 查询所有行数据
      *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
      * @return 表中所有行数据
      *
      */
      @Override
-     public List<DownloadRecords> queryAll(){
-        return this.downloadRecordsMapper.queryAll();
+     public List<DownloadRecords> queryAll(String startTime, String endTime){
+        return this.downloadRecordsMapper.queryAll(startTime, endTime);
+     }
+
+    /**
+     * 以游标逐行查询所有行数据
+     *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
+     * @return 游标
+     */
+     @Override
+     public Cursor<DownloadRecords> streamAll(String startTime, String endTime){
+        return this.downloadRecordsMapper.streamAll(startTime, endTime);
      }
      
     /**
      * 分页查询所有行数据
      *
+     * @param startTime 下载时间下界（含），为空不限
+     * @param endTime 下载时间上界（不含），为空不限
      * @return 表中所有行数据
      *
      */
      @Override
-     public List<DownloadRecords> queryAllWithPagination(int pageNum, int pageSize){
+     public List<DownloadRecords> queryAllWithPagination(int pageNum, int pageSize, String startTime, String endTime){
         int offset = (pageNum - 1) * pageSize ;
-        return this.downloadRecordsMapper.queryAllWithPagination(offset,pageSize);
+        return this.downloadRecordsMapper.queryAllWithPagination(offset,pageSize,startTime,endTime);
         
      }
 }
@@ -3,6 +3,7 @@ package com.example.demo.service;
 import com.example.demo.model.IntellectualProperty;
 import com.example.demo.mapper.IntellectualPropertyMapper;
 import com.example.demo.service.IntellectualPropertyService;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -86,6 +87,16 @@ public class IntellectualPropertyService implements IntellectualPropertyMapper {
      public List<IntellectualProperty> queryAll(){
         return this.intellectualPropertyMapper.queryAll();
      }
+
+    /**
+     * 以游标逐行查询所有行数据
+     *
+     * @return 游标
+     */
+     @Override
+     public Cursor<IntellectualProperty> streamAll(){
+        return this.intellectualPropertyMapper.streamAll();
+     }
      
     /**
      * 分页查询所有行数据
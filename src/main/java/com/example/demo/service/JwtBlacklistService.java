@@ -1,20 +1,133 @@
 package com.example.demo.service;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.Set;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 已注销JWT的黑名单
+ * 以Redis为准：每个注销的token按其SHA-256存一个键，过期时间与token的过期时间一致，后启动的节点同样能查到。
+ * 本地缓存放在Redis前面：确认已注销的token记到过期为止，确认未注销的只缓存negative-ttl毫秒；
+ * 缓存失效总线只作提示，收到其他节点的注销事件时直接记入本地，丢消息时清空未注销缓存，最迟negative-ttl后从Redis读到。
+ * Redis不可用时按本地记录判断并告警
+ */
+@Slf4j
 @Service
 public class JwtBlacklistService {
+    private static final String REDIS_KEY = "jwt:blacklist:";
 
-    private final Set<String> blacklist = new HashSet<>();
+    @Resource
+    private CacheInvalidationBus cacheInvalidationBus;
+    @Resource
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Value("${jwt.expiration}")
+    private long expiration;
+
+    @Value("${jwt.blacklist.negative-ttl:5000}")
+    private long negativeTtl;
+
+    /**
+     * token摘要 -> token过期时间（毫秒时间戳），确认已注销
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * 确认未注销的token摘要；每个请求的token都会记一条，过期条目只在读到时才删除，须定时清理
+     */
+    private TimedCache<String, Boolean> notRevoked;
+
+    @PostConstruct
+    public void init() {
+        this.notRevoked = CacheUtil.newTimedCache(negativeTtl);
+        this.notRevoked.schedulePrune(negativeTtl);
+        // 其他节点注销的token同步记入本节点，参数为token摘要
+        cacheInvalidationBus.register(CacheInvalidationBus.TYPE_JWT_BLACKLIST, digest -> {
+            if (CacheInvalidationBus.ALL.equals(digest)) {
+                notRevoked.clear();
+                return;
+            }
+            notRevoked.remove(digest);
+            revoked.put(digest, System.currentTimeMillis() + expiration);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notRevoked.cancelPruneSchedule();
+    }
 
     public void addToBlacklist(String token) {
-        blacklist.add(token);
+        String digest = SecureUtil.sha256(token);
+        long expiresAt = expiresAt(token);
+        revoked.put(digest, expiresAt);
+        notRevoked.remove(digest);
+        long ttl = expiresAt - System.currentTimeMillis();
+        if (ttl > 0) {
+            try {
+                redisTemplate.opsForValue().set(REDIS_KEY + digest, "1", ttl, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.error("注销的token写入Redis失败，其他节点只能通过失效事件得知", e);
+            }
+        }
+        cacheInvalidationBus.publish(CacheInvalidationBus.TYPE_JWT_BLACKLIST, digest);
     }
 
     public boolean isTokenBlacklisted(String token) {
-        return blacklist.contains(token);
+        String digest = SecureUtil.sha256(token);
+        Long expiresAt = revoked.get(digest);
+        if (expiresAt != null) {
+            if (expiresAt > System.currentTimeMillis()) {
+                return true;
+            }
+            revoked.remove(digest, expiresAt);
+        }
+        if (notRevoked.containsKey(digest)) {
+            return false;
+        }
+        try {
+            Long ttl = redisTemplate.getExpire(REDIS_KEY + digest, TimeUnit.MILLISECONDS);
+            // -2表示键不存在
+            if (ttl == null || ttl == -2) {
+                notRevoked.put(digest, Boolean.TRUE);
+                return false;
+            }
+            revoked.put(digest, ttl > 0 ? System.currentTimeMillis() + ttl : System.currentTimeMillis() + expiration);
+            return true;
+        } catch (Exception e) {
+            log.warn("查询Redis中的token黑名单失败，按本地记录判断", e);
+            return false;
+        }
+    }
+
+    /*
+     * 读取token的exp，未签名校验，只用来决定黑名单保留多久；读不到时按签发有效期
+     */
+    private long expiresAt(String token) {
+        try {
+            String[] parts = token.split("\\.");
+            JSONObject claims = JSON.parseObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+            if (claims.containsKey("exp")) {
+                return claims.getLongValue("exp") * 1000L;
+            }
+        } catch (RuntimeException e) {
+            log.debug("无法读取token过期时间", e);
+        }
+        return System.currentTimeMillis() + expiration;
     }
 }
@@ -10,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.util.List;
 
 /**
  * (LogRecords)表服务实现类
@@ -44,6 +45,17 @@ public class LogRecordsService implements LogRecordsMapper {
         return this.logRecordsMapper.insert(logRecords);
     }
 
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    @Override
+    public Integer insertBatch(List<LogRecords> entities) {
+        return this.logRecordsMapper.insertBatch(entities);
+    }
+
     /**
      * 修改数据
      *
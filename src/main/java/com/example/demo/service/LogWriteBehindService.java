@@ -0,0 +1,199 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.LogRecordsMapper;
+import com.example.demo.model.LogRecords;
+import com.example.demo.utils.LatencyHistogram;
+import com.example.demo.utils.MpscRingBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 操作日志异步写入
+ * 请求线程只把日志放入有界环形缓冲区，由单个后台线程攒批后用insertBatch写入log_records：
+ * 攒够batch-size条立即写，否则最早一条等待max-delay毫秒后写。
+ * 缓冲区满时按overflow策略处理：caller-runs由请求线程同步写库（不丢日志，写入变慢即形成反压），drop直接丢弃并计数。
+ * 批量写失败时逐条重试，单条仍失败的记入应用日志；停机时写完缓冲区中剩余的日志
+ */
+@Slf4j
+@Service
+public class LogWriteBehindService {
+    public static final String OVERFLOW_CALLER_RUNS = "caller-runs";
+    public static final String OVERFLOW_DROP = "drop";
+
+    @Resource
+    private LogRecordsMapper logRecordsMapper;
+    @Resource
+    private AuditLogService auditLogService;
+
+    @Value("${log.write-behind.buffer-size:16384}")
+    private int bufferSize;
+
+    @Value("${log.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${log.write-behind.max-delay:200}")
+    private long maxDelayMs;
+
+    @Value("${log.write-behind.overflow:caller-runs}")
+    private String overflow;
+
+    @Value("${log.write-behind.shutdown-timeout:10000}")
+    private long shutdownTimeoutMs;
+
+    private MpscRingBuffer<LogRecords> buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LongAdder appendedCount = new LongAdder();
+    private final LongAdder writtenCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder callerRunsCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+        this.running = true;
+        this.writer = new Thread(this::run, "log-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 提交一条日志，未设置时间时取提交时间
+     *
+     * @param logRecords 日志
+     * @return 已入队或已同步写入返回true，按drop策略丢弃时返回false
+     */
+    public boolean append(LogRecords logRecords) {
+        if (logRecords.getLogTime() == null) {
+            logRecords.setLogTime(new Date());
+        }
+        if (logRecords.getTableStatus() == null) {
+            logRecords.setTableStatus(true);
+        }
+        auditLogService.record(AuditLogService.TYPE_LOG, logRecords.getUserId(), logRecords.getLogIntro());
+        if (running && buffer.offer(logRecords)) {
+            appendedCount.increment();
+            if (buffer.size() >= batchSize) {
+                LockSupport.unpark(writer);
+            }
+            return true;
+        }
+        if (running && OVERFLOW_DROP.equals(overflow)) {
+            droppedCount.increment();
+            return false;
+        }
+        // 缓冲区满或已停机，由调用线程同步写入
+        callerRunsCount.increment();
+        write(Collections.singletonList(logRecords));
+        return true;
+    }
+
+    /**
+     * 写入统计
+     *
+     * @return 入队、写入、丢弃、同步写入、失败条数，待写条数和批次耗时分位（毫秒）
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("overflow", overflow);
+        statistics.put("capacity", buffer.capacity());
+        statistics.put("pending", buffer.size());
+        statistics.put("appendedCount", appendedCount.sum());
+        statistics.put("writtenCount", writtenCount.sum());
+        statistics.put("droppedCount", droppedCount.sum());
+        statistics.put("callerRunsCount", callerRunsCount.sum());
+        statistics.put("failedCount", failedCount.sum());
+        statistics.put("batchCount", batchCount.sum());
+        statistics.put("batchLatencyMs", batchLatency.summary());
+        return statistics;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(shutdownTimeoutMs);
+        if (writer.isAlive()) {
+            log.warn("日志写入线程未在{}ms内结束，剩余{}条未写入", shutdownTimeoutMs, buffer.size());
+            return;
+        }
+        // 写入线程退出后才入队的日志，此时只有当前线程消费
+        drainAll(new ArrayList<LogRecords>(batchSize));
+    }
+
+    private void run() {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        List<LogRecords> batch = new ArrayList<>(batchSize);
+        long firstAt = 0;
+        while (running) {
+            int drained = buffer.drainTo(batch, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(this, maxDelayNanos);
+                continue;
+            }
+            if (firstAt == 0) {
+                firstAt = System.nanoTime();
+            }
+            long waited = System.nanoTime() - firstAt;
+            if (batch.size() >= batchSize || waited >= maxDelayNanos) {
+                write(batch);
+                batch.clear();
+                firstAt = 0;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(this, maxDelayNanos - waited);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+            batch.clear();
+        }
+        drainAll(batch);
+    }
+
+    private void drainAll(List<LogRecords> batch) {
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<LogRecords> batch) {
+        long start = System.nanoTime();
+        try {
+            this.logRecordsMapper.insertBatch(batch);
+            writtenCount.add(batch.size());
+        } catch (Exception e) {
+            log.warn("日志批量写入失败，逐条重试{}条", batch.size(), e);
+            for (LogRecords logRecords : batch) {
+                try {
+                    this.logRecordsMapper.insert(logRecords);
+                    writtenCount.increment();
+                } catch (Exception ex) {
+                    failedCount.increment();
+                    log.error("日志写入失败 userId={} logTime={} logIntro={}",
+                            logRecords.getUserId(), logRecords.getLogTime(), logRecords.getLogIntro(), ex);
+                }
+            }
+        }
+        batchCount.increment();
+        batchLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
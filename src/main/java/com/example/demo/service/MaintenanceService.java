@@ -0,0 +1,44 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 维护模式
+ * 在运行中的库上恢复备份时开启：写请求由MaintenanceFilter拒绝，计数落库、发件箱分发、软删除清理和分区维护等后台写入暂停。
+ * 只作用于本节点，开启前需先停止其他节点
+ */
+@Slf4j
+@Service
+public class MaintenanceService {
+
+    private volatile String reason;
+
+    /**
+     * 进入维护模式
+     *
+     * @param reason 原因，返回给被拒绝的请求
+     */
+    public void begin(String reason) {
+        this.reason = reason;
+        log.warn("进入维护模式：{}", reason);
+    }
+
+    /**
+     * 退出维护模式
+     */
+    public void end() {
+        if (this.reason != null) {
+            log.warn("退出维护模式：{}", this.reason);
+        }
+        this.reason = null;
+    }
+
+    public boolean isActive() {
+        return reason != null;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
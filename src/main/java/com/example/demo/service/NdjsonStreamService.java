@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 大列表流式输出
+ * 用MyBatis游标逐行读取，每行序列化为一行JSON（NDJSON）直接写入响应，
+ * 内存占用只与fetchSize有关，与表大小无关。
+ * 每flush-rows行才刷新到客户端，第一次刷新前响应尚未提交，此时失败丢弃已缓冲的内容，返回500；
+ * 响应已提交后状态码已是200，中途失败时另起一行写入{"error":...,"rows":已输出行数}作为最后一行，
+ * 客户端读到带error的行即按失败处理；失败前只写了一半的行会单独成行，解析失败时同样丢弃
+ */
+@Slf4j
+@Service
+public class NdjsonStreamService {
+    public static final String CONTENT_TYPE = "application/x-ndjson;charset=UTF-8";
+
+    @Resource
+    private PlatformTransactionManager transactionManager;
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${stream.flush-rows:500}")
+    private int flushRows;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        // 游标要在同一个连接上读完，且驱动只在关闭自动提交时按fetchSize分批取数
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 将游标结果以NDJSON写入响应
+     *
+     * @param response 响应
+     * @param query 打开游标的查询，在只读事务内调用
+     * @param <T> 行类型
+     * @return 写出行数，失败时为-1
+     */
+    public <T> long write(final HttpServletResponse response, final Supplier<Cursor<T>> query) {
+        response.setContentType(CONTENT_TYPE);
+        long start = System.currentTimeMillis();
+        try {
+            Long rows = this.transactionTemplate.execute(status -> {
+                try (Cursor<T> cursor = query.get()) {
+                    ServletOutputStream out = response.getOutputStream();
+                    JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                    generator.setRootValueSeparator(null);
+                    // 中途失败时不自动补全写了一半的对象，错误行之后不能再有内容
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                    // 关闭生成器时不关闭、不刷新响应流，失败时未提交的响应还能改成500
+                    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                    generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+                    long count = 0;
+                    boolean inRow = false;
+                    boolean discard = false;
+                    try {
+                        for (T row : cursor) {
+                            inRow = true;
+                            generator.writeObject(row);
+                            generator.writeRaw('\n');
+                            inRow = false;
+                            if (++count % flushRows == 0) {
+                                generator.flush();
+                                out.flush();
+                            }
+                        }
+                        generator.flush();
+                        out.flush();
+                    } catch (IOException | RuntimeException e) {
+                        // 响应未提交时什么都还没发出，缓冲的内容直接丢弃，交给外层重置为500
+                        if (response.isCommitted()) {
+                            writeError(generator, out, inRow, count);
+                        } else {
+                            discard = true;
+                        }
+                        throw e;
+                    } finally {
+                        if (!discard) {
+                            generator.close();
+                        }
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.info("流式输出完成，{}行，耗时{}ms", rows, System.currentTimeMillis() - start);
+            return rows == null ? 0 : rows;
+        } catch (RuntimeException e) {
+            log.error("流式输出失败", e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+            return -1;
+        }
+    }
+
+    /*
+     * 在已输出的内容后追加错误行；客户端已断开时写不出去，只记日志
+     */
+    private void writeError(JsonGenerator generator, ServletOutputStream out, boolean inRow, long rows) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", "流式输出中断");
+        error.put("rows", rows);
+        try {
+            // 写了一半的行处于未闭合的JSON上下文中，用writeRaw绕过生成器的状态检查
+            generator.writeRaw((inRow ? "\n" : "") + objectMapper.writeValueAsString(error) + "\n");
+            generator.flush();
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            log.warn("流式输出错误行写入失败", e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.OutboxEventMapper;
+import com.example.demo.model.OutboxEvent;
+import com.example.demo.utils.LatencyHistogram;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 事务性发件箱
+ * 写操作在自己的事务里调用publish插入outbox_event，与业务数据同时提交或回滚；后续的缓存、索引、状态重算等副作用
+ * 不再在请求里同步执行，由后台线程成批取出事件分发给register注册的处理器。
+ * 每批在一个事务里取出（FOR UPDATE SKIP LOCKED，多节点互不重复）、分发、标记已处理；处理器在各自的保存点里执行，
+ * 整批失败时逐条重试，仍失败的事件回滚该处理器的写入并按attempts指数退避，其余事件照常提交。
+ * 分发线程在应用启动完成、各服务都已注册处理器后才开始；只取本节点注册了处理器的类型，
+ * 其他类型的事件留在表里，不会在没人处理时被标记为已处理。
+ * 事件至少投递一次，处理器须可重复执行
+ */
+@Slf4j
+@Service
+public class OutboxService {
+    /**
+     * 审批记录通过，aggregateId为审批记录ID
+     */
+    public static final String APPROVAL_APPROVED = "approval.approved";
+    /**
+     * 成果审核通过，aggregateId为成果ID
+     */
+    public static final String ACHIEVEMENT_APPROVED = "achievement.approved";
+    /**
+     * 成果文件归档完成，aggregateId为成果ID，payload含file（归档文件路径）、category
+     */
+    public static final String ACHIEVEMENT_ARCHIVED = "achievement.archived";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+
+    @Resource
+    private OutboxEventMapper outboxEventMapper;
+    @Resource
+    private PlatformTransactionManager transactionManager;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.poll-interval:1000}")
+    private long pollIntervalMs;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${outbox.retention-days:7}")
+    private int retentionDays;
+
+    /**
+     * 事件类型 -> 处理器，每次传入同一类型的一批事件
+     */
+    private final Map<String, List<Consumer<List<OutboxEvent>>>> handlers = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private Thread relay;
+    private volatile boolean running;
+
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 应用启动完成后再开始分发，此前各服务的@PostConstruct已注册完处理器，不会有事件被当作无人处理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        this.running = true;
+        this.relay = new Thread(this::run, "outbox-relay");
+        this.relay.setDaemon(true);
+        this.relay.start();
+    }
+
+    /**
+     * 注册事件处理器，由各服务在初始化时调用；处理器抛出异常时该批事件稍后重试
+     *
+     * @param eventType 事件类型
+     * @param handler 处理器
+     */
+    public void register(String eventType, Consumer<List<OutboxEvent>> handler) {
+        handlers.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>()).add(handler);
+    }
+
+    /**
+     * 在当前事务内写入一条事件，事务提交后唤醒分发线程；没有事务时立即写入
+     *
+     * @param eventType 事件类型
+     * @param aggregateId 事件所属记录ID
+     * @param payload 附加数据，序列化为JSON，可为null
+     */
+    public void publish(String eventType, Integer aggregateId, Map<String, Object> payload) {
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setEventType(eventType);
+        outboxEvent.setAggregateId(aggregateId);
+        if (payload != null) {
+            try {
+                outboxEvent.setPayload(objectMapper.writeValueAsString(payload));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("事件数据无法序列化：" + eventType, e);
+            }
+        }
+        this.outboxEventMapper.insert(outboxEvent);
+        publishedCount.increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    LockSupport.unpark(relay);
+                }
+            });
+        } else {
+            LockSupport.unpark(relay);
+        }
+    }
+
+    /**
+     * 解析事件附加数据
+     *
+     * @param outboxEvent 事件
+     * @return 附加数据，没有时为空Map
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> payloadOf(OutboxEvent outboxEvent) {
+        if (outboxEvent.getPayload() == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(outboxEvent.getPayload(), Map.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("事件数据无法解析：" + outboxEvent.getEventId(), e);
+        }
+    }
+
+    /**
+     * 分发统计
+     *
+     * @return 本节点写入、处理、失败事件数，批次数和批次耗时分位（毫秒），库中待处理和已放弃的事件数
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("publishedCount", publishedCount.sum());
+        statistics.put("processedCount", processedCount.sum());
+        statistics.put("failedCount", failedCount.sum());
+        statistics.put("batchCount", batchCount.sum());
+        statistics.put("batchLatencyMs", batchLatency.summary());
+        statistics.put("maxAttempts", maxAttempts);
+        statistics.putAll(this.outboxEventMapper.countUnprocessed(maxAttempts));
+        return statistics;
+    }
+
+    /**
+     * 失败次数已达上限的事件重新投递
+     *
+     * @return 重新投递的事件数
+     */
+    public Integer retryDead() {
+        Integer res = this.outboxEventMapper.resetDead(maxAttempts);
+        LockSupport.unpark(relay);
+        return res;
+    }
+
+    /**
+     * 清理超过保留天数的已处理事件
+     */
+    @Scheduled(cron = "${outbox.cleanup-cron:0 30 3 * * ?}")
+    public void cleanup() {
+        String before = LocalDateTime.now().minusDays(retentionDays).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        Integer res = this.outboxEventMapper.deleteProcessedBefore(before);
+        log.info("清理{}之前已处理的发件箱事件{}条", before, res);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (relay == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(relay);
+        relay.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        long pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pollIntervalMs);
+        while (running) {
+            int claimed;
+            try {
+                // 维护期间不分发，事件留在表里，结束后照常处理
+                claimed = maintenanceService.isActive() ? 0 : relayBatch();
+            } catch (Exception e) {
+                log.error("发件箱分发失败", e);
+                claimed = 0;
+            }
+            // 取满一批说明还有积压，接着取
+            if (claimed < batchSize) {
+                LockSupport.parkNanos(this, pollIntervalNanos);
+            }
+        }
+    }
+
+    /*
+     * 取一批事件分发，返回取到的条数
+     */
+    private int relayBatch() {
+        long start = System.nanoTime();
+        if (handlers.isEmpty()) {
+            return 0;
+        }
+        Integer claimed = this.transactionTemplate.execute(status -> {
+            List<OutboxEvent> batch = this.outboxEventMapper.claimBatch(batchSize, maxAttempts, new ArrayList<>(handlers.keySet()));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            Map<String, List<OutboxEvent>> byType = new LinkedHashMap<>();
+            for (OutboxEvent outboxEvent : batch) {
+                byType.computeIfAbsent(outboxEvent.getEventType(), k -> new ArrayList<>()).add(outboxEvent);
+            }
+            Map<Long, String> errors = new HashMap<>();
+            for (Map.Entry<String, List<OutboxEvent>> entry : byType.entrySet()) {
+                for (Consumer<List<OutboxEvent>> handler : handlers.get(entry.getKey())) {
+                    dispatch(status, handler, entry.getValue(), errors);
+                }
+            }
+
+            List<Long> processed = new ArrayList<>(batch.size());
+            for (OutboxEvent outboxEvent : batch) {
+                String error = errors.get(outboxEvent.getEventId());
+                if (error == null) {
+                    processed.add(outboxEvent.getEventId());
+                    continue;
+                }
+                int attempts = outboxEvent.getAttempts() == null ? 0 : outboxEvent.getAttempts();
+                long delay = Math.min(MAX_RETRY_DELAY_SECONDS, retryBaseSeconds << Math.min(attempts, 20));
+                this.outboxEventMapper.markFailed(outboxEvent.getEventId(), error, delay);
+                failedCount.increment();
+                if (attempts + 1 >= maxAttempts) {
+                    log.error("发件箱事件{}({})失败{}次，不再重试：{}", outboxEvent.getEventId(), outboxEvent.getEventType(), attempts + 1, error);
+                }
+            }
+            if (!processed.isEmpty()) {
+                this.outboxEventMapper.markProcessed(processed);
+            }
+            processedCount.add(processed.size());
+            return batch.size();
+        });
+        if (claimed != null && claimed > 0) {
+            batchCount.increment();
+            batchLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        return claimed == null ? 0 : claimed;
+    }
+
+    /*
+     * 在保存点内把整批交给处理器，失败时回滚到保存点后逐条重试，逐条仍失败的记下错误
+     */
+    private void dispatch(TransactionStatus status, Consumer<List<OutboxEvent>> handler,
+                          List<OutboxEvent> events, Map<Long, String> errors) {
+        if (events.size() > 1 && apply(status, handler, events) == null) {
+            return;
+        }
+        for (OutboxEvent outboxEvent : events) {
+            Exception e = apply(status, handler, Collections.singletonList(outboxEvent));
+            if (e != null) {
+                log.warn("发件箱事件{}({})处理失败", outboxEvent.getEventId(), outboxEvent.getEventType(), e);
+                String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                errors.put(outboxEvent.getEventId(), error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            }
+        }
+    }
+
+    private Exception apply(TransactionStatus status, Consumer<List<OutboxEvent>> handler, List<OutboxEvent> events) {
+        Object savepoint = status.createSavepoint();
+        try {
+            handler.accept(events);
+            status.releaseSavepoint(savepoint);
+            return null;
+        } catch (Exception e) {
+            status.rollbackToSavepoint(savepoint);
+            return e;
+        }
+    }
+}
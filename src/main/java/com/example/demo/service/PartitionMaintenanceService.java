@@ -0,0 +1,353 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 事件表分区维护
+ * download_records、log_records、statistics_info按月分区（见SQL/event_partitioning.sql），每天定时：
+ * 预建当月及之后若干个月的分区，避免新数据落入默认分区；超过保留期的分区导出为gzip压缩的CSV文件，
+ * 核对行数一致后卸载并删除，热表只保留最近的数据。未执行分区迁移的表跳过。
+ * 归档文件带表头，可用COPY ... FROM PROGRAM 'gunzip -c 文件' WITH (FORMAT csv, HEADER true)导回
+ */
+@Slf4j
+@Service
+public class PartitionMaintenanceService {
+
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String ARCHIVE_SUFFIX = ".csv.gz";
+
+    /**
+     * 分区表，分区列依次为download_time、log_time、login_time
+     */
+    private static final List<String> TABLES = Arrays.asList("download_records", "log_records", "statistics_info");
+
+    @Resource
+    private DataSource dataSource;
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    @Value("${partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${partition.premake-months:3}")
+    private int premakeMonths;
+
+    /**
+     * 热表保留的月数，不含当月
+     */
+    @Value("${partition.retention-months:24}")
+    private int retentionMonths;
+
+    @Value("${partition.archive-dir:C:/data/archive/}")
+    private String archiveDir;
+
+    @Value("${partition.fetch-size:1000}")
+    private int fetchSize;
+
+    private volatile Map<String, Object> lastRun = Collections.emptyMap();
+
+    /**
+     * 预建分区并归档过期分区
+     *
+     * @return 每张表新建、归档的分区和失败原因
+     */
+    @Scheduled(cron = "${partition.maintenance-cron:0 30 2 * * ?}")
+    public synchronized Map<String, Object> maintain() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("time", LocalDateTime.now().format(FORMATTER));
+        if (!enabled) {
+            res.put("skipped", "partition.enabled=false");
+            return res;
+        }
+        if (maintenanceService.isActive()) {
+            res.put("skipped", "维护模式");
+            return res;
+        }
+        YearMonth current = YearMonth.now();
+        YearMonth cutoff = current.minusMonths(retentionMonths);
+        for (String table : TABLES) {
+            Map<String, Object> tableRes = new LinkedHashMap<>();
+            List<String> created = new ArrayList<>();
+            List<Map<String, Object>> archived = new ArrayList<>();
+            List<String> errors = new ArrayList<>();
+            try (Connection connection = dataSource.getConnection()) {
+                if (!isPartitioned(connection, table)) {
+                    tableRes.put("skipped", "未分区");
+                    res.put(table, tableRes);
+                    continue;
+                }
+                Map<YearMonth, String> partitions = partitionsOf(connection, table);
+                for (int i = 0; i <= premakeMonths; i++) {
+                    YearMonth month = current.plusMonths(i);
+                    if (!partitions.containsKey(month)) {
+                        try {
+                            createPartition(connection, table, month);
+                            created.add(partitionName(table, month));
+                        } catch (SQLException e) {
+                            // 默认分区里已有该月的行时无法建分区，需人工把这些行挪出默认分区
+                            errors.add(partitionName(table, month) + ": " + e.getMessage());
+                        }
+                    }
+                }
+                for (Map.Entry<YearMonth, String> partition : partitions.entrySet()) {
+                    if (!partition.getKey().isBefore(cutoff)) {
+                        break;
+                    }
+                    try {
+                        archived.add(archive(connection, table, partition.getValue()));
+                    } catch (SQLException | IOException e) {
+                        errors.add(partition.getValue() + ": " + e.getMessage());
+                    }
+                }
+            } catch (SQLException e) {
+                errors.add(e.getMessage());
+            }
+            tableRes.put("created", created);
+            tableRes.put("archived", archived);
+            tableRes.put("errors", errors);
+            res.put(table, tableRes);
+            for (String error : errors) {
+                log.warn("分区维护失败 {} {}", table, error);
+            }
+        }
+        lastRun = res;
+        return res;
+    }
+
+    /**
+     * 各表的分区、估计行数、已归档文件和上一次维护结果
+     *
+     * @return 分区状态
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("enabled", enabled);
+        res.put("retentionMonths", retentionMonths);
+        res.put("premakeMonths", premakeMonths);
+        try (Connection connection = dataSource.getConnection()) {
+            for (String table : TABLES) {
+                Map<String, Object> tableRes = new LinkedHashMap<>();
+                boolean partitioned = isPartitioned(connection, table);
+                tableRes.put("partitioned", partitioned);
+                if (partitioned) {
+                    Map<String, Long> rows = new LinkedHashMap<>();
+                    for (String partition : partitionsOf(connection, table).values()) {
+                        rows.put(partition, estimatedRows(connection, partition));
+                    }
+                    String defaultPartition = table + "_default";
+                    rows.put(defaultPartition, estimatedRows(connection, defaultPartition));
+                    tableRes.put("partitions", rows);
+                }
+                tableRes.put("archives", archivesOf(table));
+                res.put(table, tableRes);
+            }
+        } catch (SQLException e) {
+            res.put("error", e.getMessage());
+        }
+        res.put("lastRun", lastRun);
+        return res;
+    }
+
+    private static boolean isPartitioned(Connection connection, String table) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "select 1 from pg_partitioned_table t join pg_class c on c.oid = t.partrelid where c.relname = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /*
+     * 按月份排序的月分区，默认分区和不符合命名的分区不参与维护
+     */
+    private static Map<YearMonth, String> partitionsOf(Connection connection, String table) throws SQLException {
+        Map<YearMonth, String> res = new TreeMap<>();
+        String prefix = table + "_p";
+        try (PreparedStatement ps = connection.prepareStatement(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid "
+                        + "join pg_class p on p.oid = i.inhparent where p.relname = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    String suffix = name.startsWith(prefix) ? name.substring(prefix.length()) : "";
+                    if (suffix.matches("\\d{6}")) {
+                        res.put(YearMonth.parse(suffix, MONTH), name);
+                    }
+                }
+            }
+        }
+        return res;
+    }
+
+    private static void createPartition(Connection connection, String table, YearMonth month) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS \"" + partitionName(table, month) + "\" PARTITION OF \"" + table
+                    + "\" FOR VALUES FROM ('" + month.atDay(1).format(BOUND) + "') TO ('"
+                    + month.plusMonths(1).atDay(1).format(BOUND) + "')");
+        }
+        log.info("新建分区 {}", partitionName(table, month));
+    }
+
+    /*
+     * 先导出到临时文件并落盘，再在持有排他锁的事务内核对行数、卸载并删除分区；
+     * 导出后又有行写入该月时行数对不上，保留分区等下次重新导出
+     */
+    private Map<String, Object> archive(Connection connection, String table, String partition) throws SQLException, IOException {
+        File dir = new File(archiveDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建归档目录" + archiveDir);
+        }
+        File target = new File(dir, partition + ARCHIVE_SUFFIX);
+        File tmp = new File(dir, partition + ARCHIVE_SUFFIX + ".tmp");
+        long exported;
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            // 关闭自动提交后驱动才按fetchSize分批取，不会把整个分区读进内存
+            connection.setAutoCommit(false);
+            exported = export(connection, partition, tmp);
+            connection.commit();
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("LOCK TABLE \"" + partition + "\" IN ACCESS EXCLUSIVE MODE");
+                long rows;
+                try (ResultSet rs = statement.executeQuery("select count(*) from \"" + partition + "\"")) {
+                    rs.next();
+                    rows = rs.getLong(1);
+                }
+                if (rows != exported) {
+                    connection.rollback();
+                    throw new IOException("导出" + exported + "行，分区现有" + rows + "行，下次重新归档");
+                }
+                statement.execute("ALTER TABLE \"" + table + "\" DETACH PARTITION \"" + partition + "\"");
+                statement.execute("DROP TABLE \"" + partition + "\"");
+            }
+            connection.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            Files.deleteIfExists(tmp.toPath());
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        log.info("归档分区 {} {}行 -> {}", partition, exported, target.getPath());
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("partition", partition);
+        res.put("rows", exported);
+        res.put("file", target.getPath());
+        res.put("bytes", target.length());
+        return res;
+    }
+
+    private long export(Connection connection, String partition, File file) throws SQLException, IOException {
+        long rows = 0;
+        FileOutputStream out = new FileOutputStream(file);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(out), StandardCharsets.UTF_8));
+             Statement statement = connection.createStatement()) {
+            statement.setFetchSize(fetchSize);
+            try (ResultSet rs = statement.executeQuery("select * from \"" + partition + "\"")) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columns = metaData.getColumnCount();
+                for (int i = 1; i <= columns; i++) {
+                    writer.write(i > 1 ? "," : "");
+                    writer.write(metaData.getColumnName(i));
+                }
+                writer.write('\n');
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        writer.write(i > 1 ? "," : "");
+                        writeCsv(writer, rs.getString(i));
+                    }
+                    writer.write('\n');
+                    rows++;
+                }
+            }
+            writer.flush();
+            // 删除分区前确认文件已落盘
+            out.getFD().sync();
+        }
+        return rows;
+    }
+
+    /*
+     * 与COPY的CSV格式一致：NULL写成空字段，空字符串和含分隔符、引号、换行的值加引号
+     */
+    private static void writeCsv(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    private static long estimatedRows(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("select reltuples::bigint from pg_class where relname = ?")) {
+            ps.setString(1, relation);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    private List<Map<String, Object>> archivesOf(String table) {
+        List<Map<String, Object>> res = new ArrayList<>();
+        File[] files = new File(archiveDir).listFiles((dir, name) -> name.startsWith(table + "_p") && name.endsWith(ARCHIVE_SUFFIX));
+        if (files == null) {
+            return res;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("file", file.getName());
+            item.put("bytes", file.length());
+            res.add(item);
+        }
+        return res;
+    }
+
+    private static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(MONTH);
+    }
+}
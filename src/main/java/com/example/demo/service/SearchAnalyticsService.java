@@ -0,0 +1,225 @@
+package com.example.demo.service;
+
+import com.alibaba.fastjson.JSON;
+import com.example.demo.mapper.SearchRecordsMapper;
+import com.example.demo.mapper.UserRolePermissionsMapper;
+import com.example.demo.model.SearchBody;
+import com.example.demo.model.SearchRecords;
+import com.example.demo.model.UserRolePermissions;
+import com.example.demo.utils.HeavyHitters;
+import com.example.demo.utils.LatencyHistogram;
+import com.example.demo.utils.MpscRingBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 搜索分析服务
+ * 每次模糊查询写入有界环形缓冲区，请求线程不等待数据库；后台定时批量写入search_records，
+ * 同时流式统计热门查询、无结果查询和耗时分位，用于决定预热哪些索引和缓存
+ */
+@Slf4j
+@Service
+public class SearchAnalyticsService {
+    /**
+     * search_method：模糊查询
+     */
+    public static final int METHOD_FUZZY = 1;
+
+    /**
+     * 未登录用户的user_id
+     */
+    private static final int ANONYMOUS_USER_ID = 0;
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Resource
+    private SearchRecordsMapper searchRecordsMapper;
+    @Resource
+    private UserRolePermissionsMapper userRolePermissionsMapper;
+
+    @Value("${search.analytics.buffer-size:8192}")
+    private int bufferSize;
+
+    @Value("${search.analytics.batch-size:500}")
+    private int batchSize;
+
+    @Value("${search.analytics.top-size:200}")
+    private int topSize;
+
+    private MpscRingBuffer<SearchEvent> buffer;
+    private HeavyHitters topQueries;
+    private HeavyHitters zeroResultQueries;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * 用户名 -> 用户ID，只在后台线程使用
+     */
+    private final Map<String, Integer> userIds = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        this.buffer = new MpscRingBuffer<>(bufferSize);
+        this.topQueries = new HeavyHitters(topSize);
+        this.zeroResultQueries = new HeavyHitters(topSize);
+    }
+
+    /**
+     * 记录一次搜索，缓冲区满时丢弃
+     *
+     * @param searchBody 查询条件
+     * @param resultCount 结果条数
+     * @param latencyNanos 耗时，纳秒
+     */
+    public void record(SearchBody searchBody, int resultCount, long latencyNanos) {
+        SearchEvent event = new SearchEvent(searchBody, currentUserName(), resultCount,
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos), LocalDateTime.now());
+        if (this.buffer.offer(event)) {
+            recordedCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 定时将缓冲区中的搜索批量写库并更新统计
+     */
+    @Scheduled(fixedDelayString = "${search.analytics.flush-interval:5000}")
+    public synchronized void flush() {
+        List<SearchEvent> events = new ArrayList<>(batchSize);
+        while (this.buffer.drainTo(events, batchSize) > 0) {
+            List<SearchRecords> records = new ArrayList<>(events.size());
+            for (SearchEvent event : events) {
+                String query = queryOf(event.searchBody);
+                topQueries.offer(query);
+                if (event.resultCount == 0) {
+                    zeroResultQueries.offer(query);
+                }
+                latency.record(event.latencyMs);
+                records.add(toRecord(event, query));
+            }
+            try {
+                this.searchRecordsMapper.insertBatch(records);
+                writtenCount.addAndGet(records.size());
+            } catch (Exception e) {
+                // 搜索记录只用于分析，写库失败直接丢弃，不回填缓冲区挤占新的记录
+                failedCount.addAndGet(records.size());
+                log.error("搜索记录写库失败，丢弃{}条", records.size(), e);
+            }
+            events.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 搜索分析统计
+     *
+     * @param limit 热门查询和无结果查询的返回条数
+     * @return 计数、热门查询、无结果查询、耗时分位（毫秒）
+     */
+    public Map<String, Object> getStatistics(int limit) {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("recordedCount", recordedCount.get());
+        statistics.put("droppedCount", droppedCount.get());
+        statistics.put("writtenCount", writtenCount.get());
+        statistics.put("failedCount", failedCount.get());
+        statistics.put("pending", this.buffer.size());
+        statistics.put("topQueries", topQueries.top(limit));
+        statistics.put("zeroResultQueries", zeroResultQueries.top(limit));
+        statistics.put("zeroResultCount", zeroResultQueries.total());
+        statistics.put("latencyMs", latency.summary());
+        return statistics;
+    }
+
+    private SearchRecords toRecord(SearchEvent event, String query) {
+        SearchRecords searchRecords = new SearchRecords();
+        searchRecords.setUserId(userIdOf(event.userName));
+        searchRecords.setSearchContent(query);
+        searchRecords.setSearchTime(event.searchTime.format(FORMATTER));
+        searchRecords.setSearchMethod(METHOD_FUZZY);
+        searchRecords.setResultCount(event.resultCount);
+        searchRecords.setLatencyMs((int) Math.min(Integer.MAX_VALUE, event.latencyMs));
+        return searchRecords;
+    }
+
+    /*
+     * 规范化后去掉分页参数，同一组条件翻页算同一个查询
+     */
+    private static String queryOf(SearchBody searchBody) {
+        SearchBody normalized = SearchCacheService.normalize(searchBody);
+        normalized.setPageNum(null);
+        normalized.setPageSize(null);
+        return JSON.toJSONString(normalized);
+    }
+
+    private Integer userIdOf(String userName) {
+        if (userName == null) {
+            return ANONYMOUS_USER_ID;
+        }
+        Integer userId = userIds.get(userName);
+        if (userId == null) {
+            UserRolePermissions user = this.userRolePermissionsMapper.getUserIdByUserName(userName);
+            userId = user == null || user.getUserId() == null ? ANONYMOUS_USER_ID : user.getUserId();
+            if (userIds.size() > 10000) {
+                userIds.clear();
+            }
+            userIds.put(userName, userId);
+        }
+        return userId;
+    }
+
+    /*
+     * 登录信息在请求线程上，入队前取出用户名
+     */
+    private static String currentUserName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static class SearchEvent {
+        private final SearchBody searchBody;
+        private final String userName;
+        private final int resultCount;
+        private final long latencyMs;
+        private final LocalDateTime searchTime;
+
+        private SearchEvent(SearchBody searchBody, String userName, int resultCount, long latencyMs,
+                            LocalDateTime searchTime) {
+            this.searchBody = searchBody;
+            this.userName = userName;
+            this.resultCount = resultCount;
+            this.latencyMs = latencyMs;
+            this.searchTime = searchTime;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.demo.service;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.CacheObj;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.model.SearchBody;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 成果模糊查询结果缓存
+ * 以规范化后的SearchBody作为键，按访问频率淘汰（LFU）并带有过期时间，
+ * 成果表写操作时按成果ID和成果类别精确失效，事务内失效时提交后再失效一次。
+ * 每次失效递增代数，查库前记下代数，写入时代数已变说明查询期间有过失效，结果可能是旧的，不再写入
+ */
+@Slf4j
+@Service
+public class SearchCacheService {
+
+    @Value("${search.cache.capacity:1024}")
+    private int capacity;
+
+    @Value("${search.cache.ttl:300000}")
+    private long ttl;
+
+    private Cache<String, CachedSearch> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidateCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+
+    /**
+     * 失效代数，写入与失效在同一把锁内读写
+     */
+    private long generation;
+
+    @PostConstruct
+    public void init() {
+        // 搜索流量集中在少数热门查询上，LFU比LRU更能留住热点
+        this.cache = CacheUtil.newLFUCache(capacity, ttl);
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key 规范化查询键
+     * @return 命中时返回结果副本，未命中返回null
+     */
+    public List<AchievementTable> get(String key) {
+        CachedSearch cached = this.cache.get(key);
+        if (cached == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new ArrayList<>(cached.result);
+    }
+
+    /**
+     * 当前失效代数，查库前读取，写入缓存时传回
+     *
+     * @return 代数
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 写入缓存，查库期间发生过失效时放弃写入
+     *
+     * @param key 规范化查询键
+     * @param searchBody 规范化后的查询条件
+     * @param result 查询结果
+     * @param generation 查库前读取的失效代数
+     */
+    public synchronized void put(String key, SearchBody searchBody, List<AchievementTable> result, long generation) {
+        if (generation != this.generation) {
+            staleCount.incrementAndGet();
+            return;
+        }
+        Set<Integer> achievementIds = new HashSet<>();
+        for (AchievementTable achievementTable : result) {
+            achievementIds.add(achievementTable.getAchievementId());
+        }
+        Set<String> categories = null;
+        if (searchBody.getAchievementCategories() != null && !searchBody.getAchievementCategories().isEmpty()) {
+            categories = new HashSet<>(searchBody.getAchievementCategories());
+        }
+        this.cache.put(key, new CachedSearch(new ArrayList<>(result), achievementIds, categories));
+    }
+
+    /**
+     * 成果写入后失效相关缓存：结果中包含该成果的，以及类别条件可能覆盖该成果的
+     *
+     * @param achievementId 成果ID，新增时可为null
+     * @param achievementCategory 成果类别，未知时传null将清空全部缓存
+     */
+    public void invalidate(final Integer achievementId, final String achievementCategory) {
+        evict(achievementId, achievementCategory);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(achievementId, achievementCategory);
+                }
+            });
+        }
+    }
+
+    private synchronized void evict(Integer achievementId, String achievementCategory) {
+        generation++;
+        if (achievementCategory == null) {
+            clear();
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        Iterator<CacheObj<String, CachedSearch>> iterator = this.cache.cacheObjIterator();
+        while (iterator.hasNext()) {
+            CacheObj<String, CachedSearch> cacheObj = iterator.next();
+            CachedSearch cached = cacheObj.getValue();
+            if ((achievementId != null && cached.achievementIds.contains(achievementId))
+                    || cached.categories == null
+                    || cached.categories.contains(achievementCategory)) {
+                keys.add(cacheObj.getKey());
+            }
+        }
+        for (String key : keys) {
+            this.cache.remove(key);
+        }
+        invalidateCount.addAndGet(keys.size());
+    }
+
+    /**
+     * 清空全部缓存，事务内调用时提交后再清空一次
+     */
+    public void invalidateAll() {
+        evict(null, null);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(null, null);
+                }
+            });
+        }
+    }
+
+    private void clear() {
+        invalidateCount.addAndGet(this.cache.size());
+        this.cache.clear();
+    }
+
+    /**
+     * 缓存命中统计
+     *
+     * @return 命中数、未命中数、命中率、失效数、因查询期间失效而放弃写入数、当前条目数
+     */
+    public Map<String, Object> getStatistics() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("hitCount", hits);
+        statistics.put("missCount", misses);
+        statistics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        statistics.put("invalidateCount", invalidateCount.get());
+        statistics.put("staleCount", staleCount.get());
+        statistics.put("size", this.cache.size());
+        statistics.put("capacity", capacity);
+        return statistics;
+    }
+
+    /**
+     * 规范化查询条件：列表去重排序，关键词去除首尾空白并丢弃空串
+     *
+     * @param searchBody 原始查询条件
+     * @return 规范化后的查询条件
+     */
+    public static SearchBody normalize(SearchBody searchBody) {
+        SearchBody normalized = new SearchBody();
+        normalized.setAchievementCategories(sortedStrings(searchBody.getAchievementCategories()));
+        normalized.setAchievementForms(sortedStrings(searchBody.getAchievementForms()));
+        normalized.setIntellectualPropertyIds(sortedIntegers(searchBody.getIntellectualPropertyIds()));
+        normalized.setAchievementBelongingOrganizations(sortedIntegers(searchBody.getAchievementBelongingOrganizations()));
+        normalized.setProjectIds(sortedIntegers(searchBody.getProjectIds()));
+        normalized.setUserIds(sortedIntegers(searchBody.getUserIds()));
+        normalized.setTemplateIds(sortedIntegers(searchBody.getTemplateIds()));
+        normalized.setKeywords(sortedStrings(searchBody.getKeywords()));
+        normalized.setSubjectCategorys(sortedStrings(searchBody.getSubjectCategorys()));
+        normalized.setTechnologyCategorys(sortedStrings(searchBody.getTechnologyCategorys()));
+        normalized.setStartTime(trimToNull(searchBody.getStartTime()));
+        normalized.setEndTime(trimToNull(searchBody.getEndTime()));
+        normalized.setPageNum(searchBody.getPageNum());
+        normalized.setPageSize(searchBody.getPageSize());
+        return normalized;
+    }
+
+    /**
+     * 由规范化查询条件生成缓存键
+     *
+     * @param searchBody 规范化后的查询条件
+     * @param offset 查询起始位置
+     * @param limit 查询条数
+     * @return 缓存键
+     */
+    public static String buildKey(SearchBody searchBody, int offset, int limit) {
+        StringBuilder key = new StringBuilder();
+        key.append("c=").append(searchBody.getAchievementCategories())
+                .append("|f=").append(searchBody.getAchievementForms())
+                .append("|ip=").append(searchBody.getIntellectualPropertyIds())
+                .append("|o=").append(searchBody.getAchievementBelongingOrganizations())
+                .append("|p=").append(searchBody.getProjectIds())
+                .append("|u=").append(searchBody.getUserIds())
+                .append("|t=").append(searchBody.getTemplateIds())
+                .append("|k=").append(searchBody.getKeywords())
+                .append("|sc=").append(searchBody.getSubjectCategorys())
+                .append("|tc=").append(searchBody.getTechnologyCategorys())
+                .append("|st=").append(searchBody.getStartTime())
+                .append("|et=").append(searchBody.getEndTime())
+                .append("|off=").append(offset)
+                .append("|lim=").append(limit);
+        return key.toString();
+    }
+
+    private static List<String> sortedStrings(Collection<String> values) {
+        if (values == null) {
+            return null;
+        }
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String value : values) {
+            String trimmed = trimToNull(value);
+            if (trimmed != null) {
+                sorted.add(trimmed);
+            }
+        }
+        return sorted.isEmpty() ? null : new ArrayList<>(sorted);
+    }
+
+    private static List<Integer> sortedIntegers(Collection<Integer> values) {
+        if (values == null) {
+            return null;
+        }
+        TreeSet<Integer> sorted = new TreeSet<>();
+        for (Integer value : values) {
+            if (value != null) {
+                sorted.add(value);
+            }
+        }
+        return sorted.isEmpty() ? null : new ArrayList<>(sorted);
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * 缓存条目：结果列表及用于失效判断的成果ID和类别条件
+     */
+    private static class CachedSearch {
+        private final List<AchievementTable> result;
+        private final Set<Integer> achievementIds;
+        private final Set<String> categories;
+
+        private CachedSearch(List<AchievementTable> result, Set<Integer> achievementIds, Set<String> categories) {
+            this.result = result;
+            this.achievementIds = achievementIds;
+            this.categories = categories;
+        }
+    }
+}
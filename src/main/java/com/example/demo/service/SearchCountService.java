@@ -0,0 +1,94 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.utils.StripedCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 成果搜索次数统计
+ * 搜索命中时只在内存中累加，定时按成果ID分段合并成批量UPDATE写入search_count，
+ * 每段一条语句，某段失败只把该段的增量放回
+ */
+@Slf4j
+@Service
+public class SearchCountService {
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    /**
+     * 每条UPDATE最多累加的成果数，每个成果占3个绑定参数
+     */
+    @Value("${search.count.flush-chunk:500}")
+    private int flushChunk;
+
+    private final StripedCounter searchCounter = new StripedCounter();
+
+    /**
+     * 记录一次搜索命中
+     *
+     * @param result 本次搜索返回的成果
+     */
+    public void increase(List<AchievementTable> result) {
+        for (AchievementTable achievementTable : result) {
+            searchCounter.increment(achievementTable.getAchievementId());
+        }
+    }
+
+    /**
+     * 查询尚未写库的搜索次数
+     *
+     * @param achievementId 成果ID
+     * @return 未写库的增量
+     */
+    public long pending(Integer achievementId) {
+        return searchCounter.pending(achievementId);
+    }
+
+    /**
+     * 定时将累计的搜索次数写库
+     */
+    @Scheduled(fixedDelayString = "${search.count.flush-interval:10000}")
+    public synchronized void flush() {
+        if (maintenanceService.isActive()) {
+            return;
+        }
+        Map<Integer, Long> deltas = searchCounter.drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+        for (Map<Integer, Long> chunk : StripedCounter.partition(deltas, flushChunk)) {
+            try {
+                this.achievementTableMapper.increaseSearchCount(chunk);
+            } catch (Exception e) {
+                log.error("搜索次数写库失败，{}条增量留待下次写入", chunk.size(), e);
+                searchCounter.restore(chunk);
+            }
+        }
+    }
+
+    /**
+     * 丢弃尚未写库的搜索次数，用于整库恢复之后：增量是在恢复前的数据上累计的
+     */
+    public synchronized void discard() {
+        Map<Integer, Long> deltas = searchCounter.drain();
+        if (!deltas.isEmpty()) {
+            log.warn("丢弃{}条未写库的搜索次数增量", deltas.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
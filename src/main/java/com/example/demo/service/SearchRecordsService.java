@@ -87,4 +87,15 @@ public class SearchRecordsService implements SearchRecordsMapper {
         return this.searchRecordsMapper.queryAllWithPagination(offset,pageSize);
         
      }
+
+    /**
+     * 批量新增数据
+     *
+     * @param entities 实例对象列表
+     * @return 影响行数
+     */
+    @Override
+    public Integer insertBatch(List<SearchRecords> entities) {
+        return this.searchRecordsMapper.insertBatch(entities);
+    }
 }
@@ -0,0 +1,136 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.utils.MinHashLsh;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 相似成果检索服务
+ * 成果名称、简介、备注的字二元组和类别、形式、学科、技术、单位、项目等属性作为特征，
+ * 用MinHash签名和LSH分桶做近似检索，成果写操作时增量更新
+ */
+@Slf4j
+@Service
+public class SimilarityService {
+    private static final long SEED = 20241211L;
+
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+
+    @Value("${similarity.bands:16}")
+    private int bands;
+
+    @Value("${similarity.rows:4}")
+    private int rows;
+
+    @Value("${similarity.min-similarity:0.1}")
+    private double minSimilarity;
+
+    private volatile MinHashLsh index = new MinHashLsh(16, 4, SEED);
+
+    /**
+     * 查询与指定成果相似的成果ID
+     *
+     * @param achievementId 成果ID
+     * @param limit 返回条数
+     * @return 成果ID列表，按相似度降序
+     */
+    public List<Integer> similar(Integer achievementId, int limit) {
+        return this.index.similar(achievementId, limit, minSimilarity);
+    }
+
+    /**
+     * 定时全量重建
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${similarity.rebuild-interval:86400000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        MinHashLsh rebuilt = new MinHashLsh(bands, rows, SEED);
+        for (AchievementTable achievementTable : this.achievementTableMapper.queryAll()) {
+            if (isVisible(achievementTable)) {
+                rebuilt.put(achievementTable.getAchievementId(), featuresOf(achievementTable));
+            }
+        }
+        this.index = rebuilt;
+        log.info("相似成果索引重建完成，{}条，耗时{}ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 成果新增或修改后增量更新
+     *
+     * @param achievementId 成果ID
+     * @param achievementTable 成果当前数据，已删除时为null
+     */
+    public void onAchievementChanged(Integer achievementId, AchievementTable achievementTable) {
+        if (achievementTable == null || !isVisible(achievementTable)) {
+            this.index.remove(achievementId);
+            return;
+        }
+        this.index.put(achievementId, featuresOf(achievementTable));
+    }
+
+    /**
+     * 成果删除后移出索引
+     *
+     * @param achievementId 成果ID
+     */
+    public void onAchievementDeleted(Integer achievementId) {
+        this.index.remove(achievementId);
+    }
+
+    private static boolean isVisible(AchievementTable achievementTable) {
+        return !Integer.valueOf(0).equals(achievementTable.getAuditFlag());
+    }
+
+    private static Set<String> featuresOf(AchievementTable achievementTable) {
+        Set<String> features = new HashSet<>();
+        addBigrams(features, achievementTable.getAchievementName());
+        addBigrams(features, achievementTable.getAchievementIntro());
+        addBigrams(features, achievementTable.getRemarks());
+        addAttribute(features, "category", achievementTable.getAchievementCategory());
+        addAttribute(features, "form", achievementTable.getAchievementForm());
+        addAttribute(features, "subject", achievementTable.getSubjectCategory());
+        addAttribute(features, "technology", achievementTable.getTechnologyCategory());
+        addAttribute(features, "organization", achievementTable.getAchievementBelongingOrganization());
+        addAttribute(features, "project", achievementTable.getProjectId());
+        return features;
+    }
+
+    /*
+     * 中文没有分词，按相邻两个字切分；单字文本直接作为特征
+     */
+    private static void addBigrams(Set<String> features, String text) {
+        if (text == null) {
+            return;
+        }
+        List<Character> chars = new ArrayList<>();
+        for (char c : text.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                chars.add(c);
+            }
+        }
+        if (chars.size() == 1) {
+            features.add("t:" + chars.get(0));
+        }
+        for (int i = 0; i + 1 < chars.size(); i++) {
+            features.add("t:" + chars.get(i) + chars.get(i + 1));
+        }
+    }
+
+    private static void addAttribute(Set<String> features, String name, Object value) {
+        if (value != null && !value.toString().isEmpty()) {
+            features.add(name + ":" + value);
+        }
+    }
+}
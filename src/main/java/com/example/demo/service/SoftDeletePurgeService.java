@@ -0,0 +1,307 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 软删除行清理
+ * 各表软删除超过保留天数的行（deleted_time见SQL/soft_delete_archive.sql）每天定时移入<表名>_archive：
+ * 每批一个短事务，DELETE ... RETURNING直接写入归档表，取行时FOR UPDATE SKIP LOCKED不等待业务事务；
+ * 批次之间暂停batch-pause毫秒，每次每张表最多移动max-rows-per-run行，限制对线上IO和复制延迟的影响。
+ * 有行移出的表随后VACUUM (ANALYZE)，死元组空间可复用、表尾空页归还系统，并记录表大小变化。
+ * 清理在单独的线程上运行，定时任务和手动触发都只提交任务，不占用调度线程和请求线程，同一时间只运行一次；
+ * 结果通过getStatistics的lastRun查询。未执行归档脚本的表跳过
+ */
+@Slf4j
+@Service
+public class SoftDeletePurgeService {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String ARCHIVE_SUFFIX = "_archive";
+
+    /**
+     * 软删除的表，按月分区的事件表由分区维护处理
+     */
+    private static final List<String> TABLES = Arrays.asList(
+            "achievement_check_template", "achievement_table", "approval_records", "file_record",
+            "intellectual_property", "intellectual_property_applications", "interaction_evaluation",
+            "organization_info", "patent_complaints", "project_records", "role_table", "search_records",
+            "user_role_permissions", "version_history");
+
+    @Resource
+    private DataSource dataSource;
+    @Resource
+    private MaintenanceService maintenanceService;
+
+    @Value("${purge.enabled:true}")
+    private boolean enabled;
+
+    @Value("${purge.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${purge.batch-pause:200}")
+    private long batchPauseMs;
+
+    @Value("${purge.max-rows-per-run:100000}")
+    private long maxRowsPerRun;
+
+    @Value("${purge.vacuum:true}")
+    private boolean vacuum;
+
+    private volatile boolean running = true;
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "soft-delete-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<String, Object> lastRun = Collections.emptyMap();
+
+    /**
+     * 定时清理，默认每天4点
+     */
+    @Scheduled(cron = "${purge.cron:0 0 4 * * ?}")
+    public void scheduledPurge() {
+        if (!start()) {
+            log.warn("上一次软删除清理尚未结束，跳过本次");
+        }
+    }
+
+    /**
+     * 后台开始一次清理
+     *
+     * @return 已有清理在运行时返回false
+     */
+    public boolean start() {
+        if (!purging.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    purge();
+                } catch (Exception e) {
+                    log.error("软删除清理失败", e);
+                } finally {
+                    purging.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            purging.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /*
+     * 把超过保留期的软删除行移入归档表，记录每张表移动的行数、行数据字节数、清理前后的表大小和失败原因
+     */
+    private void purge() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("time", LocalDateTime.now().format(FORMATTER));
+        if (!enabled) {
+            res.put("skipped", "purge.enabled=false");
+            lastRun = res;
+            return;
+        }
+        if (maintenanceService.isActive()) {
+            res.put("skipped", "维护模式");
+            lastRun = res;
+            return;
+        }
+        res.put("retentionDays", retentionDays);
+        long totalRows = 0;
+        long totalReclaimed = 0;
+        for (String table : TABLES) {
+            if (!running) {
+                break;
+            }
+            Map<String, Object> tableRes = new LinkedHashMap<>();
+            long start = System.currentTimeMillis();
+            try (Connection connection = dataSource.getConnection()) {
+                if (!exists(connection, table + ARCHIVE_SUFFIX)) {
+                    tableRes.put("skipped", "未安装归档表");
+                    res.put(table, tableRes);
+                    continue;
+                }
+                long sizeBefore = relationSize(connection, table);
+                long[] moved = moveBatches(connection, table);
+                tableRes.put("rows", moved[0]);
+                tableRes.put("rowBytes", moved[1]);
+                if (moved[0] > 0 && vacuum) {
+                    try (Statement st = connection.createStatement()) {
+                        st.execute("VACUUM (ANALYZE) " + table);
+                    }
+                }
+                long sizeAfter = relationSize(connection, table);
+                tableRes.put("sizeBefore", sizeBefore);
+                tableRes.put("sizeAfter", sizeAfter);
+                tableRes.put("reclaimedBytes", Math.max(0, sizeBefore - sizeAfter));
+                totalRows += moved[0];
+                totalReclaimed += Math.max(0, sizeBefore - sizeAfter);
+            } catch (SQLException e) {
+                tableRes.put("error", e.getMessage());
+                log.warn("软删除清理失败 {}", table, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tableRes.put("error", "interrupted");
+                running = false;
+            }
+            tableRes.put("elapsedMs", System.currentTimeMillis() - start);
+            res.put(table, tableRes);
+        }
+        res.put("totalRows", totalRows);
+        res.put("totalReclaimedBytes", totalReclaimed);
+        log.info("软删除清理完成，归档{}行，表空间减少{}字节", totalRows, totalReclaimed);
+        lastRun = res;
+    }
+
+    /**
+     * 各表的软删除行数、已归档行数、表和归档表大小，以及上一次清理结果
+     *
+     * @return 清理状态
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("enabled", enabled);
+        res.put("retentionDays", retentionDays);
+        res.put("running", purging.get());
+        try (Connection connection = dataSource.getConnection()) {
+            for (String table : TABLES) {
+                Map<String, Object> tableRes = new LinkedHashMap<>();
+                String archive = table + ARCHIVE_SUFFIX;
+                boolean installed = exists(connection, archive);
+                tableRes.put("installed", installed);
+                tableRes.put("size", relationSize(connection, table));
+                if (installed) {
+                    try (PreparedStatement ps = connection.prepareStatement(
+                            "select count(*), count(*) filter (where deleted_time < now() - ? * interval '1 day') "
+                                    + "from " + table + " where table_status = false")) {
+                        ps.setInt(1, retentionDays);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            rs.next();
+                            tableRes.put("softDeleted", rs.getLong(1));
+                            tableRes.put("expired", rs.getLong(2));
+                        }
+                    }
+                    tableRes.put("archivedRows", estimatedRows(connection, archive));
+                    tableRes.put("archiveSize", relationSize(connection, archive));
+                }
+                res.put(table, tableRes);
+            }
+        } catch (SQLException e) {
+            res.put("error", e.getMessage());
+        }
+        res.put("lastRun", lastRun);
+        return res;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    /*
+     * 按批移动，返回{行数, 行数据字节数}；取到的行不足一批、达到单次上限或停机时结束
+     */
+    private long[] moveBatches(Connection connection, String table) throws SQLException, InterruptedException {
+        String archive = table + ARCHIVE_SUFFIX;
+        // 按列名而不是列顺序写入归档表，热表后来加的列不会错位
+        String sql = "with moved as ("
+                + " delete from " + table + " where ctid = any(array("
+                + "  select ctid from " + table
+                + "  where table_status = false and deleted_time < now() - ? * interval '1 day'"
+                + "  limit ? for update skip locked))"
+                + " returning *),"
+                + " archived as ("
+                + " insert into " + archive
+                + " select (jsonb_populate_record(null::" + archive + ", to_jsonb(moved) || jsonb_build_object('archived_time', now()))).*"
+                + " from moved)"
+                + " select count(*), coalesce(sum(pg_column_size(moved.*)), 0) from moved";
+        long rows = 0;
+        long bytes = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            while (running && rows < maxRowsPerRun) {
+                ps.setInt(1, retentionDays);
+                ps.setLong(2, Math.min(batchSize, maxRowsPerRun - rows));
+                long batchRows;
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    batchRows = rs.getLong(1);
+                    bytes += rs.getLong(2);
+                }
+                connection.commit();
+                rows += batchRows;
+                if (batchRows < batchSize) {
+                    break;
+                }
+                Thread.sleep(batchPauseMs);
+            }
+        } catch (SQLException | InterruptedException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return new long[]{rows, bytes};
+    }
+
+    private static boolean exists(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("select to_regclass(?) is not null")) {
+            ps.setString(1, relation);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    /*
+     * 表、索引和TOAST的总大小（字节）
+     */
+    private static long relationSize(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("select pg_total_relation_size(to_regclass(?))")) {
+            ps.setString(1, relation);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }
+    }
+
+    private static long estimatedRows(Connection connection, String relation) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("select reltuples::bigint from pg_class where relname = ?")) {
+            ps.setString(1, relation);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? Math.max(0L, rs.getLong(1)) : 0L;
+            }
+        }
+    }
+}
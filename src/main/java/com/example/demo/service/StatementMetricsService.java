@@ -0,0 +1,192 @@
+package com.example.demo.service;
+
+import com.example.demo.utils.LatencyHistogram;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SQL语句级统计
+ * 按MyBatis语句ID记录耗时直方图（微秒）、返回/影响行数和失败次数；超过慢查询阈值的语句保留最近若干条样本，
+ * 样本只记录带占位符的SQL和参数名、参数类型，不记录参数值。定时把耗时最高的语句打到日志
+ */
+@Slf4j
+@Service
+public class StatementMetricsService {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Value("${mybatis.metrics.slow-threshold:200}")
+    private long slowThresholdMs;
+
+    @Value("${mybatis.metrics.slow-samples:20}")
+    private int slowSamples;
+
+    @Value("${mybatis.metrics.log-top:10}")
+    private int logTop;
+
+    private final ConcurrentHashMap<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次语句执行，在请求线程上调用
+     *
+     * @param statementId 语句ID
+     * @param nanos 耗时，纳秒
+     * @param rows 返回或影响行数，未知时为-1
+     * @param failed 是否抛出异常
+     */
+    public void record(String statementId, long nanos, long rows, boolean failed) {
+        StatementStats stats = statsOf(statementId);
+        stats.latency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (rows >= 0) {
+            stats.rows.add(rows);
+        }
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * 是否达到慢查询阈值，达到时调用方再取BoundSql记录样本
+     *
+     * @param nanos 耗时，纳秒
+     * @return 是否慢查询
+     */
+    public boolean isSlow(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) >= slowThresholdMs;
+    }
+
+    /**
+     * 记录慢查询样本，参数值脱敏
+     *
+     * @param statementId 语句ID
+     * @param boundSql 绑定后的SQL
+     * @param nanos 耗时，纳秒
+     */
+    public void recordSlow(String statementId, BoundSql boundSql, long nanos) {
+        Map<String, Object> sample = new LinkedHashMap<>();
+        sample.put("time", LocalDateTime.now().format(FORMATTER));
+        sample.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(nanos));
+        sample.put("sql", boundSql.getSql().replaceAll("\\s+", " ").trim());
+        List<String> parameters = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            Class<?> type = mapping.getJavaType();
+            parameters.add(mapping.getProperty() + ":" + (type == null ? "?" : type.getSimpleName()));
+        }
+        sample.put("parameters", parameters);
+        StatementStats stats = statsOf(statementId);
+        synchronized (stats.samples) {
+            if (stats.samples.size() >= slowSamples) {
+                stats.samples.pollFirst();
+            }
+            stats.samples.addLast(sample);
+        }
+        stats.slow.increment();
+    }
+
+    /**
+     * 语句统计列表
+     *
+     * @param limit 返回条数，不大于0时返回空列表
+     * @param sort 排序字段：total（累计耗时）、p99、count、slow
+     * @return 每条语句的调用次数、耗时分位（微秒）、行数、失败数、慢查询样本
+     */
+    public List<Map<String, Object>> getStatistics(int limit, String sort) {
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (Map.Entry<String, StatementStats> entry : statements.entrySet()) {
+            StatementStats stats = entry.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("statementId", entry.getKey());
+            Map<String, Object> latency = stats.latency.summary();
+            item.put("count", latency.get("count"));
+            item.put("totalMs", Math.round(stats.latency.mean() * stats.latency.count() / 1000));
+            item.put("latencyUs", latency);
+            item.put("rows", stats.rows.sum());
+            item.put("errors", stats.errors.sum());
+            item.put("slowCount", stats.slow.sum());
+            synchronized (stats.samples) {
+                item.put("slowSamples", new ArrayList<>(stats.samples));
+            }
+            res.add(item);
+        }
+        final String key = sortKeyOf(sort);
+        Collections.sort(res, new Comparator<Map<String, Object>>() {
+            @Override
+            public int compare(Map<String, Object> a, Map<String, Object> b) {
+                return Long.compare(valueOf(b, key), valueOf(a, key));
+            }
+        });
+        int size = Math.max(0, Math.min(limit, res.size()));
+        return size < res.size() ? new ArrayList<>(res.subList(0, size)) : res;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    /**
+     * 定时输出累计耗时最高的语句
+     */
+    @Scheduled(initialDelayString = "${mybatis.metrics.log-interval:300000}",
+            fixedDelayString = "${mybatis.metrics.log-interval:300000}")
+    public void logSnapshot() {
+        for (Map<String, Object> item : getStatistics(logTop, "total")) {
+            log.info("SQL统计 {} count={} totalMs={} latencyUs={} rows={} errors={} slow={}",
+                    item.get("statementId"), item.get("count"), item.get("totalMs"), item.get("latencyUs"),
+                    item.get("rows"), item.get("errors"), item.get("slowCount"));
+        }
+    }
+
+    private StatementStats statsOf(String statementId) {
+        StatementStats stats = statements.get(statementId);
+        if (stats == null) {
+            StatementStats created = new StatementStats();
+            stats = statements.putIfAbsent(statementId, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private static String sortKeyOf(String sort) {
+        if ("p99".equals(sort) || "count".equals(sort)) {
+            return sort;
+        }
+        return "slow".equals(sort) ? "slowCount" : "totalMs";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long valueOf(Map<String, Object> item, String key) {
+        Object value = "p99".equals(key) ? ((Map<String, Object>) item.get("latencyUs")).get("p99") : item.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static class StatementStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slow = new LongAdder();
+        private final Deque<Map<String, Object>> samples = new ArrayDeque<>();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.demo.service;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.mapper.OrganizationInfoMapper;
+import com.example.demo.mapper.UserRolePermissionsMapper;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.model.OrganizationInfo;
+import com.example.demo.model.Suggestion;
+import com.example.demo.model.UserRolePermissions;
+import com.example.demo.utils.PrefixTrie;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 搜索框联想服务
+ * 成果名、单位名、用户名常驻内存前缀树，按热度排序；
+ * 成果写操作增量更新，单位和用户的热度随定时全量重建刷新；
+ * 重建期间的增量更新同时记下，新树替换旧树前按顺序重放，不会被重建时读到的旧数据覆盖
+ */
+@Slf4j
+@Service
+public class SuggestionService {
+    public static final String TYPE_ACHIEVEMENT = "achievement";
+    public static final String TYPE_ORGANIZATION = "organization";
+    public static final String TYPE_USER = "user";
+
+    @Resource
+    private AchievementTableMapper achievementTableMapper;
+    @Resource
+    private OrganizationInfoMapper organizationInfoMapper;
+    @Resource
+    private UserRolePermissionsMapper userRolePermissionsMapper;
+
+    @Value("${suggestion.top-size:20}")
+    private int topSize;
+
+    private volatile PrefixTrie trie = new PrefixTrie(20);
+
+    /**
+     * 保护trie的替换和pending，增量更新与记录在同一把锁内
+     */
+    private final Object updateLock = new Object();
+
+    /**
+     * 重建期间的增量更新，未在重建时为null
+     */
+    private List<Consumer<PrefixTrie>> pending;
+
+    /**
+     * 按前缀查询联想词
+     *
+     * @param prefix 输入前缀
+     * @param limit 返回条数
+     * @return 联想词列表
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return this.trie.suggest(prefix, limit);
+    }
+
+    /**
+     * 定时全量重建，刷新单位和用户的热度
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${suggestion.rebuild-interval:3600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        // 先开始记录再读库，读库之后提交的修改都会被重放
+        synchronized (updateLock) {
+            this.pending = new ArrayList<>();
+        }
+        try {
+            PrefixTrie rebuilt = build();
+            // 新树的节点全部是脏的，换上之前算好，第一批查询不用各自重算整棵子树
+            rebuilt.warm();
+            int replayed;
+            synchronized (updateLock) {
+                replayed = this.pending.size();
+                for (Consumer<PrefixTrie> update : this.pending) {
+                    update.accept(rebuilt);
+                }
+                // 只重算重放经过的路径
+                rebuilt.warm();
+                this.trie = rebuilt;
+            }
+            log.info("联想词前缀树重建完成，{}条，重放{}条增量更新，耗时{}ms", rebuilt.size(), replayed,
+                    System.currentTimeMillis() - start);
+        } finally {
+            synchronized (updateLock) {
+                this.pending = null;
+            }
+        }
+    }
+
+    private PrefixTrie build() {
+        PrefixTrie rebuilt = new PrefixTrie(topSize);
+        Map<Integer, Long> organizationScores = new HashMap<>();
+        Map<Integer, Long> userScores = new HashMap<>();
+        for (AchievementTable achievementTable : this.achievementTableMapper.queryAll()) {
+            if (!isVisible(achievementTable)) {
+                continue;
+            }
+            long score = scoreOf(achievementTable);
+            rebuilt.put(new Suggestion(TYPE_ACHIEVEMENT, achievementTable.getAchievementId(),
+                    achievementTable.getAchievementName(), score));
+            addScore(organizationScores, achievementTable.getAchievementBelongingOrganization(), score);
+            addScore(userScores, achievementTable.getUserId(), score);
+        }
+        for (OrganizationInfo organizationInfo : this.organizationInfoMapper.queryAll()) {
+            Long score = organizationScores.get(organizationInfo.getOrganizationId());
+            rebuilt.put(new Suggestion(TYPE_ORGANIZATION, organizationInfo.getOrganizationId(),
+                    organizationInfo.getOrganizationName(), score == null ? 0L : score));
+        }
+        for (UserRolePermissions user : this.userRolePermissionsMapper.queryAll()) {
+            Long score = userScores.get(user.getUserId());
+            rebuilt.put(new Suggestion(TYPE_USER, user.getUserId(), user.getUserName(), score == null ? 0L : score));
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 成果新增或修改后增量更新
+     *
+     * @param achievementId 成果ID
+     * @param achievementTable 成果当前数据，已删除时为null
+     */
+    public void onAchievementChanged(Integer achievementId, AchievementTable achievementTable) {
+        if (achievementTable == null || !isVisible(achievementTable)) {
+            update(trie -> trie.remove(TYPE_ACHIEVEMENT, achievementId));
+            return;
+        }
+        Suggestion suggestion = new Suggestion(TYPE_ACHIEVEMENT, achievementId,
+                achievementTable.getAchievementName(), scoreOf(achievementTable));
+        update(trie -> trie.put(suggestion));
+    }
+
+    /**
+     * 成果删除后移除联想词
+     *
+     * @param achievementId 成果ID
+     */
+    public void onAchievementDeleted(Integer achievementId) {
+        update(trie -> trie.remove(TYPE_ACHIEVEMENT, achievementId));
+    }
+
+    /*
+     * 应用到当前的树，重建期间同时记下供新树重放
+     */
+    private void update(Consumer<PrefixTrie> update) {
+        synchronized (updateLock) {
+            update.accept(this.trie);
+            if (this.pending != null) {
+                this.pending.add(update);
+            }
+        }
+    }
+
+    /*
+     * 待审核的成果不出现在联想里，与模糊查询的audit_flag != 0保持一致
+     */
+    private static boolean isVisible(AchievementTable achievementTable) {
+        return !Integer.valueOf(0).equals(achievementTable.getAuditFlag());
+    }
+
+    private static long scoreOf(AchievementTable achievementTable) {
+        long score = 0L;
+        if (achievementTable.getSearchCount() != null) {
+            score += achievementTable.getSearchCount();
+        }
+        if (achievementTable.getAchievementDownloadCount() != null) {
+            score += achievementTable.getAchievementDownloadCount();
+        }
+        return score;
+    }
+
+    private static void addScore(Map<Integer, Long> scores, Integer id, long score) {
+        if (id == null) {
+            return;
+        }
+        Long current = scores.get(id);
+        scores.put(id, current == null ? score : current + score);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.demo.service;
 
 import com.example.demo.mapper.VersionHistoryMapper;
 import com.example.demo.model.VersionHistory;
+import org.apache.ibatis.cursor.Cursor;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -74,6 +75,16 @@ public class VersionHistoryService implements VersionHistoryMapper {
      public List<VersionHistory> queryAll(){
         return this.versionHistoryMapper.queryAll();
      }
+
+    /**
+     * 以游标逐行查询所有行数据
+     *
+     * @return 游标
+     */
+     @Override
+     public Cursor<VersionHistory> streamAll(){
+        return this.versionHistoryMapper.streamAll();
+     }
      
     /**
      * 分页查询所有行数据
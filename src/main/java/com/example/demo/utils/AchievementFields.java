@@ -0,0 +1,115 @@
+package com.example.demo.utils;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 成果列表的稀疏字段集
+ * 前端以fields=achievementName,achievementCategory,uploadTime指定需要的字段，
+ * 查询只取对应列，序列化只输出对应属性；字段名按白名单映射为列名，未知字段忽略
+ */
+public class AchievementFields {
+
+    /**
+     * AchievementTable上@JsonFilter的过滤器名
+     */
+    public static final String FILTER = "achievementFields";
+
+    private static final String ID = "achievementId";
+
+    /**
+     * 属性名 -> 列名
+     */
+    private static final Map<String, String> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put(ID, "achievement_id");
+        COLUMNS.put("achievementName", "achievement_name");
+        COLUMNS.put("achievementCategory", "achievement_category");
+        COLUMNS.put("achievementForm", "achievement_form");
+        COLUMNS.put("intellectualPropertyId", "intellectual_property_id");
+        COLUMNS.put("achievementBelongingOrganization", "achievement_belonging_organization");
+        COLUMNS.put("projectId", "project_id");
+        COLUMNS.put("achievementVersion", "achievement_version");
+        COLUMNS.put("achievementIntro", "achievement_intro");
+        COLUMNS.put("userId", "user_id");
+        COLUMNS.put("uploadTime", "upload_time");
+        COLUMNS.put("templateId", "template_id");
+        COLUMNS.put("remarks", "remarks");
+        COLUMNS.put("achievementDownloadCount", "achievement_download_count");
+        COLUMNS.put("searchCount", "search_count");
+        COLUMNS.put("tableStatus", "table_status");
+        COLUMNS.put("organizationName", "organization_name");
+        COLUMNS.put("achievementNo", "achievement_no");
+        COLUMNS.put("projectNo", "project_no");
+        COLUMNS.put("userName", "user_name");
+        COLUMNS.put("auditFlag", "audit_flag");
+        COLUMNS.put("subjectCategory", "subject_category");
+        COLUMNS.put("technologyCategory", "technology_category");
+    }
+
+    /**
+     * 解析fields参数中的有效属性名，成果ID总是包含在内
+     *
+     * @param fields 逗号分隔的属性名
+     * @return 属性名集合，未指定时返回null表示全部字段
+     */
+    public static Set<String> propertiesOf(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> properties = new LinkedHashSet<>();
+        properties.add(ID);
+        for (String field : fields.split(",")) {
+            String property = field.trim();
+            if (COLUMNS.containsKey(property)) {
+                properties.add(property);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * 将fields参数转换为查询列，只会返回白名单中的列名，可以直接拼进SQL
+     *
+     * @param fields 逗号分隔的属性名
+     * @return 列名列表，未指定时返回null表示查询默认列
+     */
+    public static List<String> columnsOf(String fields) {
+        Set<String> properties = propertiesOf(fields);
+        if (properties == null) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>();
+        for (String property : properties) {
+            columns.add(COLUMNS.get(property));
+        }
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * 包装响应体，序列化时成果对象只输出指定属性
+     *
+     * @param body 响应体
+     * @param fields 逗号分隔的属性名，未指定时输出全部属性
+     * @return 带过滤器的响应体
+     */
+    public static MappingJacksonValue filter(Object body, String fields) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        Set<String> properties = propertiesOf(fields);
+        SimpleBeanPropertyFilter filter = properties == null
+                ? SimpleBeanPropertyFilter.serializeAll()
+                : SimpleBeanPropertyFilter.filterOutAllExcept(properties);
+        value.setFilters(new SimpleFilterProvider().addFilter(FILTER, filter));
+        return value;
+    }
+}
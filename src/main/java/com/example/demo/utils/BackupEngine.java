@@ -0,0 +1,672 @@
+package com.example.demo.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 逻辑备份引擎
+ * 不依赖Spring，给定取连接的方式即可运行。协调连接开启可重复读事务并导出快照，每张表由一个工作线程在自己的连接上
+ * 导入同一快照后用游标逐行读取，各表数据是同一时刻的一致视图。
+ * 每行写成一行JSON数组，元素为各列的文本形式（NULL为null），按chunkRows分块、gzip压缩，记录每块行数和SHA-256；
+ * 列名和类型、主键、约束、索引定义、序列值写入manifest.json，清单最后写入，存在清单即表示备份完整。
+ * 增量备份依赖backup_change_capture.sql安装的变更捕获，清单中parent为上一次备份、base为链首的全量备份
+ */
+public class BackupEngine {
+
+    public static final String MANIFEST = "manifest.json";
+    public static final String CHANGE_LOG = "backup_change_log";
+    public static final String MODE_FULL = "full";
+    public static final String MODE_CHANGES = "changes";
+    private static final String CHUNK_SUFFIX = ".ndjson.gz";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 取数据库连接
+     */
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    /**
+     * 进度回调，在工作线程上调用
+     */
+    public interface Listener {
+        void onTableStart(String table, long estimatedRows);
+
+        void onRows(String table, long rows);
+
+        void onTableDone(String table, long rows);
+    }
+
+    private final ConnectionSource source;
+    private final ObjectMapper objectMapper;
+    private final int parallelism;
+    private final int chunkRows;
+    private final int fetchSize;
+
+    public BackupEngine(ConnectionSource source, ObjectMapper objectMapper, int parallelism, int chunkRows, int fetchSize) {
+        this.source = source;
+        this.objectMapper = objectMapper;
+        this.parallelism = parallelism;
+        this.chunkRows = chunkRows;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 全量备份当前schema下的所有表（分区表按父表整体导出）
+     *
+     * @param dir 备份目录，需为空目录
+     * @param id 备份ID
+     * @param listener 进度回调
+     * @return 清单
+     * @throws Exception 任一张表导出失败
+     */
+    public Map<String, Object> backup(File dir, String id, Listener listener) throws Exception {
+        return run(dir, id, null, listener);
+    }
+
+    /**
+     * 增量备份：只导出上一次备份之后变更过的行，以及其后删除的主键。
+     * 上一次备份快照中不可见、本次快照中可见的变更恰好是两次备份之间提交的变更，不按时间判断，不会漏掉长事务；
+     * 没有主键、未挂变更捕获触发器、被TRUNCATE过、列有变化或上一次备份中没有的表整表导出
+     *
+     * @param dir 备份目录，需为空目录
+     * @param id 备份ID
+     * @param parent 上一次备份（全量或增量）的清单
+     * @param listener 进度回调
+     * @return 清单
+     * @throws Exception 任一张表导出失败
+     */
+    public Map<String, Object> incrementalBackup(File dir, String id, JsonNode parent, Listener listener) throws Exception {
+        return run(dir, id, parent, listener);
+    }
+
+    /**
+     * 清理已被某次备份覆盖的变更记录，之后的增量备份都以这次或更晚的备份为基础
+     *
+     * @param txidSnapshot 该备份清单中的txidSnapshot
+     * @return 删除的记录数，未安装变更捕获时为0
+     * @throws SQLException 删除失败
+     */
+    public int purgeChanges(String txidSnapshot) throws SQLException {
+        try (Connection connection = source.getConnection()) {
+            if (!hasChangeLog(connection)) {
+                return 0;
+            }
+            try (PreparedStatement ps = connection.prepareStatement("delete from " + quote(CHANGE_LOG)
+                    + " where txid_visible_in_snapshot(txid, ?::txid_snapshot)")) {
+                ps.setString(1, txidSnapshot);
+                return ps.executeUpdate();
+            }
+        }
+    }
+
+    private Map<String, Object> run(File dir, String id, JsonNode parent, Listener listener) throws Exception {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建备份目录" + dir.getPath());
+        }
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("id", id);
+        manifest.put("type", parent == null ? "full" : "incremental");
+        String parentSnapshot = null;
+        if (parent != null) {
+            parentSnapshot = parent.path("txidSnapshot").asText();
+            if (!parentSnapshot.matches("[0-9]+:[0-9]+:[0-9,]*")) {
+                throw new IllegalArgumentException("上一次备份没有有效的txidSnapshot: " + parent.path("id").asText());
+            }
+            manifest.put("parent", parent.path("id").asText());
+            manifest.put("base", parent.has("base") ? parent.path("base").asText() : parent.path("id").asText());
+        }
+        manifest.put("startedAt", LocalDateTime.now().format(FORMATTER));
+
+        Connection coordinator = source.getConnection();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "backup-" + id);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            coordinator.setAutoCommit(false);
+            coordinator.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            String snapshot;
+            try (Statement statement = coordinator.createStatement();
+                 ResultSet rs = statement.executeQuery("select pg_export_snapshot(), to_char(now(), 'YYYY-MM-DD HH24:MI:SS'), "
+                         + "txid_current_snapshot()::text")) {
+                rs.next();
+                snapshot = rs.getString(1);
+                manifest.put("snapshotTime", rs.getString(2));
+                manifest.put("txidSnapshot", rs.getString(3));
+            }
+
+            final List<Map<String, Object>> tables = describeTables(coordinator);
+            manifest.put("sequences", sequences(coordinator));
+            if (parent != null) {
+                planIncremental(coordinator, tables, parent, parentSnapshot);
+            }
+            // 大表先开始，减少最后只剩一张大表在跑的时间
+            List<Map<String, Object>> ordered = new ArrayList<>(tables);
+            Collections.sort(ordered, new Comparator<Map<String, Object>>() {
+                @Override
+                public int compare(Map<String, Object> a, Map<String, Object> b) {
+                    return Long.compare((Long) b.get("estimatedRows"), (Long) a.get("estimatedRows"));
+                }
+            });
+            final String since = parentSnapshot;
+            List<Future<?>> futures = new ArrayList<>();
+            for (final Map<String, Object> table : ordered) {
+                futures.add(executor.submit(() -> {
+                    if (MODE_CHANGES.equals(table.get("mode"))) {
+                        exportChanges(dir, snapshot, table, since, listener);
+                    } else {
+                        exportTable(dir, snapshot, table, null, listener);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    executor.shutdownNow();
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+            manifest.put("tables", tables);
+            manifest.put("finishedAt", LocalDateTime.now().format(FORMATTER));
+            writeManifest(dir, manifest);
+            return manifest;
+        } finally {
+            executor.shutdownNow();
+            try {
+                coordinator.rollback();
+                coordinator.setAutoCommit(true);
+            } finally {
+                coordinator.close();
+            }
+        }
+    }
+
+    /*
+     * 决定每张表按变更导出还是整表导出，按变更导出的表以变更条数作为估计行数
+     */
+    private static void planIncremental(Connection connection, List<Map<String, Object>> tables, JsonNode parent, String parentSnapshot)
+            throws SQLException {
+        Map<String, JsonNode> parentTables = new HashMap<>();
+        for (JsonNode table : parent.path("tables")) {
+            parentTables.put(table.path("name").asText(), table);
+        }
+        Set<String> captured = new HashSet<>();
+        Map<String, Long> changes = new HashMap<>();
+        Set<String> truncated = new HashSet<>();
+        if (hasChangeLog(connection)) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("select c.relname from pg_trigger t join pg_class c on c.oid = t.tgrelid "
+                         + "join pg_namespace n on n.oid = c.relnamespace "
+                         + "where n.nspname = current_schema() and t.tgname = 'backup_capture_insert' and t.tgenabled <> 'D'")) {
+                while (rs.next()) {
+                    captured.add(rs.getString(1));
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement("select table_name, count(*), bool_or(op = 'T') from "
+                    + quote(CHANGE_LOG) + " where not txid_visible_in_snapshot(txid, ?::txid_snapshot) group by table_name")) {
+                ps.setString(1, parentSnapshot);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        changes.put(rs.getString(1), rs.getLong(2));
+                        if (rs.getBoolean(3)) {
+                            truncated.add(rs.getString(1));
+                        }
+                    }
+                }
+            }
+        }
+        for (Map<String, Object> table : tables) {
+            String name = (String) table.get("name");
+            JsonNode parentTable = parentTables.get(name);
+            boolean incremental = captured.contains(name) && !truncated.contains(name)
+                    && !((List<?>) table.get("primaryKey")).isEmpty()
+                    && parentTable != null && sameColumns(parentTable, table);
+            if (incremental) {
+                table.put("mode", MODE_CHANGES);
+                Long count = changes.get(name);
+                table.put("estimatedRows", count == null ? 0L : count);
+            } else {
+                table.put("mode", MODE_FULL);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean sameColumns(JsonNode parentTable, Map<String, Object> table) {
+        List<Map<String, Object>> columns = (List<Map<String, Object>>) table.get("columns");
+        JsonNode parentColumns = parentTable.path("columns");
+        if (parentColumns.size() != columns.size()) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (!parentColumns.get(i).path("name").asText().equals(columns.get(i).get("name"))
+                    || !parentColumns.get(i).path("type").asText().equals(columns.get(i).get("type"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 导出一张表，where不为空时只导出满足条件的行；结果（行数、分块）写回table
+     *
+     * @param dir 备份目录
+     * @param snapshot 导出的快照ID，为null时使用连接自己的快照
+     * @param table describeTables返回的表描述
+     * @param where 过滤条件，不含where关键字
+     * @param listener 进度回调
+     * @throws Exception 导出失败
+     */
+    public void exportTable(File dir, String snapshot, Map<String, Object> table, String where, Listener listener) throws Exception {
+        String name = (String) table.get("name");
+        listener.onTableStart(name, (Long) table.get("estimatedRows"));
+        String sql = "select " + columnList(table) + " from " + quote(name) + (where == null ? "" : " where " + where);
+        Export export = export(dir, snapshot, name, name, sql, listener);
+        table.put("rows", export.rows);
+        table.put("chunks", export.chunks);
+        listener.onTableDone(name, export.rows);
+    }
+
+    /*
+     * 按变更导出：上一次备份之后变更过、现在仍存在的行写入chunks，已不存在的主键写入deletes，
+     * 每行一个主键值数组，列顺序同primaryKey
+     */
+    @SuppressWarnings("unchecked")
+    private void exportChanges(File dir, String snapshot, Map<String, Object> table, String parentSnapshot, Listener listener)
+            throws Exception {
+        String name = (String) table.get("name");
+        List<String> primaryKey = (List<String>) table.get("primaryKey");
+        Map<String, String> types = new HashMap<>();
+        for (Map<String, Object> column : (List<Map<String, Object>>) table.get("columns")) {
+            types.put((String) column.get("name"), (String) column.get("type"));
+        }
+        StringBuilder keys = new StringBuilder();
+        StringBuilder rawKeys = new StringBuilder();
+        StringBuilder typedKeys = new StringBuilder();
+        StringBuilder matches = new StringBuilder();
+        for (String column : primaryKey) {
+            String value = "(c.row_key ->> '" + column.replace("'", "''") + "')";
+            String typed = value + "::" + types.get(column);
+            String separator = keys.length() == 0 ? "" : ", ";
+            keys.append(separator).append(quote(column));
+            rawKeys.append(separator).append(value);
+            typedKeys.append(separator).append(typed);
+            matches.append(matches.length() == 0 ? "" : " and ").append("t.").append(quote(column)).append(" = ").append(typed);
+        }
+        String changed = " from " + quote(CHANGE_LOG) + " c where c.table_name = '" + name.replace("'", "''")
+                + "' and c.op <> 'T' and not txid_visible_in_snapshot(c.txid, '" + parentSnapshot + "'::txid_snapshot)";
+        exportTable(dir, snapshot, table, "(" + keys + ") in (select " + typedKeys + changed + ")", listener);
+
+        String deletes = "select distinct " + rawKeys + changed
+                + " and not exists (select 1 from " + quote(name) + " t where " + matches + ")";
+        Export export = export(dir, snapshot, name, name + ".deletes", deletes, null);
+        table.put("deleteRows", export.rows);
+        table.put("deleteChunks", export.chunks);
+    }
+
+    /*
+     * 执行查询，结果按chunkRows分块写入dir/table/prefix.NNNNN.ndjson.gz
+     */
+    private Export export(File dir, String snapshot, String table, String prefix, String sql, Listener listener) throws Exception {
+        File tableDir = new File(dir, table);
+        if (!tableDir.exists() && !tableDir.mkdirs()) {
+            throw new IOException("无法创建目录" + tableDir.getPath());
+        }
+        Export export = new Export();
+        try (Connection connection = source.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try (Statement statement = connection.createStatement()) {
+                if (snapshot != null) {
+                    statement.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+                }
+                statement.setFetchSize(fetchSize);
+                try (ResultSet rs = statement.executeQuery(sql)) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    ChunkWriter writer = null;
+                    try {
+                        while (rs.next()) {
+                            if (writer == null) {
+                                writer = new ChunkWriter(new File(tableDir, String.format("%s.%05d%s", prefix, export.chunks.size() + 1, CHUNK_SUFFIX)));
+                            }
+                            JsonGenerator generator = writer.generator;
+                            generator.writeStartArray();
+                            for (int i = 1; i <= columns; i++) {
+                                String value = rs.getString(i);
+                                if (value == null) {
+                                    generator.writeNull();
+                                } else {
+                                    generator.writeString(value);
+                                }
+                            }
+                            generator.writeEndArray();
+                            generator.writeRaw('\n');
+                            export.rows++;
+                            if (++writer.rows >= chunkRows) {
+                                export.chunks.add(writer.finish(dir));
+                                writer = null;
+                                if (listener != null) {
+                                    listener.onRows(table, export.rows);
+                                }
+                            }
+                        }
+                        if (writer != null) {
+                            export.chunks.add(writer.finish(dir));
+                            writer = null;
+                        }
+                    } finally {
+                        if (writer != null) {
+                            writer.abort();
+                        }
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        }
+        return export;
+    }
+
+    /**
+     * 当前schema下的表：列、约束、非约束索引、估计行数
+     *
+     * @param connection 连接
+     * @return 表描述，按表名排序
+     * @throws SQLException 查询失败
+     */
+    public static List<Map<String, Object>> describeTables(Connection connection) throws SQLException {
+        List<Map<String, Object>> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select c.relname, c.reltuples::bigint from pg_class c "
+                     + "join pg_namespace n on n.oid = c.relnamespace "
+                     + "where n.nspname = current_schema() and c.relkind in ('r', 'p') and not c.relispartition "
+                     + "and c.relname <> '" + CHANGE_LOG + "' order by c.relname")) {
+            while (rs.next()) {
+                Map<String, Object> table = new LinkedHashMap<>();
+                table.put("name", rs.getString(1));
+                table.put("estimatedRows", Math.max(0L, rs.getLong(2)));
+                tables.add(table);
+            }
+        }
+        for (Map<String, Object> table : tables) {
+            String name = (String) table.get("name");
+            List<Map<String, Object>> columns = new ArrayList<>();
+            try (PreparedStatement ps = connection.prepareStatement("select a.attname, format_type(a.atttypid, a.atttypmod) "
+                    + "from pg_attribute a where a.attrelid = ?::regclass and a.attnum > 0 and not a.attisdropped order by a.attnum")) {
+                ps.setString(1, quote(name));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> column = new LinkedHashMap<>();
+                        column.put("name", rs.getString(1));
+                        column.put("type", rs.getString(2));
+                        columns.add(column);
+                    }
+                }
+            }
+            table.put("columns", columns);
+            List<String> primaryKey = new ArrayList<>();
+            try (PreparedStatement ps = connection.prepareStatement("select a.attname from pg_constraint c "
+                    + "cross join unnest(c.conkey) with ordinality k(attnum, ord) "
+                    + "join pg_attribute a on a.attrelid = c.conrelid and a.attnum = k.attnum "
+                    + "where c.conrelid = ?::regclass and c.contype = 'p' order by k.ord")) {
+                ps.setString(1, quote(name));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        primaryKey.add(rs.getString(1));
+                    }
+                }
+            }
+            table.put("primaryKey", primaryKey);
+            table.put("constraints", definitions(connection, "select conname, pg_get_constraintdef(oid) from pg_constraint "
+                    + "where conrelid = ?::regclass and contype in ('p', 'u', 'f', 'c', 'x') order by contype <> 'p', conname", name));
+            table.put("indexes", definitions(connection, "select i.indexrelid::regclass::text, pg_get_indexdef(i.indexrelid) from pg_index i "
+                    + "where i.indrelid = ?::regclass and not exists (select 1 from pg_constraint c where c.conindid = i.indexrelid) "
+                    + "order by 1", name));
+        }
+        return tables;
+    }
+
+    /**
+     * 重新计算每个分块的行数和SHA-256，与清单比对
+     *
+     * @param dir 备份目录
+     * @param objectMapper JSON
+     * @return 出错的分块说明，为空表示校验通过
+     * @throws IOException 清单无法读取
+     */
+    public static List<String> verify(File dir, ObjectMapper objectMapper) throws IOException {
+        List<String> errors = new ArrayList<>();
+        JsonNode manifest = objectMapper.readTree(new File(dir, MANIFEST));
+        for (JsonNode table : manifest.path("tables")) {
+            long rows = verifyChunks(dir, table.path("chunks"), errors);
+            if (rows != table.path("rows").asLong()) {
+                errors.add(table.path("name").asText() + ": 表行数" + rows + "与清单" + table.path("rows").asLong() + "不符");
+            }
+            if (table.has("deleteChunks")) {
+                long deleteRows = verifyChunks(dir, table.path("deleteChunks"), errors);
+                if (deleteRows != table.path("deleteRows").asLong()) {
+                    errors.add(table.path("name").asText() + ": 删除行数" + deleteRows + "与清单" + table.path("deleteRows").asLong() + "不符");
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static long verifyChunks(File dir, JsonNode chunks, List<String> errors) {
+        long total = 0;
+        for (JsonNode chunk : chunks) {
+            File file = new File(dir, chunk.path("file").asText());
+            if (!file.isFile()) {
+                errors.add(chunk.path("file").asText() + ": 文件不存在");
+                continue;
+            }
+            MessageDigest digest = sha256();
+            long rows = 0;
+            try (InputStream in = new DigestInputStream(new FileInputStream(file), digest);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in, 65536), StandardCharsets.UTF_8))) {
+                while (reader.readLine() != null) {
+                    rows++;
+                }
+                // 读到gzip尾部后可能还有未读的字节，读完再算摘要
+                byte[] rest = new byte[8192];
+                while (in.read(rest) >= 0) {
+                    // 只为更新摘要
+                }
+            } catch (IOException e) {
+                errors.add(chunk.path("file").asText() + ": " + e.getMessage());
+                continue;
+            }
+            if (rows != chunk.path("rows").asLong()) {
+                errors.add(chunk.path("file").asText() + ": 行数" + rows + "与清单" + chunk.path("rows").asLong() + "不符");
+            }
+            if (!hex(digest.digest()).equals(chunk.path("sha256").asText())) {
+                errors.add(chunk.path("file").asText() + ": 校验和不符");
+            }
+            total += rows;
+        }
+        return total;
+    }
+
+    /**
+     * 打开分块读取，每行一个JSON数组
+     *
+     * @param file 分块文件
+     * @return 读取器
+     * @throws IOException 打开失败
+     */
+    public static BufferedReader openChunk(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file), 65536), StandardCharsets.UTF_8));
+    }
+
+    public static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    public static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void writeManifest(File dir, Map<String, Object> manifest) throws IOException {
+        File tmp = new File(dir, MANIFEST + ".tmp");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp, manifest);
+        Files.move(tmp.toPath(), new File(dir, MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String columnList(Map<String, Object> table) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> column : (List<Map<String, Object>>) table.get("columns")) {
+            sb.append(sb.length() == 0 ? "" : ", ").append(quote((String) column.get("name")));
+        }
+        return sb.toString();
+    }
+
+    private static boolean hasChangeLog(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select to_regclass('" + CHANGE_LOG + "') is not null")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static List<Map<String, Object>> definitions(Connection connection, String sql, String table) throws SQLException {
+        List<Map<String, Object>> res = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, quote(table));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("name", rs.getString(1));
+                    item.put("definition", rs.getString(2));
+                    res.add(item);
+                }
+            }
+        }
+        return res;
+    }
+
+    /*
+     * 序列当前值，恢复后按此setval，新插入的ID不会与备份中的冲突
+     */
+    private static Map<String, Object> sequences(Connection connection) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select c.relname from pg_class c join pg_namespace n on n.oid = c.relnamespace "
+                     + "where n.nspname = current_schema() and c.relkind = 'S' order by c.relname")) {
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        for (String name : names) {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("select last_value, is_called from " + quote(name))) {
+                if (rs.next()) {
+                    // 未调用过的序列下一次取last_value本身
+                    res.put(name, rs.getBoolean(2) ? rs.getLong(1) : rs.getLong(1) - 1);
+                }
+            }
+        }
+        return res;
+    }
+
+    private static class Export {
+        private final List<Map<String, Object>> chunks = new ArrayList<>();
+        private long rows;
+    }
+
+    /*
+     * 一个分块：gzip压缩，同时对压缩后的字节计算SHA-256
+     */
+    private class ChunkWriter {
+        private final File file;
+        private final MessageDigest digest = sha256();
+        private final JsonGenerator generator;
+        private long rows;
+
+        private ChunkWriter(File file) throws IOException {
+            this.file = file;
+            OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536), digest);
+            this.generator = objectMapper.getFactory().createGenerator(new GZIPOutputStream(out, 65536));
+            this.generator.setRootValueSeparator(null);
+        }
+
+        private Map<String, Object> finish(File dir) throws IOException {
+            generator.close();
+            Map<String, Object> chunk = new LinkedHashMap<>();
+            chunk.put("file", dir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+            chunk.put("rows", rows);
+            chunk.put("bytes", file.length());
+            chunk.put("sha256", hex(digest.digest()));
+            return chunk;
+        }
+
+        private void abort() {
+            try {
+                generator.close();
+            } catch (IOException ignored) {
+                // 导出已失败，只需关闭文件
+            }
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
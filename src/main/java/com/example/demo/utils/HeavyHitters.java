@@ -0,0 +1,87 @@
+package com.example.demo.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式高频项统计（Space-Saving算法）
+ * 只保留固定个数的计数器，满了以后新项顶替计数最小的项并继承其计数作为误差上界，
+ * 内存占用与数据量无关，真实频次超过 总数/容量 的项一定会被保留
+ */
+public class HeavyHitters {
+
+    private final int capacity;
+
+    /**
+     * 项 -> {计数, 误差上界}
+     */
+    private final Map<String, long[]> counters = new HashMap<>();
+
+    private long total = 0;
+
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 记录一次出现
+     *
+     * @param item 项
+     */
+    public synchronized void offer(String item) {
+        total++;
+        long[] counter = counters.get(item);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new long[]{1, 0});
+            return;
+        }
+        String minItem = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < minCount) {
+                minCount = entry.getValue()[0];
+                minItem = entry.getKey();
+            }
+        }
+        counters.remove(minItem);
+        counters.put(item, new long[]{minCount + 1, minCount});
+    }
+
+    /**
+     * 计数最高的若干项
+     *
+     * @param limit 返回条数
+     * @return 每项包含item、count、error
+     */
+    public synchronized List<Map<String, Object>> top(int limit) {
+        List<Map.Entry<String, long[]>> entries = new ArrayList<>(counters.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, long[]>>() {
+            @Override
+            public int compare(Map.Entry<String, long[]> a, Map.Entry<String, long[]> b) {
+                return Long.compare(b.getValue()[0], a.getValue()[0]);
+            }
+        });
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("item", entries.get(i).getKey());
+            item.put("count", entries.get(i).getValue()[0]);
+            item.put("error", entries.get(i).getValue()[1]);
+            res.add(item);
+        }
+        return res;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.demo.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * MinHash签名 + LSH分桶的近似相似检索
+ * 每个对象由一组特征词（文本二元组、类别等）表示，签名的每一位是该组特征在一个哈希函数下的最小值，
+ * 两个签名相同位数的比例近似两组特征的Jaccard相似度；
+ * 签名按bands段切分分桶，任一段完全相同即成为候选，查询只比较候选而不是全量两两比较
+ */
+public class MinHashLsh {
+
+    /**
+     * 梅森素数 2^61 - 1
+     */
+    private static final long PRIME = (1L << 61) - 1;
+
+    private final int bands;
+    private final int rows;
+    private final long[] hashA;
+    private final long[] hashB;
+
+    /**
+     * 主键 -> 签名
+     */
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+
+    /**
+     * 每个段一个桶表：段哈希 -> 主键集合
+     */
+    private final List<Map<Long, Set<Integer>>> buckets = new ArrayList<>();
+
+    /**
+     * @param bands 段数，越多召回越高
+     * @param rows 每段位数，越多候选越精确
+     * @param seed 哈希函数随机种子，重建前后需保持一致
+     */
+    public MinHashLsh(int bands, int rows, long seed) {
+        this.bands = bands;
+        this.rows = rows;
+        int numHashes = bands * rows;
+        this.hashA = new long[numHashes];
+        this.hashB = new long[numHashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < numHashes; i++) {
+            hashA[i] = 1 + (random.nextLong() & Long.MAX_VALUE) % (PRIME - 1);
+            hashB[i] = (random.nextLong() & Long.MAX_VALUE) % PRIME;
+        }
+        for (int i = 0; i < bands; i++) {
+            buckets.add(new HashMap<Long, Set<Integer>>());
+        }
+    }
+
+    /**
+     * 新增或更新对象
+     *
+     * @param id 主键
+     * @param features 特征词集合
+     */
+    public synchronized void put(Integer id, Collection<String> features) {
+        remove(id);
+        if (features.isEmpty()) {
+            return;
+        }
+        int[] signature = signatureOf(features);
+        signatures.put(id, signature);
+        for (int band = 0; band < bands; band++) {
+            Map<Long, Set<Integer>> table = buckets.get(band);
+            long key = bandKey(signature, band);
+            Set<Integer> bucket = table.get(key);
+            if (bucket == null) {
+                bucket = new HashSet<>();
+                table.put(key, bucket);
+            }
+            bucket.add(id);
+        }
+    }
+
+    /**
+     * 删除对象
+     *
+     * @param id 主键
+     */
+    public synchronized void remove(Integer id) {
+        int[] signature = signatures.remove(id);
+        if (signature == null) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            Map<Long, Set<Integer>> table = buckets.get(band);
+            long key = bandKey(signature, band);
+            Set<Integer> bucket = table.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    table.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 查询与指定对象最相似的若干对象
+     *
+     * @param id 主键
+     * @param limit 返回条数
+     * @param minSimilarity 估计相似度下限
+     * @return 主键列表，按相似度降序，不含自身
+     */
+    public synchronized List<Integer> similar(Integer id, int limit, double minSimilarity) {
+        final int[] signature = signatures.get(id);
+        if (signature == null) {
+            return Collections.emptyList();
+        }
+        Set<Integer> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            Set<Integer> bucket = buckets.get(band).get(bandKey(signature, band));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        candidates.remove(id);
+        final Map<Integer, Double> scores = new HashMap<>();
+        for (Integer candidate : candidates) {
+            double score = estimate(signature, signatures.get(candidate));
+            if (score >= minSimilarity) {
+                scores.put(candidate, score);
+            }
+        }
+        List<Integer> res = new ArrayList<>(scores.keySet());
+        Collections.sort(res, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(scores.get(b), scores.get(a));
+            }
+        });
+        return res.size() > limit ? new ArrayList<>(res.subList(0, limit)) : res;
+    }
+
+    public synchronized int size() {
+        return signatures.size();
+    }
+
+    private int[] signatureOf(Collection<String> features) {
+        int[] signature = new int[hashA.length];
+        long[] minimum = new long[hashA.length];
+        for (int i = 0; i < minimum.length; i++) {
+            minimum[i] = Long.MAX_VALUE;
+        }
+        for (String feature : features) {
+            long x = mix(feature.hashCode()) % PRIME;
+            for (int i = 0; i < hashA.length; i++) {
+                long h = mulMod(hashA[i], x) + hashB[i];
+                if (h >= PRIME) {
+                    h -= PRIME;
+                }
+                if (h < minimum[i]) {
+                    minimum[i] = h;
+                }
+            }
+        }
+        for (int i = 0; i < minimum.length; i++) {
+            signature[i] = (int) (minimum[i] ^ (minimum[i] >>> 32));
+        }
+        return signature;
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = key * 31 + signature[i];
+        }
+        return key;
+    }
+
+    private static double estimate(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    /*
+     * 在2^61-1下求a*b，拆成高低位避免溢出
+     */
+    private static long mulMod(long a, long b) {
+        long aHi = a >>> 31;
+        long aLo = a & 0x7FFFFFFFL;
+        long bHi = b >>> 31;
+        long bLo = b & 0x7FFFFFFFL;
+        long mid = aHi * bLo + aLo * bHi;
+        long res = reduce(aHi * bHi * 2 + (mid >>> 30) + ((mid & 0x3FFFFFFFL) << 31)) + aLo * bLo;
+        return reduce(reduce(res));
+    }
+
+    private static long reduce(long x) {
+        long res = (x & PRIME) + (x >>> 61);
+        return res >= PRIME ? res - PRIME : res;
+    }
+
+    private static long mix(int hash) {
+        long x = hash & 0xFFFFFFFFL;
+        x ^= x >>> 16;
+        x *= 0x85EBCA6BL;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35L;
+        x ^= x >>> 16;
+        return x & Long.MAX_VALUE;
+    }
+}
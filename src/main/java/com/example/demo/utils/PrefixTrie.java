@@ -0,0 +1,168 @@
+package com.example.demo.utils;
+
+import com.example.demo.model.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 前缀树，用于搜索框联想
+ * 每个节点缓存其子树中得分最高的若干词条，查询时只需走到前缀所在节点直接返回；
+ * 写入只把经过的节点标记为脏，下次查到时再由子节点的缓存合并重算
+ */
+public class PrefixTrie {
+
+    private static final Comparator<Suggestion> BY_SCORE = new Comparator<Suggestion>() {
+        @Override
+        public int compare(Suggestion a, Suggestion b) {
+            int res = Long.compare(b.getScore(), a.getScore());
+            return res != 0 ? res : a.getText().compareTo(b.getText());
+        }
+    };
+
+    private final int topSize;
+
+    private final Node root = new Node();
+
+    /**
+     * type:id -> 词条，用于更新和删除时找到旧路径
+     */
+    private final Map<String, Suggestion> entries = new HashMap<>();
+
+    public PrefixTrie(int topSize) {
+        this.topSize = topSize;
+    }
+
+    /**
+     * 新增或更新词条
+     *
+     * @param suggestion 词条
+     */
+    public synchronized void put(Suggestion suggestion) {
+        if (suggestion.getText() == null || normalize(suggestion.getText()).isEmpty()) {
+            return;
+        }
+        String key = keyOf(suggestion.getType(), suggestion.getId());
+        Suggestion old = entries.remove(key);
+        if (old != null) {
+            Node node = walk(normalize(old.getText()), false);
+            if (node != null) {
+                node.terminals.remove(key);
+            }
+        }
+        entries.put(key, suggestion);
+        Node node = walk(normalize(suggestion.getText()), true);
+        node.terminals.put(key, suggestion);
+    }
+
+    /**
+     * 删除词条
+     *
+     * @param type 词条类型
+     * @param id 主键
+     */
+    public synchronized void remove(String type, Integer id) {
+        String key = keyOf(type, id);
+        Suggestion old = entries.remove(key);
+        if (old == null) {
+            return;
+        }
+        Node node = walk(normalize(old.getText()), false);
+        if (node != null) {
+            node.terminals.remove(key);
+        }
+    }
+
+    /**
+     * 按前缀查询得分最高的词条
+     *
+     * @param prefix 前缀
+     * @param limit 返回条数，不超过节点缓存大小，不大于0时返回空列表
+     * @return 词条列表
+     */
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Node node = root;
+        for (int i = 0; i < normalized.length() && node != null; i++) {
+            node = node.children.get(normalized.charAt(i));
+        }
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<Suggestion> top = topOf(node);
+        return new ArrayList<>(top.subList(0, Math.min(limit, top.size())));
+    }
+
+    /**
+     * 重算所有脏节点的缓存，批量写入后调用，之后的查询不再触发重算
+     */
+    public synchronized void warm() {
+        topOf(root);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 沿路径查找节点，途经节点全部标记为脏
+     */
+    private Node walk(String text, boolean create) {
+        Node node = root;
+        node.dirty = true;
+        for (int i = 0; i < text.length(); i++) {
+            Node child = node.children.get(text.charAt(i));
+            if (child == null) {
+                if (!create) {
+                    return null;
+                }
+                child = new Node();
+                node.children.put(text.charAt(i), child);
+            }
+            node = child;
+            node.dirty = true;
+        }
+        return node;
+    }
+
+    /**
+     * 取节点子树的高分词条，脏节点由自身词条和子节点缓存合并重算
+     */
+    private List<Suggestion> topOf(Node node) {
+        if (!node.dirty) {
+            return node.top;
+        }
+        List<Suggestion> candidates = new ArrayList<>(node.terminals.values());
+        for (Node child : node.children.values()) {
+            candidates.addAll(topOf(child));
+        }
+        Collections.sort(candidates, BY_SCORE);
+        node.top = candidates.size() > topSize ? new ArrayList<>(candidates.subList(0, topSize)) : candidates;
+        node.dirty = false;
+        return node.top;
+    }
+
+    private static String keyOf(String type, Integer id) {
+        return type + ":" + id;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final Map<String, Suggestion> terminals = new LinkedHashMap<>();
+        private List<Suggestion> top = Collections.emptyList();
+        private boolean dirty = false;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 简单的匀速限流器
+ * 每次acquire预约下一个时间槽，槽未到则休眠等待，用于限制后台任务的处理速度
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+
+    private long nextSlot = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond 每秒允许的次数
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    /**
+     * 获取一次许可，必要时阻塞
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextSlot);
+            nextSlot = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,672 @@
+package com.example.demo.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 按备份链并行恢复
+ * 链首为全量备份，其后每个增量备份的parent依次相接。目标库的表结构需已存在（create.sql及各迁移脚本），分步进行：
+ * 1. 停用用户触发器，删除目标表的外键、主键/唯一/排他约束和其他索引，装入时不维护索引；
+ * 2. 每张表一个任务并行装入全量备份，清空、批量插入、提交在同一事务中，读分块时同时核对行数和SHA-256，不符则该表回滚；
+ * 3. 按链尾清单并行重建约束和索引：先各表的主键/唯一约束，再逐个索引，最后外键；
+ * 4. 依次重放增量备份，同一个增量内各表并行：整表导出的表清空重装，按变更导出的表按主键删除后插入；
+ * 5. 设置序列，清空目标库的变更记录，并行ANALYZE并核对每张表的行数。
+ * 各表各自提交，中途失败时已装入的表不回滚，重新执行恢复即可；重建完成前失败时，按第1步删除前从目标库读出的定义
+ * 重新建回已删除的约束和索引，目标库不会停留在没有主键和外键的状态。恢复后需先做一次全量备份
+ */
+public class RestoreEngine {
+
+    private final BackupEngine.ConnectionSource source;
+    private final ObjectMapper objectMapper;
+    private final int parallelism;
+    private final int batchSize;
+    private final String maintenanceWorkMem;
+
+    public RestoreEngine(BackupEngine.ConnectionSource source, ObjectMapper objectMapper, int parallelism, int batchSize,
+                         String maintenanceWorkMem) {
+        this.source = source;
+        this.objectMapper = objectMapper;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.maintenanceWorkMem = maintenanceWorkMem;
+    }
+
+    /**
+     * 读取并检查备份链
+     *
+     * @param chain 备份目录，从全量备份开始按顺序排列
+     * @param objectMapper JSON
+     * @return 各备份的清单
+     * @throws IOException 清单无法读取
+     */
+    public static List<JsonNode> readChain(List<File> chain, ObjectMapper objectMapper) throws IOException {
+        List<JsonNode> manifests = new ArrayList<>();
+        for (File dir : chain) {
+            File file = new File(dir, BackupEngine.MANIFEST);
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("备份不存在或未完成: " + dir.getName());
+            }
+            JsonNode manifest = objectMapper.readTree(file);
+            if (manifests.isEmpty()) {
+                if (!"full".equals(manifest.path("type").asText())) {
+                    throw new IllegalArgumentException("备份链必须从全量备份开始: " + manifest.path("id").asText());
+                }
+            } else if (!manifests.get(manifests.size() - 1).path("id").asText().equals(manifest.path("parent").asText())) {
+                throw new IllegalArgumentException("备份链不连续: " + manifest.path("id").asText() + "的上一次备份为"
+                        + manifest.path("parent").asText());
+            }
+            manifests.add(manifest);
+        }
+        if (manifests.isEmpty()) {
+            throw new IllegalArgumentException("备份链为空");
+        }
+        return manifests;
+    }
+
+    /**
+     * 恢复
+     *
+     * @param chain 备份目录，从全量备份开始按顺序排列
+     * @param listener 进度回调，行数为已装入的行数，在工作线程上调用
+     * @return 每张表装入、删除、核对后的行数，各步骤耗时，核对不符的说明（errors，为空表示通过）
+     * @throws Exception 恢复失败
+     */
+    public Map<String, Object> restore(List<File> chain, BackupEngine.Listener listener) throws Exception {
+        List<JsonNode> manifests = readChain(chain, objectMapper);
+        JsonNode last = manifests.get(manifests.size() - 1);
+        Map<String, TableState> states = new LinkedHashMap<>();
+        for (JsonNode table : last.path("tables")) {
+            states.put(table.path("name").asText(), new TableState());
+        }
+        for (Map.Entry<String, TableState> entry : states.entrySet()) {
+            listener.onTableStart(entry.getKey(), expectedRows(manifests, entry.getKey()));
+        }
+
+        Map<String, Object> timings = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>();
+        Dropped dropped = new Dropped();
+        boolean rebuilt = false;
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "restore-" + last.path("id").asText());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long start = System.currentTimeMillis();
+            prepare(states.keySet(), dropped);
+            timings.put("prepareMs", System.currentTimeMillis() - start);
+
+            start = System.currentTimeMillis();
+            Map<String, JsonNode> base = tablesOf(manifests.get(0));
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Map.Entry<String, TableState> entry : states.entrySet()) {
+                JsonNode table = base.get(entry.getKey());
+                TableState state = entry.getValue();
+                tasks.add(() -> {
+                    replay(chain.get(0), entry.getKey(), table, true, state, listener);
+                    return null;
+                });
+            }
+            runAll(executor, tasks);
+            timings.put("loadMs", System.currentTimeMillis() - start);
+
+            start = System.currentTimeMillis();
+            rebuild(executor, last);
+            rebuilt = true;
+            timings.put("rebuildMs", System.currentTimeMillis() - start);
+
+            // 增量按主键删除，需在索引重建之后
+            start = System.currentTimeMillis();
+            for (int i = 1; i < manifests.size(); i++) {
+                File dir = chain.get(i);
+                tasks.clear();
+                for (Map.Entry<String, JsonNode> entry : tablesOf(manifests.get(i)).entrySet()) {
+                    TableState state = states.get(entry.getKey());
+                    if (state == null) {
+                        // 链尾已没有的表不恢复
+                        continue;
+                    }
+                    boolean full = !BackupEngine.MODE_CHANGES.equals(entry.getValue().path("mode").asText());
+                    tasks.add(() -> {
+                        replay(dir, entry.getKey(), entry.getValue(), full, state, listener);
+                        return null;
+                    });
+                }
+                runAll(executor, tasks);
+            }
+            timings.put("replayMs", System.currentTimeMillis() - start);
+
+            start = System.currentTimeMillis();
+            finish(last.path("sequences"));
+            tasks.clear();
+            for (Map.Entry<String, TableState> entry : states.entrySet()) {
+                tasks.add(() -> {
+                    entry.getValue().actualRows = analyzeAndCount(entry.getKey());
+                    return null;
+                });
+            }
+            runAll(executor, tasks);
+            timings.put("verifyMs", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            executor.shutdownNow();
+            if (!rebuilt) {
+                recreate(dropped, e);
+            }
+            try {
+                enableTriggers(states.keySet());
+            } catch (RuntimeException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        enableTriggers(states.keySet());
+
+        Map<String, Object> tableMap = new LinkedHashMap<>();
+        for (Map.Entry<String, TableState> entry : states.entrySet()) {
+            TableState state = entry.getValue();
+            long expected = state.loaded - state.deleted;
+            if (state.actualRows != expected) {
+                errors.add(entry.getKey() + ": 恢复后行数" + state.actualRows + "与备份" + expected + "不符");
+            }
+            listener.onTableDone(entry.getKey(), state.loaded);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("loadedRows", state.loaded);
+            item.put("deletedRows", state.deleted);
+            item.put("rows", state.actualRows);
+            tableMap.put(entry.getKey(), item);
+        }
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("chain", chainIds(manifests));
+        res.put("tables", tableMap);
+        res.put("timings", timings);
+        res.put("errors", errors);
+        return res;
+    }
+
+    /*
+     * 检查目标表，停用用户触发器，删除外键、主键/唯一/排他约束和其他索引；各语句自动提交，约束和索引按清单重建。
+     * 每删除一个，把目标库中原有的定义记入dropped，供失败时建回
+     */
+    private void prepare(Iterable<String> tables, Dropped dropped) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            // {表名, 约束名, 定义}
+            List<String[]> foreignKeys = new ArrayList<>();
+            List<String[]> constraints = new ArrayList<>();
+            // {索引名, 定义}
+            List<String[]> indexes = new ArrayList<>();
+            for (String table : tables) {
+                if (!exists(statement, table)) {
+                    throw new IllegalStateException("目标库缺少表" + table);
+                }
+                statement.execute("ALTER TABLE " + BackupEngine.quote(table) + " DISABLE TRIGGER USER");
+                try (PreparedStatement ps = connection.prepareStatement("select conname, contype = 'f', pg_get_constraintdef(oid) "
+                        + "from pg_constraint where conrelid = ?::regclass and contype in ('f', 'p', 'u', 'x')")) {
+                    ps.setString(1, BackupEngine.quote(table));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            (rs.getBoolean(2) ? foreignKeys : constraints).add(new String[]{table, rs.getString(1), rs.getString(3)});
+                        }
+                    }
+                }
+                try (PreparedStatement ps = connection.prepareStatement("select i.indexrelid::regclass::text, pg_get_indexdef(i.indexrelid) "
+                        + "from pg_index i where i.indrelid = ?::regclass "
+                        + "and not exists (select 1 from pg_constraint c where c.conindid = i.indexrelid)")) {
+                    ps.setString(1, BackupEngine.quote(table));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            indexes.add(new String[]{rs.getString(1), rs.getString(2)});
+                        }
+                    }
+                }
+            }
+            // 外键依赖被引用表的唯一索引，先删外键
+            for (String[] constraint : foreignKeys) {
+                drop(statement, constraint, dropped.foreignKeys);
+            }
+            for (String[] constraint : constraints) {
+                drop(statement, constraint, dropped.constraints);
+            }
+            for (String[] index : indexes) {
+                statement.execute("DROP INDEX IF EXISTS " + index[0]);
+                // 分区父表上的索引定义为ON ONLY，建回时去掉ONLY，同时建到各分区
+                dropped.indexes.add(index[1].replaceFirst(" ON ONLY ", " ON "));
+            }
+        }
+    }
+
+    private static void drop(Statement statement, String[] constraint, List<String> dropped) throws SQLException {
+        String table = BackupEngine.quote(constraint[0]);
+        String name = BackupEngine.quote(constraint[1]);
+        statement.execute("ALTER TABLE " + table + " DROP CONSTRAINT IF EXISTS " + name);
+        dropped.add("ALTER TABLE " + table + " ADD CONSTRAINT " + name + " " + constraint[2]);
+    }
+
+    /*
+     * 装入或重建中途失败时建回prepare删除的约束和索引：先主键/唯一约束，再索引，最后外键，每条语句单独提交；
+     * 重建已建好的跳过，其余建不回的（如失败的表中途留下重复行）附在原异常上，需手工处理
+     */
+    private void recreate(Dropped dropped, Exception failure) {
+        List<String> statements = new ArrayList<>(dropped.constraints);
+        statements.addAll(dropped.indexes);
+        statements.addAll(dropped.foreignKeys);
+        for (String sql : statements) {
+            try {
+                ddl(Collections.singletonList(sql));
+            } catch (SQLException e) {
+                // 42P07：索引已存在，42710：约束已存在
+                if (!"42P07".equals(e.getSQLState()) && !"42710".equals(e.getSQLState())) {
+                    failure.addSuppressed(new IllegalStateException("恢复失败后未能建回: " + sql, e));
+                }
+            }
+        }
+    }
+
+    /*
+     * 按清单重建：每张表的主键/唯一/排他约束一个任务，每个索引一个任务，外键最后串行添加；检查约束装入时未删除，不重建
+     */
+    private void rebuild(ExecutorService executor, JsonNode manifest) throws Exception {
+        List<Callable<Void>> constraints = new ArrayList<>();
+        List<Callable<Void>> indexes = new ArrayList<>();
+        List<String> foreignKeys = new ArrayList<>();
+        for (JsonNode table : manifest.path("tables")) {
+            String name = BackupEngine.quote(table.path("name").asText());
+            List<String> statements = new ArrayList<>();
+            for (JsonNode constraint : table.path("constraints")) {
+                String definition = constraint.path("definition").asText();
+                String sql = "ALTER TABLE " + name + " ADD CONSTRAINT " + BackupEngine.quote(constraint.path("name").asText()) + " " + definition;
+                if (definition.startsWith("FOREIGN KEY")) {
+                    foreignKeys.add(sql);
+                } else if (!definition.startsWith("CHECK")) {
+                    statements.add(sql);
+                }
+            }
+            if (!statements.isEmpty()) {
+                constraints.add(() -> {
+                    ddl(statements);
+                    return null;
+                });
+            }
+            for (JsonNode index : table.path("indexes")) {
+                // 分区父表上的索引定义为ON ONLY，直接建在父表上会同时建到各分区
+                String sql = index.path("definition").asText().replaceFirst(" ON ONLY ", " ON ");
+                indexes.add(() -> {
+                    ddl(Collections.singletonList(sql));
+                    return null;
+                });
+            }
+        }
+        runAll(executor, constraints);
+        runAll(executor, indexes);
+        ddl(foreignKeys);
+    }
+
+    private void ddl(List<String> statements) throws SQLException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        try (Connection connection = source.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL maintenance_work_mem = '" + maintenanceWorkMem.replace("'", "") + "'");
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    /*
+     * 一张表的一步，在一个事务内：full为true时先清空再装入，行数从此重新累计，否则按主键删除deletes和变更行再插入变更行；
+     * table为null表示这一步中没有该表，全量时只清空
+     */
+    private void replay(File dir, String name, JsonNode table, boolean full, TableState state, BackupEngine.Listener listener)
+            throws SQLException, IOException {
+        try (Connection connection = source.getConnection()) {
+            connection.setAutoCommit(false);
+            long loaded = 0;
+            long deleted = 0;
+            try (Statement statement = connection.createStatement()) {
+                // 恢复失败可重新执行，不必等待WAL落盘
+                statement.execute("SET LOCAL synchronous_commit = off");
+                if (full) {
+                    statement.execute("TRUNCATE " + BackupEngine.quote(name));
+                } else {
+                    deleted += deleteKeys(connection, dir, table, table.path("deleteChunks"), false);
+                    deleted += deleteKeys(connection, dir, table, table.path("chunks"), true);
+                }
+                if (table != null) {
+                    loaded = load(connection, dir, table, listener, full ? 0 : state.loaded);
+                }
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            if (full) {
+                state.loaded = loaded;
+                state.deleted = 0;
+            } else {
+                state.loaded += loaded;
+                state.deleted += deleted;
+            }
+        }
+    }
+
+    /*
+     * 装入分块，每列按清单中的类型转换；读分块的同时核对行数和SHA-256
+     */
+    private long load(Connection connection, File dir, JsonNode table, BackupEngine.Listener listener, long loaded) throws SQLException, IOException {
+        StringBuilder names = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (JsonNode column : table.path("columns")) {
+            String separator = names.length() == 0 ? "" : ", ";
+            names.append(separator).append(BackupEngine.quote(column.path("name").asText()));
+            values.append(separator).append("CAST(? AS ").append(column.path("type").asText()).append(")");
+        }
+        String name = table.path("name").asText();
+        long rows = 0;
+        try (PreparedStatement ps = connection.prepareStatement("insert into " + BackupEngine.quote(name)
+                + " (" + names + ") values (" + values + ")")) {
+            int pending = 0;
+            for (JsonNode chunk : table.path("chunks")) {
+                ChunkReader reader = new ChunkReader(dir, chunk);
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        bind(ps, objectMapper.readTree(line));
+                        ps.addBatch();
+                        rows++;
+                        if (++pending >= batchSize) {
+                            ps.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    reader.check();
+                } finally {
+                    reader.close();
+                }
+                if (pending > 0) {
+                    ps.executeBatch();
+                    pending = 0;
+                }
+                listener.onRows(name, loaded + rows);
+            }
+        }
+        return rows;
+    }
+
+    /*
+     * 按主键删除；fromRows为true时分块是整行，按主键列位置取值，否则分块每行就是主键值
+     */
+    private long deleteKeys(Connection connection, File dir, JsonNode table, JsonNode chunks, boolean fromRows) throws SQLException, IOException {
+        if (chunks.size() == 0) {
+            return 0;
+        }
+        Map<String, Integer> positions = new HashMap<>();
+        Map<String, String> types = new HashMap<>();
+        int index = 0;
+        for (JsonNode column : table.path("columns")) {
+            positions.put(column.path("name").asText(), index++);
+            types.put(column.path("name").asText(), column.path("type").asText());
+        }
+        JsonNode primaryKey = table.path("primaryKey");
+        int[] keyPositions = new int[primaryKey.size()];
+        StringBuilder where = new StringBuilder();
+        for (int i = 0; i < primaryKey.size(); i++) {
+            String column = primaryKey.get(i).asText();
+            keyPositions[i] = fromRows ? positions.get(column) : i;
+            where.append(i == 0 ? "" : " and ").append(BackupEngine.quote(column))
+                    .append(" = CAST(? AS ").append(types.get(column)).append(")");
+        }
+        long deleted = 0;
+        try (PreparedStatement ps = connection.prepareStatement("delete from " + BackupEngine.quote(table.path("name").asText())
+                + " where " + where)) {
+            int pending = 0;
+            for (JsonNode chunk : chunks) {
+                ChunkReader reader = new ChunkReader(dir, chunk);
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        JsonNode row = objectMapper.readTree(line);
+                        for (int i = 0; i < keyPositions.length; i++) {
+                            ps.setString(i + 1, row.get(keyPositions[i]).asText());
+                        }
+                        ps.addBatch();
+                        if (++pending >= batchSize) {
+                            deleted += sum(ps.executeBatch());
+                            pending = 0;
+                        }
+                    }
+                    reader.check();
+                } finally {
+                    reader.close();
+                }
+            }
+            if (pending > 0) {
+                deleted += sum(ps.executeBatch());
+            }
+        }
+        return deleted;
+    }
+
+    /*
+     * 设置序列，清空目标库原有的变更记录（与恢复后的数据无关）
+     */
+    private void finish(JsonNode sequences) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement();
+             PreparedStatement ps = connection.prepareStatement("select setval(?::regclass, ?, ?)")) {
+            Iterator<Map.Entry<String, JsonNode>> fields = sequences.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> entry = fields.next();
+                long value = entry.getValue().asLong();
+                ps.setString(1, BackupEngine.quote(entry.getKey()));
+                // 备份时从未取过值的序列恢复为同样状态
+                ps.setLong(2, Math.max(value, 1L));
+                ps.setBoolean(3, value >= 1);
+                ps.executeQuery().close();
+            }
+            if (exists(statement, BackupEngine.CHANGE_LOG)) {
+                statement.execute("TRUNCATE " + BackupEngine.quote(BackupEngine.CHANGE_LOG));
+            }
+        }
+    }
+
+    private long analyzeAndCount(String table) throws SQLException {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE " + BackupEngine.quote(table));
+            try (ResultSet rs = statement.executeQuery("select count(*) from " + BackupEngine.quote(table))) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    private void enableTriggers(Iterable<String> tables) {
+        try (Connection connection = source.getConnection();
+             Statement statement = connection.createStatement()) {
+            for (String table : tables) {
+                if (exists(statement, table)) {
+                    statement.execute("ALTER TABLE " + BackupEngine.quote(table) + " ENABLE TRIGGER USER");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("恢复后启用触发器失败，需手工执行ALTER TABLE ... ENABLE TRIGGER USER", e);
+        }
+    }
+
+    private static boolean exists(Statement statement, String table) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("select to_regclass('" + BackupEngine.quote(table).replace("'", "''") + "') is not null")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    /*
+     * 执行一组任务，任一失败即取消其余任务并抛出
+     */
+    private static void runAll(ExecutorService executor, List<Callable<Void>> tasks) throws Exception {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                for (Future<Void> other : futures) {
+                    other.cancel(true);
+                }
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, JsonNode row) throws SQLException {
+        for (int i = 0; i < row.size(); i++) {
+            JsonNode value = row.get(i);
+            if (value.isNull()) {
+                ps.setNull(i + 1, Types.VARCHAR);
+            } else {
+                ps.setString(i + 1, value.asText());
+            }
+        }
+    }
+
+    private static Map<String, JsonNode> tablesOf(JsonNode manifest) {
+        Map<String, JsonNode> tables = new LinkedHashMap<>();
+        for (JsonNode table : manifest.path("tables")) {
+            tables.put(table.path("name").asText(), table);
+        }
+        return tables;
+    }
+
+    private static long expectedRows(List<JsonNode> manifests, String table) {
+        long rows = 0;
+        for (JsonNode manifest : manifests) {
+            JsonNode item = tablesOf(manifest).get(table);
+            if (item != null) {
+                rows += item.path("rows").asLong();
+            }
+        }
+        return rows;
+    }
+
+    private static List<String> chainIds(List<JsonNode> manifests) {
+        List<String> ids = new ArrayList<>();
+        for (JsonNode manifest : manifests) {
+            ids.add(manifest.path("id").asText());
+        }
+        return ids;
+    }
+
+    private static long sum(int[] counts) {
+        long total = 0;
+        for (int count : counts) {
+            // 驱动可能返回SUCCESS_NO_INFO（-2）
+            total += Math.max(count, 0);
+        }
+        return total;
+    }
+
+    /*
+     * prepare已删除的约束和索引，按原定义建回的语句
+     */
+    private static class Dropped {
+        private final List<String> constraints = new ArrayList<>();
+        private final List<String> indexes = new ArrayList<>();
+        private final List<String> foreignKeys = new ArrayList<>();
+    }
+
+    /*
+     * 每张表同一时刻只有一个任务在处理，任务之间由Future.get建立先后关系
+     */
+    private static class TableState {
+        private long loaded;
+        private long deleted;
+        private long actualRows;
+    }
+
+    /*
+     * 读分块，同时对压缩后的字节计算SHA-256；读完后check核对行数和校验和
+     */
+    private static class ChunkReader {
+        private final JsonNode chunk;
+        private final MessageDigest digest = BackupEngine.sha256();
+        private final InputStream in;
+        private final BufferedReader reader;
+        private long rows;
+
+        private ChunkReader(File dir, JsonNode chunk) throws IOException {
+            this.chunk = chunk;
+            this.in = new DigestInputStream(new FileInputStream(new File(dir, chunk.path("file").asText())), digest);
+            this.reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in, 65536), StandardCharsets.UTF_8));
+        }
+
+        private String readLine() throws IOException {
+            String line = reader.readLine();
+            if (line != null) {
+                rows++;
+            }
+            return line;
+        }
+
+        private void check() throws IOException {
+            byte[] rest = new byte[8192];
+            while (in.read(rest) >= 0) {
+                // gzip尾部之后未读的字节也要计入摘要
+            }
+            String file = chunk.path("file").asText();
+            if (rows != chunk.path("rows").asLong()) {
+                throw new IOException(file + ": 行数" + rows + "与清单" + chunk.path("rows").asLong() + "不符");
+            }
+            if (!BackupEngine.hex(digest.digest()).equals(chunk.path("sha256").asText())) {
+                throw new IOException(file + ": 校验和不符");
+            }
+        }
+
+        private void close() throws IOException {
+            reader.close();
+        }
+    }
+}
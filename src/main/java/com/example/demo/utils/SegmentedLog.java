@@ -0,0 +1,588 @@
+package com.example.demo.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的分段日志存储
+ * 记录按顺序追加到固定大小的段文件，文件名为段内第一条记录的偏移量（20位数字）。每个段配两个内存映射的稀疏索引：
+ * .index每隔indexInterval字节记一条（相对偏移量, 文件位置），.timeindex在同一批记录上记（时间戳, 相对偏移量），
+ * 两个索引第i条对应同一条记录。按时间或偏移量读取时先二分索引定位起点，之后顺序读段文件。
+ * 记录格式：长度(4) CRC32(4) 偏移量(8) 时间戳(8) 用户ID(4) 类型(1) 内容(UTF-8)，长度不含自身，CRC覆盖CRC之后的全部字节。
+ * 时间戳单调不减，写入时间早于上一条时取上一条的时间。
+ * 单写多读：写入在锁内先进入内存缓冲区，满了或调用flush时写入文件，sync时落盘；读取不持锁，使用定位读。
+ * 一个目录只能由一个进程打开，不能作为多个节点共享的存储。
+ * 打开时重新扫描最后一个段，截掉未写完或校验失败的尾部并重建其索引；已写满的段在切换时已落盘，索引直接使用
+ */
+public class SegmentedLog implements Closeable {
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final String TIME_INDEX_SUFFIX = ".timeindex";
+    private static final int OFFSET_ENTRY = 8;
+    private static final int TIME_ENTRY = 12;
+    private static final int LENGTH_FIELD = 4;
+    private static final int HEADER = LENGTH_FIELD + 4 + 8 + 8 + 4 + 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File dir;
+    private final long segmentBytes;
+    private final int indexInterval;
+    private final int maxIndexEntries;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    private volatile List<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long nextOffset;
+    private long lastTimestamp;
+    private long appendedCount;
+
+    /**
+     * @param dir 存储目录
+     * @param segmentBytes 单个段文件的最大字节数
+     * @param indexInterval 稀疏索引间隔字节数
+     * @throws IOException 目录无法创建或文件无法打开
+     */
+    public SegmentedLog(File dir, long segmentBytes, int indexInterval) throws IOException {
+        if (segmentBytes > Integer.MAX_VALUE || indexInterval <= 0) {
+            throw new IllegalArgumentException("段大小不能超过2GB，索引间隔必须大于0");
+        }
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建日志目录" + dir.getPath());
+        }
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+        this.maxIndexEntries = (int) (segmentBytes / indexInterval) + 2;
+
+        File[] files = dir.listFiles((d, name) -> name.endsWith(LOG_SUFFIX));
+        long[] bases = new long[files == null ? 0 : files.length];
+        for (int i = 0; i < bases.length; i++) {
+            String name = files[i].getName();
+            bases[i] = Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+        }
+        Arrays.sort(bases);
+        List<Segment> opened = new ArrayList<>();
+        for (int i = 0; i < bases.length; i++) {
+            opened.add(new Segment(bases[i], i == bases.length - 1));
+        }
+        if (opened.isEmpty()) {
+            opened.add(new Segment(0, true));
+        }
+        this.segments = opened;
+        this.active = opened.get(opened.size() - 1);
+        recover(active);
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param type 类型
+     * @param userId 用户ID，可为null
+     * @param timestamp 时间戳，毫秒
+     * @param content 内容
+     * @return 记录的偏移量
+     * @throws IOException 写入失败
+     */
+    public synchronized long append(int type, Integer userId, long timestamp, String content) throws IOException {
+        byte[] payload = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+        int total = HEADER + payload.length;
+        if (total > segmentBytes) {
+            throw new IllegalArgumentException("记录长度" + total + "超过段大小");
+        }
+        if (active.size + total > segmentBytes) {
+            roll();
+        }
+        long ts = Math.max(timestamp, lastTimestamp);
+        long offset = nextOffset;
+        ByteBuffer target = writeBuffer;
+        if (total > writeBuffer.remaining()) {
+            flushBuffer();
+            if (total > writeBuffer.capacity()) {
+                target = ByteBuffer.allocate(total);
+            }
+        }
+        int start = target.position();
+        target.putInt(total - LENGTH_FIELD);
+        target.putInt(0);
+        target.putLong(offset);
+        target.putLong(ts);
+        target.putInt(userId == null ? -1 : userId);
+        target.put((byte) type);
+        target.put(payload);
+        crc.reset();
+        crc.update(target.array(), target.arrayOffset() + start + 8, total - 8);
+        target.putInt(start + LENGTH_FIELD, (int) crc.getValue());
+        if (target != writeBuffer) {
+            target.flip();
+            writeFully(active.channel, target, active.size);
+        }
+
+        if (active.entries == 0 || active.bytesSinceIndex >= indexInterval) {
+            active.addIndex((int) (offset - active.baseOffset), active.size, ts);
+        }
+        active.size += total;
+        active.bytesSinceIndex += total;
+        nextOffset = offset + 1;
+        lastTimestamp = ts;
+        appendedCount++;
+        return offset;
+    }
+
+    /**
+     * 把内存缓冲区写入文件，不强制落盘
+     *
+     * @throws IOException 写入失败
+     */
+    public synchronized void flush() throws IOException {
+        flushBuffer();
+    }
+
+    /**
+     * 写入文件并落盘，包括当前段的索引
+     *
+     * @throws IOException 写入失败
+     */
+    public synchronized void sync() throws IOException {
+        flushBuffer();
+        active.channel.force(false);
+        active.offsetIndex.force();
+        active.timeIndex.force();
+    }
+
+    /**
+     * 从指定偏移量起顺序读取
+     *
+     * @param fromOffset 起始偏移量（含）
+     * @param maxRecords 最多读取条数
+     * @return 记录
+     * @throws IOException 读取失败
+     */
+    public List<Record> read(long fromOffset, int maxRecords) throws IOException {
+        List<Record> res = new ArrayList<>();
+        for (SegmentView view : snapshot()) {
+            if (res.size() >= maxRecords) {
+                break;
+            }
+            if (view.next <= fromOffset) {
+                continue;
+            }
+            long position = view.segment.positionOf(Math.max(0, fromOffset - view.segment.baseOffset), view.entries);
+            scan(view.segment, position, view.size, true, (record, pos) -> {
+                if (record.offset >= fromOffset) {
+                    res.add(record);
+                }
+                return res.size() < maxRecords;
+            });
+        }
+        return res;
+    }
+
+    /**
+     * 按时间范围顺序读取，可按用户、类型过滤
+     *
+     * @param from 起始时间（含），毫秒
+     * @param to 结束时间（含），毫秒
+     * @param userId 用户ID，为null不过滤
+     * @param type 类型，为null不过滤
+     * @param limit 最多返回条数
+     * @return 记录
+     * @throws IOException 读取失败
+     */
+    public List<Record> readByTime(long from, long to, Integer userId, Integer type, int limit) throws IOException {
+        List<Record> res = new ArrayList<>();
+        List<SegmentView> views = snapshot();
+        for (int i = 0; i < views.size() && res.size() < limit; i++) {
+            SegmentView view = views.get(i);
+            long first = view.segment.firstTimestamp;
+            if (first < 0 || first > to) {
+                break;
+            }
+            // 下一个段的第一条早于起始时间，本段全部早于起始时间
+            if (i + 1 < views.size() && views.get(i + 1).segment.firstTimestamp >= 0
+                    && views.get(i + 1).segment.firstTimestamp < from) {
+                continue;
+            }
+            long position = view.segment.positionOfTime(from, view.entries);
+            final boolean[] done = {false};
+            scan(view.segment, position, view.size, true, (record, pos) -> {
+                if (record.timestamp > to) {
+                    done[0] = true;
+                    return false;
+                }
+                if (record.timestamp >= from && (userId == null || userId.equals(record.userId))
+                        && (type == null || type == record.type)) {
+                    res.add(record);
+                }
+                return res.size() < limit;
+            });
+            if (done[0]) {
+                break;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 存储统计
+     *
+     * @return 段数、字节数、偏移量和时间范围
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment == active ? active.size : segment.size;
+        }
+        statistics.put("segments", segments.size());
+        statistics.put("bytes", bytes);
+        statistics.put("firstOffset", segments.get(0).baseOffset);
+        statistics.put("nextOffset", nextOffset);
+        statistics.put("firstTimestamp", segments.get(0).firstTimestamp);
+        statistics.put("lastTimestamp", lastTimestamp);
+        statistics.put("appendedCount", appendedCount);
+        statistics.put("pendingBytes", writeBuffer.position());
+        return statistics;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /*
+     * 当前段落盘后切换到新段，旧段此后只读
+     */
+    private void roll() throws IOException {
+        flushBuffer();
+        active.channel.force(false);
+        active.offsetIndex.force();
+        active.timeIndex.force();
+        Segment segment = new Segment(nextOffset, true);
+        List<Segment> rolled = new ArrayList<>(segments);
+        rolled.add(segment);
+        segments = rolled;
+        active = segment;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        long position = active.size - writeBuffer.remaining();
+        writeFully(active.channel, writeBuffer, position);
+        writeBuffer.clear();
+    }
+
+    /*
+     * 读取前先把缓冲区写入文件，记下每个段当时的大小和索引条数，读取范围不超过这些值
+     */
+    private synchronized List<SegmentView> snapshot() throws IOException {
+        flushBuffer();
+        List<SegmentView> views = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            long next = i + 1 < segments.size() ? segments.get(i + 1).baseOffset : nextOffset;
+            views.add(new SegmentView(segment, segment.size, segment.entries, next));
+        }
+        return views;
+    }
+
+    /*
+     * 重新扫描最后一个段：截掉不完整的尾部，重建索引
+     */
+    private void recover(Segment segment) throws IOException {
+        segment.clearIndex();
+        segment.size = 0;
+        segment.bytesSinceIndex = 0;
+        final long[] last = {segment.baseOffset - 1, 0L};
+        long end = scan(segment, 0, segment.channel.size(), false, (record, pos) -> {
+            if (record.offset != last[0] + 1) {
+                return false;
+            }
+            if (segment.entries == 0 || segment.bytesSinceIndex >= indexInterval) {
+                segment.addIndex((int) (record.offset - segment.baseOffset), pos, record.timestamp);
+            }
+            int length = record.length;
+            segment.size = pos + length;
+            segment.bytesSinceIndex += length;
+            last[0] = record.offset;
+            last[1] = record.timestamp;
+            return true;
+        });
+        if (segment.channel.size() > segment.size) {
+            segment.channel.truncate(segment.size);
+        }
+        this.nextOffset = last[0] + 1;
+        this.lastTimestamp = Math.max(last[1], lastTimestampBefore(segment));
+        if (end != segment.size) {
+            segment.channel.force(false);
+        }
+    }
+
+    private long lastTimestampBefore(Segment segment) {
+        int index = segments.indexOf(segment);
+        return index > 0 ? Math.max(0, segments.get(index - 1).lastIndexedTimestamp()) : 0;
+    }
+
+    /*
+     * 从position起顺序解析记录直到end；strict为true时遇到损坏抛异常，否则停在最后一条完整记录之后
+     */
+    private static long scan(Segment segment, long position, long end, boolean strict, RecordVisitor visitor) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+        buf.limit(0);
+        long bufStart = position;
+        long pos = position;
+        CRC32 checksum = new CRC32();
+        while (pos + HEADER <= end) {
+            int rel = (int) (pos - bufStart);
+            if (buf.limit() - rel < LENGTH_FIELD) {
+                bufStart = pos;
+                rel = 0;
+                fill(segment.channel, buf, pos, end);
+            }
+            int length = buf.getInt(rel) + LENGTH_FIELD;
+            if (length < HEADER || pos + length > end) {
+                return corrupted(strict, segment, pos);
+            }
+            if (buf.limit() - rel < length) {
+                if (length > buf.capacity()) {
+                    buf = ByteBuffer.allocate(length);
+                }
+                bufStart = pos;
+                rel = 0;
+                fill(segment.channel, buf, pos, end);
+                if (buf.limit() < length) {
+                    return corrupted(strict, segment, pos);
+                }
+            }
+            checksum.reset();
+            checksum.update(buf.array(), rel + 8, length - 8);
+            if ((int) checksum.getValue() != buf.getInt(rel + LENGTH_FIELD)) {
+                return corrupted(strict, segment, pos);
+            }
+            int contentLength = length - HEADER;
+            int userId = buf.getInt(rel + 24);
+            Record record = new Record(buf.getLong(rel + 8), buf.getLong(rel + 16), userId < 0 ? null : userId,
+                    buf.get(rel + 28), new String(buf.array(), rel + HEADER, contentLength, StandardCharsets.UTF_8), length);
+            if (!visitor.visit(record, pos)) {
+                return pos;
+            }
+            pos += length;
+        }
+        return pos;
+    }
+
+    private static long corrupted(boolean strict, Segment segment, long pos) throws IOException {
+        if (strict) {
+            throw new IOException("日志段" + segment.baseOffset + "在位置" + pos + "处损坏");
+        }
+        return pos;
+    }
+
+    private static void fill(FileChannel channel, ByteBuffer buf, long pos, long end) throws IOException {
+        buf.clear();
+        buf.limit((int) Math.min(buf.capacity(), end - pos));
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                break;
+            }
+        }
+        buf.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static String nameOf(long baseOffset, String suffix) {
+        return String.format("%020d", baseOffset) + suffix;
+    }
+
+    private interface RecordVisitor {
+        boolean visit(Record record, long position) throws IOException;
+    }
+
+    private static class SegmentView {
+        private final Segment segment;
+        private final long size;
+        private final int entries;
+        private final long next;
+
+        private SegmentView(Segment segment, long size, int entries, long next) {
+            this.segment = segment;
+            this.size = size;
+            this.entries = entries;
+            this.next = next;
+        }
+    }
+
+    private class Segment {
+        private final long baseOffset;
+        private final RandomAccessFile logFile;
+        private final FileChannel channel;
+        private final RandomAccessFile offsetIndexFile;
+        private final RandomAccessFile timeIndexFile;
+        private final MappedByteBuffer offsetIndex;
+        private final MappedByteBuffer timeIndex;
+        private long size;
+        private int entries;
+        private long bytesSinceIndex;
+        private long firstTimestamp = -1;
+
+        private Segment(long baseOffset, boolean writable) throws IOException {
+            this.baseOffset = baseOffset;
+            this.logFile = new RandomAccessFile(new File(dir, nameOf(baseOffset, LOG_SUFFIX)), "rw");
+            this.channel = logFile.getChannel();
+            this.offsetIndexFile = new RandomAccessFile(new File(dir, nameOf(baseOffset, INDEX_SUFFIX)), "rw");
+            this.timeIndexFile = new RandomAccessFile(new File(dir, nameOf(baseOffset, TIME_INDEX_SUFFIX)), "rw");
+            // 索引文件按最大条数预分配，未用部分为0；已写满的段按第一个位置为0的条目确定条数
+            this.offsetIndex = offsetIndexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) maxIndexEntries * OFFSET_ENTRY);
+            this.timeIndex = timeIndexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) maxIndexEntries * TIME_ENTRY);
+            this.size = channel.size();
+            if (!writable) {
+                int count = size > 0 ? 1 : 0;
+                while (count > 0 && count < maxIndexEntries && offsetIndex.getInt(count * OFFSET_ENTRY + 4) > 0) {
+                    count++;
+                }
+                this.entries = count;
+                this.firstTimestamp = count > 0 ? timeIndex.getLong(0) : -1;
+            }
+        }
+
+        private void addIndex(int relativeOffset, long position, long timestamp) {
+            if (entries >= maxIndexEntries) {
+                return;
+            }
+            offsetIndex.putInt(entries * OFFSET_ENTRY, relativeOffset);
+            offsetIndex.putInt(entries * OFFSET_ENTRY + 4, (int) position);
+            timeIndex.putLong(entries * TIME_ENTRY, timestamp);
+            timeIndex.putInt(entries * TIME_ENTRY + 8, relativeOffset);
+            if (entries == 0) {
+                firstTimestamp = timestamp;
+            }
+            entries++;
+            bytesSinceIndex = 0;
+        }
+
+        private void clearIndex() {
+            for (int i = 0; i < maxIndexEntries * OFFSET_ENTRY; i += 4) {
+                offsetIndex.putInt(i, 0);
+            }
+            for (int i = 0; i < maxIndexEntries * TIME_ENTRY; i += 4) {
+                timeIndex.putInt(i, 0);
+            }
+            entries = 0;
+            firstTimestamp = -1;
+        }
+
+        private long lastIndexedTimestamp() {
+            return entries > 0 ? timeIndex.getLong((entries - 1) * TIME_ENTRY) : -1;
+        }
+
+        /*
+         * 相对偏移量不大于目标的最后一个索引条目的文件位置
+         */
+        private long positionOf(long relativeOffset, int count) {
+            int low = 0;
+            int high = count - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (offsetIndex.getInt(mid * OFFSET_ENTRY) <= relativeOffset) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : offsetIndex.getInt(found * OFFSET_ENTRY + 4);
+        }
+
+        /*
+         * 时间戳小于目标的最后一个索引条目的文件位置；同一时间戳可能跨索引条目，所以取严格小于
+         */
+        private long positionOfTime(long timestamp, int count) {
+            int low = 0;
+            int high = count - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (timeIndex.getLong(mid * TIME_ENTRY) < timestamp) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found < 0 ? 0 : offsetIndex.getInt(found * OFFSET_ENTRY + 4);
+        }
+
+        private void close() throws IOException {
+            channel.close();
+            logFile.close();
+            offsetIndexFile.close();
+            timeIndexFile.close();
+        }
+    }
+
+    /**
+     * 一条日志记录
+     */
+    public static class Record {
+        private final long offset;
+        private final long timestamp;
+        private final Integer userId;
+        private final int type;
+        private final String content;
+        private final int length;
+
+        private Record(long offset, long timestamp, Integer userId, int type, String content, int length) {
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.userId = userId;
+            this.type = type;
+            this.content = content;
+            this.length = length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Integer getUserId() {
+            return userId;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public String getContent() {
+            return content;
+        }
+    }
+}
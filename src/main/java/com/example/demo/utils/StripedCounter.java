@@ -0,0 +1,119 @@
+package com.example.demo.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按ID聚合的内存计数器
+ * 每个ID对应一个LongAdder，热点ID上的并发自增不会互相争用；
+ * 定时任务通过drain取出增量批量写库，写库失败时通过restore放回
+ */
+public class StripedCounter {
+
+    private final ConcurrentHashMap<Integer, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 计数加一
+     *
+     * @param id 主键
+     */
+    public void increment(Integer id) {
+        add(id, 1L);
+    }
+
+    /**
+     * 计数增加指定值
+     *
+     * @param id 主键
+     * @param delta 增量
+     */
+    public void add(Integer id, long delta) {
+        if (id == null || delta == 0) {
+            return;
+        }
+        counters.computeIfAbsent(id, key -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * 取出当前累计的全部增量
+     * 用add(-delta)而不是sumThenReset，drain期间并发的自增会留到下一次，不会丢失
+     *
+     * @return 主键 -> 增量，无增量的主键不包含在内
+     */
+    public Map<Integer, Long> drain() {
+        Map<Integer, Long> deltas = new HashMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : counters.entrySet()) {
+            long delta = entry.getValue().sum();
+            if (delta != 0) {
+                entry.getValue().add(-delta);
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * 写库失败时放回取出的增量
+     *
+     * @param deltas 主键 -> 增量
+     */
+    public void restore(Map<Integer, Long> deltas) {
+        for (Map.Entry<Integer, Long> entry : deltas.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * 把增量按主键升序切成若干段，每段写库一条语句，绑定参数数不超过驱动上限；
+     * 同一份增量每次切出的分段相同
+     *
+     * @param deltas 主键 -> 增量
+     * @param size 每段最多主键数
+     * @return 各段增量
+     */
+    public static List<Map<Integer, Long>> partition(Map<Integer, Long> deltas, int size) {
+        List<Map<Integer, Long>> chunks = new ArrayList<>();
+        Map<Integer, Long> chunk = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry : new TreeMap<>(deltas).entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() >= size) {
+                chunks.add(chunk);
+                chunk = new LinkedHashMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * 查询某个主键尚未写库的增量
+     *
+     * @param id 主键
+     * @return 增量
+     */
+    public long pending(Integer id) {
+        LongAdder adder = counters.get(id);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * 尚未写库的增量总和
+     *
+     * @return 增量总和
+     */
+    public long pendingTotal() {
+        long total = 0L;
+        for (LongAdder adder : counters.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.demo.utils;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 归档zip中的文本抽取
+ * 支持txt、md、docx、pdf，单个文件和整体输出都有长度上限，避免大文件占满内存；
+ * 单个文件的字节上限按实际解压出的字节数计算，头部不记录大小（getSize()为-1）或大小与实际不符的文件同样受限
+ */
+public class TextExtractor {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    /**
+     * 抽取zip中所有支持格式文件的文本
+     *
+     * @param zip 归档文件
+     * @param maxChars 输出文本最大字符数
+     * @param maxEntryBytes 单个文件解压后的最大字节数，超过则跳过
+     * @return 抽取出的文本
+     * @throws IOException 读取归档文件失败
+     */
+    public static String extract(File zip, int maxChars, long maxEntryBytes) throws IOException {
+        StringBuilder content = new StringBuilder();
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements() && content.length() < maxChars) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || entry.getSize() > maxEntryBytes) {
+                    continue;
+                }
+                int remaining = maxChars - content.length();
+                String name = entry.getName().toLowerCase(Locale.ROOT);
+                try (InputStream in = new BoundedInputStream(zipFile.getInputStream(entry), maxEntryBytes)) {
+                    String text = null;
+                    if (name.endsWith(".txt") || name.endsWith(".md")) {
+                        text = readPlainText(in, remaining);
+                    } else if (name.endsWith(".docx")) {
+                        text = readDocx(in, remaining);
+                    } else if (name.endsWith(".pdf")) {
+                        text = readPdf(in, remaining);
+                    }
+                    if (text != null && !text.isEmpty()) {
+                        content.append(text).append('\n');
+                    }
+                } catch (EntryTooLargeException e) {
+                    // 按头部大小未能跳过的超限文件，已抽出的部分一并丢弃
+                    continue;
+                }
+            }
+        }
+        return content.length() > maxChars ? content.substring(0, maxChars) : content.toString();
+    }
+
+    /*
+     * 纯文本：先按UTF-8严格解码，失败再按GBK解码
+     */
+    private static String readPlainText(InputStream in, int maxChars) throws IOException {
+        // UTF-8中文每字3字节，按上限读取即可覆盖maxChars个字符
+        byte[] bytes = readAtMost(in, (long) maxChars * 3);
+        String text;
+        try {
+            text = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            text = new String(bytes, GBK);
+        }
+        return text.length() > maxChars ? text.substring(0, maxChars) : text;
+    }
+
+    /*
+     * docx本身是zip，流式解析word/document.xml，只取w:t中的文字
+     */
+    private static String readDocx(InputStream in, int maxChars) throws IOException {
+        ZipInputStream docx = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = docx.getNextEntry()) != null) {
+            if (!"word/document.xml".equals(entry.getName())) {
+                continue;
+            }
+            StringBuilder text = new StringBuilder();
+            try {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+                factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+                XMLStreamReader reader = factory.createXMLStreamReader(docx, "UTF-8");
+                boolean inText = false;
+                while (reader.hasNext() && text.length() < maxChars) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        inText = "t".equals(reader.getLocalName());
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        if ("p".equals(reader.getLocalName())) {
+                            text.append('\n');
+                        }
+                        inText = false;
+                    } else if (event == XMLStreamConstants.CHARACTERS && inText) {
+                        text.append(reader.getText());
+                    }
+                }
+                reader.close();
+            } catch (XMLStreamException e) {
+                // 解析器把读取时的IOException包在XMLStreamException里，超限仍按跳过处理
+                Throwable cause = e.getNestedException() != null ? e.getNestedException() : e.getCause();
+                if (cause instanceof EntryTooLargeException) {
+                    throw (EntryTooLargeException) cause;
+                }
+                throw new IOException("docx解析失败", e);
+            }
+            return text.length() > maxChars ? text.substring(0, maxChars) : text.toString();
+        }
+        return null;
+    }
+
+    /*
+     * pdf解析使用临时文件缓冲，不把整份文档放进堆内存
+     */
+    private static String readPdf(InputStream in, int maxChars) throws IOException {
+        try (PDDocument document = PDDocument.load(in, MemoryUsageSetting.setupTempFileOnly())) {
+            LimitedWriter writer = new LimitedWriter(maxChars);
+            new PDFTextStripper().writeText(document, writer);
+            return writer.toString();
+        }
+    }
+
+    private static byte[] readAtMost(InputStream in, long limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int length;
+        while (total < limit && (length = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total))) > 0) {
+            out.write(buffer, 0, length);
+            total += length;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 单个文件读取的字节数超过上限
+     */
+    private static class EntryTooLargeException extends IOException {
+        private EntryTooLargeException(long limit) {
+            super("文件解压后超过" + limit + "字节");
+        }
+    }
+
+    /**
+     * 统计实际读出的字节数，超过上限即抛出EntryTooLargeException
+     */
+    private static class BoundedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) {
+                count(length);
+            }
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void count(long length) throws EntryTooLargeException {
+            count += length;
+            if (count > limit) {
+                throw new EntryTooLargeException(limit);
+            }
+        }
+    }
+
+    /**
+     * 超过上限后丢弃后续内容的Writer
+     */
+    private static class LimitedWriter extends Writer {
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+
+        private LimitedWriter(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            int remaining = maxChars - text.length();
+            if (remaining > 0) {
+                text.append(chars, offset, Math.min(length, remaining));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
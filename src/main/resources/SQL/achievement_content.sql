@@ -0,0 +1,20 @@
+--
+-- 成果归档文件全文内容表
+-- 审核归档后由后台抽取 zip 中 txt/md/docx/pdf 的文本写入，供关键词搜索
+--
+
+CREATE TABLE "achievement_content" (
+    "achievement_id" INTEGER NOT NULL,
+    "file_name" CHARACTER VARYING(255 CHAR) NOT NULL,
+    "content" TEXT NOT NULL,
+    "extract_time" DATE NOT NULL
+);
+
+
+ALTER TABLE "achievement_content" OWNER TO "SYSTEM";
+
+ALTER TABLE ONLY "achievement_content"
+    ADD CONSTRAINT "achievement_content_PKEY" PRIMARY KEY ("achievement_id");
+
+-- content like '%关键词%' 需要三元组索引，需先安装 sys_trgm 扩展
+CREATE INDEX "achievement_content_content_trgm_idx" ON "achievement_content" USING GIN ("content" gin_trgm_ops);
@@ -0,0 +1,24 @@
+--
+-- 成果审批状态冗余列
+-- 列表查询原先每次都要对approval_records做子查询，改为在achievement_table上维护审批状态，
+-- 审批记录新增、修改、删除时由ApprovalStateService按成果重算
+--
+
+ALTER TABLE "achievement_table" ADD COLUMN "approved" BOOLEAN DEFAULT false NOT NULL;
+ALTER TABLE "achievement_table" ADD COLUMN "approval_pending" BOOLEAN DEFAULT false NOT NULL;
+
+-- 按现有审批记录回填，含义与原子查询一致：存在通过的记录即为已审批，存在待审批的记录即为待审批
+UPDATE "achievement_table" AS at SET
+    "approved" = EXISTS (SELECT 1 FROM "approval_records" ar
+                         WHERE ar."achievement_id" = at."achievement_id" AND ar."approval_status" = 1 AND ar."table_status" = true),
+    "approval_pending" = EXISTS (SELECT 1 FROM "approval_records" ar
+                                 WHERE ar."achievement_id" = at."achievement_id" AND ar."approval_status" = 0 AND ar."table_status" = true);
+
+-- 重算单个成果时按achievement_id查审批记录
+CREATE INDEX "approval_records_achievement_id_idx" ON "approval_records" ("achievement_id", "approval_status");
+
+-- 列表查询只扫描对应状态的行
+CREATE INDEX "achievement_table_approved_idx" ON "achievement_table" ("achievement_category")
+    WHERE "table_status" = true AND "approved" = true;
+CREATE INDEX "achievement_table_approval_pending_idx" ON "achievement_table" ("achievement_id")
+    WHERE "table_status" = true AND "approval_pending" = true;
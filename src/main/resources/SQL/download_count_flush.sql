@@ -0,0 +1,16 @@
+--
+-- 下载计数批次登记
+-- DownloadCountService把本地日志中的下载增量按批次写入achievement_download_count，
+-- 批次按成果ID分段写入，每段以“批次号-段号”登记，登记与该段增量在同一事务内提交，
+-- 进程重启或重试时已提交的段直接跳过
+-- 已按VARCHAR(36)建表的库执行：ALTER TABLE "download_count_flush" ALTER COLUMN "flush_id" TYPE VARCHAR(48);
+--
+
+CREATE TABLE "download_count_flush" (
+    "flush_id" VARCHAR(48) NOT NULL,
+    "flush_time" TIMESTAMP NOT NULL,
+    CONSTRAINT "download_count_flush_pkey" PRIMARY KEY ("flush_id")
+);
+
+-- 定期清理7天前的登记
+CREATE INDEX "download_count_flush_flush_time_idx" ON "download_count_flush" ("flush_time");
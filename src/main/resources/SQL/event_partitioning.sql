@@ -0,0 +1,103 @@
+--
+-- 事件表按月分区
+-- download_records、log_records、statistics_info只增不减，改为按时间列RANGE分区，每月一个分区，
+-- 分区名为<表名>_pYYYYMM，另建<表名>_default兜底，应用侧语句和列不变。
+-- 上线前在维护窗口执行一次：原表改名为*_legacy，新建同结构的分区表，迁移数据后删除原表。
+-- 分区表的主键必须包含分区列，主键改为(ID, 时间列)；ID仍由原序列生成，不会重复。
+-- 之后的分区由PartitionMaintenanceService按月预建，超过保留期的分区导出为压缩文件后卸载删除。
+-- secondary_indexes.sql中这几张表的索引在此重建到分区表上（分区表不支持CONCURRENTLY）
+--
+-- statistics_info以应用实际写入的结构为准，create.sql中的旧结构（statistic_time DATE，没有登录列）不适用：
+--   statistic_id, user_id, user_name, login_time, logout_time, duration, table_status
+-- DataStatisticMapper按"yyyy-MM-dd HH:mm:ss"写入login_time，可能建成了VARCHAR。
+-- 分区前先显式转换为TIMESTAMP（已是TIMESTAMP时不变），按日期范围分区，不依赖字符串排序；
+-- 映射文件写入和比较时同样显式CAST。缺少login_time列或有空值时中止，需先补齐数据
+--
+
+CREATE OR REPLACE FUNCTION create_month_partitions(parent TEXT, from_month DATE, to_month DATE) RETURNS VOID AS $$
+DECLARE
+    month DATE := date_trunc('month', from_month)::DATE;
+BEGIN
+    WHILE month <= to_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       parent || '_p' || to_char(month, 'YYYYMM'), parent,
+                       to_char(month, 'YYYY-MM-DD'), to_char(month + INTERVAL '1 month', 'YYYY-MM-DD'));
+        month := (month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+BEGIN;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_name = 'statistics_info' AND column_name = 'login_time') THEN
+        RAISE EXCEPTION 'statistics_info缺少login_time列，与应用使用的结构不一致';
+    END IF;
+    IF EXISTS (SELECT 1 FROM "statistics_info" WHERE "login_time" IS NULL) THEN
+        RAISE EXCEPTION 'statistics_info存在login_time为空的行，无法作为分区列';
+    END IF;
+END;
+$$;
+
+-- 下载记录，按download_time分区
+ALTER TABLE "download_records" RENAME TO "download_records_legacy";
+ALTER TABLE "download_records_legacy" RENAME CONSTRAINT "download_records_PKEY" TO "download_records_legacy_PKEY";
+ALTER SEQUENCE "download_records_id_seq" OWNED BY NONE;
+CREATE TABLE "download_records" (LIKE "download_records_legacy" INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE ("download_time");
+ALTER TABLE "download_records" ADD CONSTRAINT "download_records_PKEY" PRIMARY KEY ("download_id", "download_time");
+SELECT create_month_partitions('download_records',
+                               COALESCE((SELECT MIN("download_time")::DATE FROM "download_records_legacy"), CURRENT_DATE),
+                               (CURRENT_DATE + INTERVAL '3 month')::DATE);
+CREATE TABLE "download_records_default" PARTITION OF "download_records" DEFAULT;
+INSERT INTO "download_records" SELECT * FROM "download_records_legacy";
+DROP TABLE "download_records_legacy";
+
+-- 操作日志，按log_time分区
+ALTER TABLE "log_records" RENAME TO "log_records_legacy";
+ALTER TABLE "log_records_legacy" RENAME CONSTRAINT "log_records_PKEY" TO "log_records_legacy_PKEY";
+ALTER SEQUENCE "log_records_id_seq" OWNED BY NONE;
+CREATE TABLE "log_records" (LIKE "log_records_legacy" INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE ("log_time");
+ALTER TABLE "log_records" ADD CONSTRAINT "log_records_PKEY" PRIMARY KEY ("log_id", "log_time");
+SELECT create_month_partitions('log_records',
+                               COALESCE((SELECT MIN("log_time")::DATE FROM "log_records_legacy"), CURRENT_DATE),
+                               (CURRENT_DATE + INTERVAL '3 month')::DATE);
+CREATE TABLE "log_records_default" PARTITION OF "log_records" DEFAULT;
+INSERT INTO "log_records" SELECT * FROM "log_records_legacy";
+DROP TABLE "log_records_legacy";
+
+-- 登录记录，按login_time分区，先转换为TIMESTAMP
+ALTER TABLE "statistics_info" ALTER COLUMN "login_time" TYPE TIMESTAMP USING "login_time"::TIMESTAMP;
+ALTER TABLE "statistics_info" ALTER COLUMN "login_time" SET NOT NULL;
+ALTER TABLE "statistics_info" RENAME TO "statistics_info_legacy";
+ALTER TABLE "statistics_info_legacy" RENAME CONSTRAINT "statistics_info_PKEY" TO "statistics_info_legacy_PKEY";
+ALTER SEQUENCE "statistics_info_id_seq" OWNED BY NONE;
+CREATE TABLE "statistics_info" (LIKE "statistics_info_legacy" INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE ("login_time");
+ALTER TABLE "statistics_info" ADD CONSTRAINT "statistics_info_PKEY" PRIMARY KEY ("statistic_id", "login_time");
+SELECT create_month_partitions('statistics_info',
+                               COALESCE((SELECT MIN("login_time")::DATE FROM "statistics_info_legacy"), CURRENT_DATE),
+                               (CURRENT_DATE + INTERVAL '3 month')::DATE);
+CREATE TABLE "statistics_info_default" PARTITION OF "statistics_info" DEFAULT;
+INSERT INTO "statistics_info" SELECT * FROM "statistics_info_legacy";
+DROP TABLE "statistics_info_legacy";
+
+-- 分区表上建的索引自动建到每个分区，之后新建的分区同样继承
+CREATE INDEX IF NOT EXISTS "download_records_user_time_idx"
+    ON "download_records" ("user_id", "download_time") WHERE "table_status" = true;
+CREATE INDEX IF NOT EXISTS "download_records_achievement_id_idx"
+    ON "download_records" ("achievement_id") WHERE "table_status" = true;
+CREATE INDEX IF NOT EXISTS "log_records_user_time_idx"
+    ON "log_records" ("user_id", "log_time") WHERE "table_status" = true;
+-- 登出时按用户名找最近一次登录，在线人数只数未登出的行
+CREATE INDEX IF NOT EXISTS "statistics_info_online_idx"
+    ON "statistics_info" ("user_name", "login_time") WHERE "table_status" = true;
+
+COMMIT;
+
+ANALYZE "download_records";
+ANALYZE "log_records";
+ANALYZE "statistics_info";
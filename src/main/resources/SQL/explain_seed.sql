@@ -0,0 +1,48 @@
+--
+-- 执行计划回归检查用的造数脚本，只能在本地测试库执行
+-- 在create.sql及其余迁移脚本之后执行，各表造到足以让优化器在缺索引时选择顺序扫描的行数，
+-- 之后运行src/test下的QueryPlanRegression
+--
+
+INSERT INTO "user_role_permissions" ("user_name", "role_id", "user_status", "application_time", "user_intro", "table_status", "user_pwd")
+SELECT 'seed_user_' || i, 1 + i % 4, 1, date '2024-01-01' + i % 365, NULL, true, 'seed'
+FROM generate_series(1, 5000) AS i;
+
+INSERT INTO "achievement_table" ("achievement_name", "achievement_category", "achievement_form", "project_id", "achievement_version",
+                                 "achievement_intro", "user_id", "upload_time", "achievement_download_count", "search_count",
+                                 "organization_name", "user_name", "table_status", "audit_flag", "approved", "approval_pending")
+SELECT '成果' || i,
+       (ARRAY ['专利', '论文', '其他成果'])[1 + i % 3],
+       '研究报告',
+       i % 500,
+       'v1.' || i % 5,
+       '造数成果简介' || i,
+       1 + i % 5000,
+       date '2024-01-01' + i % 365,
+       i % 1000,
+       i % 5000,
+       '单位' || i % 50,
+       'seed_user_' || (1 + i % 5000),
+       i % 50 <> 0,
+       i % 3,
+       i % 3 = 1,
+       i % 3 = 0
+FROM generate_series(1, 50000) AS i;
+
+INSERT INTO "approval_records" ("achievement_id", "approval_type", "approval_status", "user_id", "approval_time", "table_status")
+SELECT 1 + i % 50000, 1, i % 3, 1 + i % 5000, date '2024-01-01' + i % 365, true
+FROM generate_series(1, 50000) AS i;
+
+INSERT INTO "download_records" ("achievement_id", "user_id", "download_time", "table_status")
+SELECT 1 + i % 50000, 1 + i % 5000, timestamp '2024-01-01 00:00:00' + i * interval '2 minute', true
+FROM generate_series(1, 200000) AS i;
+
+INSERT INTO "version_history" ("achievement_id", "version_number", "update_content", "update_time", "user_id", "table_status")
+SELECT 1 + i % 50000, 'v1.' || i % 5, '造数版本' || i, date '2024-01-01' + i % 365, 1 + i % 5000, true
+FROM generate_series(1, 50000) AS i;
+
+INSERT INTO "file_record" ("achievement_id", "file_name", "upload_time", "table_status", "project_id", "user_id")
+SELECT 1 + i % 50000, '成果' || i || '.zip', date '2024-01-01' + i % 365, true, i % 500, 1 + i % 5000
+FROM generate_series(1, 50000) AS i;
+
+ANALYZE;
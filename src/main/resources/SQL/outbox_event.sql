@@ -0,0 +1,29 @@
+--
+-- 事务性发件箱
+-- 审批、归档等写操作在同一事务内插入一条事件，提交后由OutboxService的后台线程成批取出，
+-- 分发给进程内的处理器（审批状态重算、搜索缓存和联想/相似度索引刷新、全文索引），处理成功后标记processed_time。
+-- 多个节点可同时取事件，取批次时FOR UPDATE SKIP LOCKED互不重复；处理失败按attempts指数退避重试，
+-- 超过最大次数的事件停留在表中，可通过/outbox/retry重新投递。已处理的事件保留数天后清理。
+-- 已安装增量备份的变更捕获时，执行本脚本后需再执行SELECT backup_attach_change_capture()
+--
+
+CREATE TABLE "outbox_event" (
+    "event_id" BIGSERIAL NOT NULL,
+    "event_type" VARCHAR(64) NOT NULL,
+    "aggregate_id" INTEGER,
+    "payload" TEXT,
+    "created_time" TIMESTAMP DEFAULT now() NOT NULL,
+    "attempts" INTEGER DEFAULT 0 NOT NULL,
+    "next_attempt_time" TIMESTAMP DEFAULT now() NOT NULL,
+    "last_error" VARCHAR(500),
+    "processed_time" TIMESTAMP,
+    CONSTRAINT "outbox_event_pkey" PRIMARY KEY ("event_id")
+);
+
+-- 取待处理批次只扫描未处理的事件
+CREATE INDEX "outbox_event_pending_idx" ON "outbox_event" ("event_id")
+    WHERE "processed_time" IS NULL;
+
+-- 按处理时间清理
+CREATE INDEX "outbox_event_processed_time_idx" ON "outbox_event" ("processed_time")
+    WHERE "processed_time" IS NOT NULL;
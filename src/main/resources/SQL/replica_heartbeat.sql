@@ -0,0 +1,14 @@
+--
+-- 从库延迟心跳
+-- 应用每隔datasource.replica.heartbeat-interval毫秒在主库更新beat_time，复制到从库后，
+-- 读写分离路由用 从库now() - beat_time 作为延迟；主从时钟需同步（NTP）。
+-- 未建此表时从库延迟查询失败，所有只读查询回退主库
+--
+
+CREATE TABLE "replica_heartbeat" (
+    "id" INTEGER NOT NULL,
+    "beat_time" TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT "replica_heartbeat_pkey" PRIMARY KEY ("id")
+);
+
+INSERT INTO "replica_heartbeat" ("id", "beat_time") VALUES (1, now());
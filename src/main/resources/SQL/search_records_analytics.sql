@@ -0,0 +1,10 @@
+--
+-- 搜索记录分析字段
+-- 模糊查询由SearchAnalyticsService异步批量写入search_records，附带结果条数和耗时
+--
+
+ALTER TABLE "search_records" ADD COLUMN "result_count" INTEGER;
+ALTER TABLE "search_records" ADD COLUMN "latency_ms" INTEGER;
+
+-- 按时间段统计和清理历史记录
+CREATE INDEX "search_records_search_time_idx" ON "search_records" ("search_time");
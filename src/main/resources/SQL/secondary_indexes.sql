@@ -0,0 +1,54 @@
+--
+-- 二级索引
+-- create.sql只有主键，以下索引对应各mapper的常用过滤条件；所有查询都带table_status = true，
+-- 凡是只查未删除数据的索引都建成部分索引，已删除的行不占索引空间。
+-- 使用CONCURRENTLY建索引不阻塞写入，不能放在事务块中执行，需逐条执行；
+-- 成果表的审批状态索引和approval_records(achievement_id, approval_status)见approval_state.sql
+--
+
+-- 成果模糊查询：table_status = true and audit_flag != 0，再按类别、上传时间过滤
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "achievement_table_audit_category_idx"
+    ON "achievement_table" ("audit_flag", "achievement_category", "upload_time")
+    WHERE "table_status" = true;
+
+-- 按用户、项目查成果（精确查询、我的成果）
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "achievement_table_user_id_idx"
+    ON "achievement_table" ("user_id") WHERE "table_status" = true;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "achievement_table_project_id_idx"
+    ON "achievement_table" ("project_id") WHERE "table_status" = true;
+
+-- 成果名称 like '%关键词%'，与achievement_content相同需先安装sys_trgm扩展
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "achievement_table_name_trgm_idx"
+    ON "achievement_table" USING GIN ("achievement_name" gin_trgm_ops)
+    WHERE "table_status" = true;
+
+-- 审批列表：按审批状态分为待审批和已处理两类
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "approval_records_pending_idx"
+    ON "approval_records" ("approval_time")
+    WHERE "table_status" = true AND "approval_status" = 0;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "approval_records_done_idx"
+    ON "approval_records" ("approval_time")
+    WHERE "table_status" = true AND "approval_status" <> 0;
+
+-- 用户下载历史按时间倒序，成果下载统计按成果
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "download_records_user_time_idx"
+    ON "download_records" ("user_id", "download_time") WHERE "table_status" = true;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "download_records_achievement_id_idx"
+    ON "download_records" ("achievement_id") WHERE "table_status" = true;
+
+-- 成果的版本历史、归档文件
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "version_history_achievement_id_idx"
+    ON "version_history" ("achievement_id", "update_time");
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "file_record_achievement_id_idx"
+    ON "file_record" ("achievement_id") WHERE "table_status" = true;
+
+-- 登录、JWT校验、搜索记录都按用户名查用户ID
+CREATE INDEX CONCURRENTLY IF NOT EXISTS "user_role_permissions_user_name_idx"
+    ON "user_role_permissions" ("user_name") WHERE "table_status" = true;
+
+ANALYZE "achievement_table";
+ANALYZE "approval_records";
+ANALYZE "download_records";
+ANALYZE "version_history";
+ANALYZE "file_record";
+ANALYZE "user_role_permissions";
@@ -0,0 +1,74 @@
+--
+-- 软删除行归档
+-- 各表软删除（table_status = false）时由触发器记录deleted_time，恢复时清空；超过保留期的软删除行由
+-- SoftDeletePurgeService按小批次移入同结构的<表名>_archive表（多一列archived_time），热表只保留有效行和近期删除的行。
+-- 成果的restoreById/restoreAll同时从achievement_table_archive移回；应用启动时检查一次该表是否存在，执行本脚本后需重启应用才会生效。
+-- 按月分区的download_records、log_records、statistics_info由分区维护整月归档，不在此列。
+-- 热表以后增加列时，需对该表再执行一次SELECT soft_delete_attach_archive('表名')，归档表同步补列；
+-- 已安装增量备份的变更捕获时，执行本脚本后需再执行SELECT backup_attach_change_capture()
+--
+
+CREATE OR REPLACE FUNCTION soft_delete_stamp() RETURNS trigger AS $$
+BEGIN
+    IF NEW."table_status" IS DISTINCT FROM OLD."table_status" THEN
+        NEW."deleted_time" := CASE WHEN NEW."table_status" THEN NULL ELSE now() END;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 给一张表加deleted_time列和触发器，建归档表（主键与热表相同），补齐热表新增的列，可重复执行
+CREATE OR REPLACE FUNCTION soft_delete_attach_archive(t text) RETURNS void AS $$
+DECLARE
+    archive text := t || '_archive';
+    pk text;
+    col record;
+BEGIN
+    EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS "deleted_time" TIMESTAMP', t);
+    -- 脚本执行前已软删除的行从现在开始计算保留期
+    EXECUTE format('UPDATE %I SET "deleted_time" = now() WHERE "table_status" = false AND "deleted_time" IS NULL', t);
+    EXECUTE format('DROP TRIGGER IF EXISTS soft_delete_stamp ON %I', t);
+    EXECUTE format('CREATE TRIGGER soft_delete_stamp BEFORE UPDATE OF "table_status" ON %I '
+                   'FOR EACH ROW EXECUTE PROCEDURE soft_delete_stamp()', t);
+    -- 清理任务只扫描软删除的行
+    EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I ("deleted_time") WHERE "table_status" = false',
+                   t || '_deleted_time_idx', t);
+
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I (LIKE %I, "archived_time" TIMESTAMP DEFAULT now() NOT NULL)', archive, t);
+    FOR col IN
+        SELECT a.attname, format_type(a.atttypid, a.atttypmod) AS type_name
+        FROM pg_attribute a
+        WHERE a.attrelid = t::regclass AND a.attnum > 0 AND NOT a.attisdropped
+    LOOP
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS %I %s', archive, col.attname, col.type_name);
+    END LOOP;
+
+    SELECT string_agg(quote_ident(a.attname), ', ' ORDER BY k.ord) INTO pk
+    FROM pg_constraint con
+    CROSS JOIN unnest(con.conkey) WITH ORDINALITY k(attnum, ord)
+    JOIN pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = k.attnum
+    WHERE con.conrelid = t::regclass AND con.contype = 'p';
+    IF pk IS NOT NULL AND NOT EXISTS (
+        SELECT 1 FROM pg_constraint WHERE conrelid = archive::regclass AND contype = 'p'
+    ) THEN
+        EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (%s)', archive, pk);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT soft_delete_attach_archive(t) FROM unnest(ARRAY[
+    'achievement_check_template',
+    'achievement_table',
+    'approval_records',
+    'file_record',
+    'intellectual_property',
+    'intellectual_property_applications',
+    'interaction_evaluation',
+    'organization_info',
+    'patent_complaints',
+    'project_records',
+    'role_table',
+    'search_records',
+    'user_role_permissions',
+    'version_history'
+]) t;
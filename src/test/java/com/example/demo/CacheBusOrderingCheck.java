@@ -0,0 +1,94 @@
+package com.example.demo;
+
+import com.example.demo.service.CacheInvalidationBus;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 缓存失效总线乱序投递检查
+ * 不依赖Spring上下文和Redis，直接运行main：以另一节点的身份把事件打乱顺序交给总线，
+ * 检查乱序窗口内补齐的事件按序号处理且不误判为丢失；真正缺失的序号在窗口到期后全部失效一次，之后迟到的事件按过期丢弃；
+ * 附加信息原样交给处理器。
+ * 任一项不符时进程以1退出
+ */
+public class CacheBusOrderingCheck {
+
+    private static final String PEER = "peer";
+    private static final long REORDER_WINDOW = 200L;
+
+    public static void main(String[] args) throws Exception {
+        CacheInvalidationBus bus = new CacheInvalidationBus();
+        set(bus, "redisMessageListenerContainer", new RedisMessageListenerContainer());
+        set(bus, "enabled", true);
+        set(bus, "channel", "cache:invalidation");
+        set(bus, "maxLag", 5000L);
+        set(bus, "reorderWindow", REORDER_WINDOW);
+        bus.init();
+        List<String> applied = new CopyOnWriteArrayList<>();
+        bus.register(CacheInvalidationBus.TYPE_ACHIEVEMENT, id -> applied.add(id));
+        List<String> tags = new CopyOnWriteArrayList<>();
+        bus.register(CacheInvalidationBus.TYPE_ACHIEVEMENT, (id, tag) -> tags.add(id + ":" + tag));
+
+        CheckHarness check = new CheckHarness("ordering");
+        // 序号1建立基线，2和3对调，4正常
+        deliver(bus, 1, "1");
+        deliver(bus, 3, "3");
+        deliver(bus, 2, "2");
+        deliver(bus, 4, "4");
+        Thread.sleep(REORDER_WINDOW * 3);
+        check.expect("reordered events applied in sequence", applied.equals(Arrays.asList("1", "2", "3", "4")));
+        check.expect("no false gap", gapCount(bus) == 0);
+
+        // 序号5丢失，6在窗口到期后触发全部失效
+        applied.clear();
+        deliver(bus, 6, "6");
+        Thread.sleep(REORDER_WINDOW / 4);
+        check.expect("gap not declared inside the window", applied.isEmpty());
+        Thread.sleep(REORDER_WINDOW * 3);
+        check.expect("missing sequence invalidates all", applied.equals(Arrays.asList(CacheInvalidationBus.ALL)));
+        check.expect("gap counted once", gapCount(bus) == 1);
+
+        // 迟到的5已被全部失效覆盖，7照常处理
+        applied.clear();
+        deliver(bus, 5, "5");
+        deliver(bus, 7, "7");
+        Thread.sleep(REORDER_WINDOW);
+        check.expect("late event dropped after gap", applied.equals(Arrays.asList("7")));
+
+        // 附加信息随事件送达，旧格式没有附加信息
+        tags.clear();
+        deliver(bus, 8, "8|论文");
+        deliver(bus, 9, "9");
+        Thread.sleep(REORDER_WINDOW);
+        check.expect("tag delivered with the event", tags.equals(Arrays.asList("8:论文", "9:null")));
+
+        bus.shutdown();
+        check.exit();
+    }
+
+    /*
+     * 以另一节点的身份投递一条事件，版本与序号相同；id后可接|附加信息
+     */
+    private static void deliver(CacheInvalidationBus bus, long seq, String id) {
+        String body = PEER + "|" + seq + "|" + seq + "|" + System.currentTimeMillis()
+                + "|" + CacheInvalidationBus.TYPE_ACHIEVEMENT + "|" + id;
+        bus.onMessage(new DefaultMessage("cache:invalidation".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private static long gapCount(CacheInvalidationBus bus) {
+        return ((Number) bus.getStatistics().get("gapCount")).longValue();
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 本目录下各检查程序（直接运行main）共用的输出和退出码约定
+ * 参数不足时打印用法并以2退出；每个检查项打印一行结果，最后逐条列出"  FAIL 原因"和一行总结，
+ * 全部通过时进程以0退出，否则以1退出
+ */
+final class CheckHarness {
+
+    private final String name;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @param name 总结行的名称，如"routing"输出"routing ok"或"routing failed"
+     */
+    CheckHarness(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 参数少于minArgs个时打印用法并以2退出
+     *
+     * @param args main的参数
+     * @param minArgs 必需参数个数
+     * @param usage 用法，不含"usage: "前缀
+     */
+    static void requireArgs(String[] args, int minArgs, String usage) {
+        if (args.length < minArgs) {
+            usage(usage);
+        }
+    }
+
+    /**
+     * 打印用法并以2退出，参数格式不对时调用
+     *
+     * @param usage 用法，不含"usage: "前缀
+     */
+    static void usage(String usage) {
+        System.out.println("usage: " + usage);
+        System.exit(2);
+    }
+
+    /**
+     * 检查一项，不符时记为失败
+     *
+     * @param item 检查项
+     * @param ok 是否符合
+     */
+    void expect(String item, boolean ok) {
+        expect(item, ok, "wrong");
+    }
+
+    /**
+     * 检查一项，不符时记为失败
+     *
+     * @param item 检查项
+     * @param ok 是否符合
+     * @param detail 不符时打印的说明
+     */
+    void expect(String item, boolean ok, String detail) {
+        System.out.println("  " + item + ": " + (ok ? "ok" : detail));
+        if (!ok) {
+            errors.add(item);
+        }
+    }
+
+    /**
+     * 直接记一条失败
+     *
+     * @param error 失败原因
+     */
+    void fail(Object error) {
+        errors.add(String.valueOf(error));
+    }
+
+    /**
+     * 记多条失败，如校验方法返回的出错列表
+     *
+     * @param errors 失败原因
+     */
+    void failAll(Collection<?> errors) {
+        for (Object error : errors) {
+            fail(error);
+        }
+    }
+
+    int errorCount() {
+        return errors.size();
+    }
+
+    /**
+     * 列出失败项和总结行，按结果退出进程
+     */
+    void exit() {
+        for (String error : errors) {
+            System.out.println("  FAIL " + error);
+        }
+        System.out.println(name + (errors.isEmpty() ? " ok" : " failed"));
+        System.exit(errors.isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.demo;
+
+import com.example.demo.mapper.AchievementTableMapper;
+import com.example.demo.mapper.ApprovalRecordsMapper;
+import com.example.demo.model.AchievementTable;
+import com.example.demo.model.OutboxEvent;
+import com.example.demo.service.AchievementCacheService;
+import com.example.demo.service.ApprovalStateService;
+import com.example.demo.service.CacheInvalidationBus;
+import com.example.demo.service.OutboxService;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 发件箱事件跨节点广播检查
+ * 不依赖Spring上下文和数据库，直接运行main：两个节点各有一套ApprovalStateService、AchievementCacheService和缓存失效总线，
+ * 共用一个内存中的“库”，总线之间用内存频道代替Redis发布订阅。
+ * 发件箱事件只交给节点A的处理器（SKIP LOCKED下只有一个节点取到），检查节点B的已审批集合和成果缓存也随之更新；
+ * 任一项不符时进程以1退出
+ */
+public class OutboxBroadcastCheck {
+
+    private static final Integer APPROVAL_ID = 7;
+    private static final Integer ACHIEVEMENT_ID = 13;
+
+    /**
+     * 内存中的“库”：成果ID -> 是否已审批
+     */
+    private static final Map<Integer, Boolean> APPROVED = new ConcurrentHashMap<>();
+
+    /**
+     * 内存频道上的所有总线
+     */
+    private static final List<CacheInvalidationBus> CHANNEL = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        APPROVED.put(ACHIEVEMENT_ID, false);
+        Node a = new Node();
+        Node b = new Node();
+        a.approvalStateService.reload();
+        b.approvalStateService.reload();
+        // 节点B缓存中是审批前的成果
+        b.achievementCacheService.get(ACHIEVEMENT_ID, b::load);
+
+        CheckHarness check = new CheckHarness("broadcast");
+        // 审批通过已提交，事件只由节点A处理
+        APPROVED.put(ACHIEVEMENT_ID, true);
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setEventId(1L);
+        outboxEvent.setEventType(OutboxService.APPROVAL_APPROVED);
+        outboxEvent.setAggregateId(APPROVAL_ID);
+        a.dispatch(outboxEvent);
+
+        check.expect("node A approved set", a.approvalStateService.isApproved(ACHIEVEMENT_ID), "stale");
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!b.approvalStateService.isApproved(ACHIEVEMENT_ID) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        check.expect("node B approved set", b.approvalStateService.isApproved(ACHIEVEMENT_ID), "stale");
+        int loads = b.loads.get();
+        b.achievementCacheService.get(ACHIEVEMENT_ID, b::load);
+        check.expect("node B entity cache invalidated", b.loads.get() == loads + 1, "stale");
+        check.exit();
+    }
+
+    /**
+     * 一个应用节点
+     */
+    private static class Node {
+        private final CacheInvalidationBus bus = new CacheInvalidationBus();
+        private final AchievementCacheService achievementCacheService = new AchievementCacheService();
+        private final ApprovalStateService approvalStateService = new ApprovalStateService();
+        private final OutboxService outboxService = new OutboxService();
+        private final AtomicInteger loads = new AtomicInteger();
+
+        private Node() throws Exception {
+            RedisTemplate<String, String> redisTemplate = new MemoryRedisTemplate();
+            set(bus, "redisTemplate", redisTemplate);
+            set(bus, "redisMessageListenerContainer", new RedisMessageListenerContainer());
+            set(bus, "enabled", true);
+            set(bus, "channel", "cache:invalidation");
+            set(bus, "maxLag", 5000L);
+            set(bus, "reorderWindow", 1000L);
+            bus.init();
+            CHANNEL.add(bus);
+
+            set(achievementCacheService, "redisTemplate", redisTemplate);
+            set(achievementCacheService, "cacheInvalidationBus", bus);
+            set(achievementCacheService, "capacity", 100);
+            set(achievementCacheService, "ttl", 600000L);
+            achievementCacheService.init();
+
+            set(approvalStateService, "achievementTableMapper", mapper(AchievementTableMapper.class));
+            set(approvalStateService, "approvalRecordsMapper", mapper(ApprovalRecordsMapper.class));
+            set(approvalStateService, "outboxService", outboxService);
+            set(approvalStateService, "achievementCacheService", achievementCacheService);
+            approvalStateService.init();
+
+            // 与AchievementTableService.onRemoteInvalidation中按ID处理的部分相同
+            bus.register(CacheInvalidationBus.TYPE_ACHIEVEMENT, id -> {
+                if (!CacheInvalidationBus.ALL.equals(id)) {
+                    achievementCacheService.invalidateLocal(Integer.valueOf(id));
+                    approvalStateService.sync(Integer.valueOf(id));
+                }
+            });
+        }
+
+        private AchievementTable load(Integer achievementId) {
+            loads.incrementAndGet();
+            AchievementTable achievementTable = new AchievementTable();
+            achievementTable.setAchievementId(achievementId);
+            return achievementTable;
+        }
+
+        /*
+         * 把事件交给本节点注册的处理器，与发件箱分发线程相同
+         */
+        @SuppressWarnings("unchecked")
+        private void dispatch(OutboxEvent outboxEvent) throws Exception {
+            Field field = OutboxService.class.getDeclaredField("handlers");
+            field.setAccessible(true);
+            Map<String, List<Consumer<List<OutboxEvent>>>> handlers = (Map<String, List<Consumer<List<OutboxEvent>>>>) field.get(outboxService);
+            for (Consumer<List<OutboxEvent>> handler : handlers.get(outboxEvent.getEventType())) {
+                handler.accept(Collections.singletonList(outboxEvent));
+            }
+        }
+    }
+
+    /**
+     * 两个节点共用的mapper，只实现审批状态用到的方法
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T mapper(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "queryAchievementIdByApprovalId":
+                    return APPROVAL_ID.equals(args[0]) ? ACHIEVEMENT_ID : null;
+                case "refreshApprovalState":
+                    return 1;
+                case "queryApprovedById":
+                    return APPROVED.get(args[0]);
+                case "queryApprovedIds":
+                    List<Integer> ids = new ArrayList<>();
+                    for (Map.Entry<Integer, Boolean> entry : APPROVED.entrySet()) {
+                        if (entry.getValue()) {
+                            ids.add(entry.getKey());
+                        }
+                    }
+                    return ids;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * 发布直接投递给内存频道上的所有总线，版本计数器在进程内
+     */
+    private static class MemoryRedisTemplate extends RedisTemplate<String, String> {
+        private static final AtomicLong VERSION = new AtomicLong();
+
+        @Override
+        public void convertAndSend(String channel, Object message) {
+            for (CacheInvalidationBus bus : CHANNEL) {
+                bus.onMessage(new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8),
+                        message.toString().getBytes(StandardCharsets.UTF_8)), null);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public ValueOperations<String, String> opsForValue() {
+            return (ValueOperations<String, String>) Proxy.newProxyInstance(ValueOperations.class.getClassLoader(),
+                    new Class<?>[]{ValueOperations.class}, (proxy, method, args) -> {
+                        if ("increment".equals(method.getName())) {
+                            return VERSION.incrementAndGet();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 执行计划回归检查
+ * 不依赖Spring上下文，直接运行main：解析src/main/resources/mapper下所有语句，用样例参数对每条非insert语句执行EXPLAIN，
+ * 计划中出现对大表（行数估计不少于阈值）的顺序扫描即判定失败，位于Limit之下的也算（Limit不保证读够行数就停）；
+ * EXPLAIN执行出错的语句同样判定失败，任一失败时进程以1退出。
+ * 先在本地测试库执行create.sql、其余迁移脚本和explain_seed.sql。
+ * 参数：jdbcUrl user password [最小行数，默认10000]；jdbcUrl需带stringtype=unspecified，字符串参数由数据库按列类型推断
+ */
+public class QueryPlanRegression {
+
+    private static final String MAPPER_DIR = "src/main/resources/mapper";
+
+    /**
+     * 按设计就是全表读取的语句，不检查
+     */
+    private static final Set<String> FULL_SCAN_ALLOWED = new HashSet<>(Arrays.asList(
+            "queryAll", "streamAll", "restoreAll", "queryApprovedIds", "pruneDownloadCountFlush"));
+
+    public static void main(String[] args) throws Exception {
+        CheckHarness.requireArgs(args, 3, "QueryPlanRegression jdbcUrl user password [minRows]");
+        long minRows = args.length > 3 ? Long.parseLong(args[3]) : 10000;
+
+        Configuration configuration = new Configuration();
+        File[] files = new File(MAPPER_DIR).listFiles((dir, name) -> name.endsWith(".xml"));
+        if (files == null || files.length == 0) {
+            System.out.println("no mapper xml under " + MAPPER_DIR);
+            System.exit(2);
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                new XMLMapperBuilder(in, configuration, file.getPath(), configuration.getSqlFragments()).parse();
+            }
+        }
+
+        Map<String, MappedStatement> statements = new TreeMap<>();
+        for (Object value : configuration.getMappedStatements()) {
+            // 全名和短名指向同一条语句，按ID去重；短名冲突时存的不是MappedStatement
+            if (value instanceof MappedStatement) {
+                MappedStatement statement = (MappedStatement) value;
+                statements.put(statement.getId(), statement);
+            }
+        }
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> violations = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        List<String> skipped = new ArrayList<>();
+        int checked = 0;
+        try (Connection connection = DriverManager.getConnection(args[0], args[1], args[2])) {
+            // EXPLAIN不会执行update/delete，放在事务里回滚再保险一次
+            connection.setAutoCommit(false);
+            Map<String, Long> tableRows = new HashMap<>();
+            for (MappedStatement statement : statements.values()) {
+                String id = statement.getId();
+                if (statement.getSqlCommandType() == SqlCommandType.INSERT
+                        || FULL_SCAN_ALLOWED.contains(id.substring(id.lastIndexOf('.') + 1))) {
+                    continue;
+                }
+                BoundSql boundSql;
+                try {
+                    // 动态条件全部按未传参处理，检查的是每条语句必带的过滤条件；
+                    // 只有foreach等必须传参才能生成SQL的语句在这里跳过，并在结果中列出
+                    boundSql = statement.getBoundSql(new HashMap<String, Object>());
+                } catch (Exception e) {
+                    skipped.add(id + " (" + e.getClass().getSimpleName() + ")");
+                    continue;
+                }
+                try (PreparedStatement ps = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + boundSql.getSql())) {
+                    List<ParameterMapping> mappings = boundSql.getParameterMappings();
+                    for (int i = 0; i < mappings.size(); i++) {
+                        ps.setObject(i + 1, sampleOf(mappings.get(i)));
+                    }
+                    String plan;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        plan = rs.getString(1);
+                    }
+                    checked++;
+                    List<String> scans = new ArrayList<>();
+                    collectSeqScans(objectMapper.readTree(plan), scans);
+                    for (String table : scans) {
+                        long rows = rowsOf(connection, tableRows, table);
+                        if (rows >= minRows) {
+                            violations.add(id + ": Seq Scan on " + table + " (~" + rows + " rows)");
+                        }
+                    }
+                } catch (Exception e) {
+                    // 语句与库结构不符或样例参数无法绑定，都需要处理，不能当作通过
+                    connection.rollback();
+                    errors.add(id + ": EXPLAIN failed (" + String.valueOf(e.getMessage()).split("\n")[0] + ")");
+                }
+            }
+            connection.rollback();
+        }
+
+        System.out.println("checked " + checked + " statements, skipped " + skipped.size() + ", errors " + errors.size());
+        for (String item : skipped) {
+            System.out.println("  skipped " + item);
+        }
+        CheckHarness check = new CheckHarness("plan");
+        check.failAll(errors);
+        check.failAll(violations);
+        check.exit();
+    }
+
+    /*
+     * 按参数名和类型给样例值：ID取1，分页取0和10，时间取固定日期，其余字符串
+     */
+    private static Object sampleOf(ParameterMapping mapping) {
+        String property = mapping.getProperty();
+        String name = property.substring(property.lastIndexOf('.') + 1).toLowerCase();
+        Class<?> type = mapping.getJavaType();
+        if ("offset".equals(name)) {
+            return 0;
+        }
+        if ("limit".equals(name) || "pagesize".equals(name)) {
+            return 10;
+        }
+        if (type == Boolean.class || "tablestatus".equals(name)) {
+            return true;
+        }
+        if (type == Integer.class || type == Long.class || name.endsWith("id") || name.endsWith("flag")) {
+            return 1;
+        }
+        if (name.contains("time") || name.contains("date") || "since".equals(name)) {
+            return "2024-06-01 00:00:00";
+        }
+        return "x";
+    }
+
+    /*
+     * 收集计划中所有顺序扫描的表；Limit之下的也收集，过滤条件命中的行少或排在表尾时照样扫完全表，
+     * 小表由调用方按行数阈值放过
+     */
+    private static void collectSeqScans(JsonNode node, List<String> scans) {
+        if (node.isArray()) {
+            for (JsonNode child : node) {
+                collectSeqScans(child, scans);
+            }
+            return;
+        }
+        if (!node.isObject()) {
+            return;
+        }
+        if ("Seq Scan".equals(node.path("Node Type").asText()) && node.has("Relation Name")) {
+            scans.add(node.get("Relation Name").asText());
+        }
+        collectSeqScans(node.path("Plan"), scans);
+        collectSeqScans(node.path("Plans"), scans);
+    }
+
+    private static long rowsOf(Connection connection, Map<String, Long> cache, String table) throws Exception {
+        Long rows = cache.get(table);
+        if (rows == null) {
+            try (PreparedStatement ps = connection.prepareStatement("select reltuples::bigint from pg_class where relname = ?")) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rows = rs.next() ? rs.getLong(1) : 0L;
+                }
+            }
+            cache.put(table, rows);
+        }
+        return rows;
+    }
+}
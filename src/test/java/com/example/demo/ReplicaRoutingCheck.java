@@ -0,0 +1,96 @@
+package com.example.demo;
+
+import com.example.demo.config.securityConfig.DataSourceConfig;
+import com.example.demo.config.securityConfig.ReadWriteContext;
+import com.example.demo.config.securityConfig.ReadWriteRoutingDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+
+/**
+ * 读写分离路由本地检查
+ * 不依赖Spring上下文，直接运行main，需要一主一从两个本地实例（主库已执行SQL/replica_heartbeat.sql）：
+ * 只读事务应落到从库、读写事务和写后粘滞窗口内的只读事务应落到主库；
+ * 随后在从库上暂停回放（需超级用户），心跳不再前进，从库应在延迟超限后被摘除、只读事务回退主库，最后恢复回放。
+ * 任一项不符时进程以1退出。参数：primaryUrl replicaUrl user password
+ */
+public class ReplicaRoutingCheck {
+
+    private static final long MAX_LAG = 2000;
+
+    public static void main(String[] args) throws Exception {
+        CheckHarness.requireArgs(args, 4, "ReplicaRoutingCheck primaryUrl replicaUrl user password");
+        DataSource primary = new DriverManagerDataSource(args[0], args[2], args[3]);
+        DataSource replica = new DriverManagerDataSource(args[1], args[2], args[3]);
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, Collections.singletonList(replica),
+                DataSourceConfig.DEFAULT_LAG_QUERY, MAX_LAG, 5000, ReadWriteRoutingDataSource.DEFAULT_HEARTBEAT_SQL);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+
+        CheckHarness check = new CheckHarness("routing");
+        routing.heartbeat();
+        Thread.sleep(500);
+        routing.checkReplicas();
+        System.out.println("after heartbeat " + routing.getStatistics());
+        expect(check, "read-only routed to replica", inRecovery(readOnly, dataSource), true);
+        expect(check, "read-write routed to primary", inRecovery(readWrite, dataSource), false);
+
+        ReadWriteContext.markWritten();
+        expect(check, "read-only after write sticks to primary", inRecovery(readOnly, dataSource), false);
+        ReadWriteContext.clear();
+
+        execute(replica, "select pg_wal_replay_pause()");
+        try {
+            long until = System.currentTimeMillis() + MAX_LAG * 2;
+            while (System.currentTimeMillis() < until) {
+                routing.heartbeat();
+                Thread.sleep(500);
+            }
+            routing.checkReplicas();
+            System.out.println("after replay paused " + routing.getStatistics());
+            expect(check, "lagging replica removed, read-only falls back to primary", inRecovery(readOnly, dataSource), false);
+        } finally {
+            execute(replica, "select pg_wal_replay_resume()");
+        }
+
+        check.exit();
+    }
+
+    private static boolean inRecovery(TransactionTemplate template, DataSource dataSource) {
+        Boolean res = template.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("select pg_is_in_recovery()")) {
+                resultSet.next();
+                return resultSet.getBoolean(1);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        });
+        return Boolean.TRUE.equals(res);
+    }
+
+    private static void execute(DataSource dataSource, String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void expect(CheckHarness check, String name, boolean actual, boolean inRecovery) {
+        check.expect(name, actual == inRecovery, "unexpected pg_is_in_recovery=" + actual);
+    }
+}
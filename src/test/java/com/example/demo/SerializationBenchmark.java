@@ -0,0 +1,112 @@
+package com.example.demo;
+
+import com.example.demo.model.AchievementTable;
+import com.example.demo.utils.JSONResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JSON、CBOR、MessagePack响应序列化对比
+ * 不依赖Spring上下文，直接运行main：分别输出成果列表和统计数据两类响应的字节数与单次序列化耗时
+ */
+public class SerializationBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURE_ROUNDS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, ObjectMapper> mappers = new LinkedHashMap<>();
+        mappers.put("json", mapper(new JsonFactory()));
+        mappers.put("cbor", mapper(new CBORFactory()));
+        mappers.put("msgpack", mapper(new MessagePackFactory()));
+
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("achievements(1000)", new JSONResult("success", 200, "查询所有行成功", achievements(1000)));
+        payloads.put("statistics(365x24)", new JSONResult("success", 200, "查询成功", statistics(365, 24)));
+
+        for (Map.Entry<String, Object> payload : payloads.entrySet()) {
+            System.out.println(payload.getKey());
+            long jsonBytes = 0;
+            double jsonMicros = 0;
+            for (Map.Entry<String, ObjectMapper> mapper : mappers.entrySet()) {
+                byte[] bytes = null;
+                for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                    bytes = mapper.getValue().writeValueAsBytes(payload.getValue());
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < MEASURE_ROUNDS; i++) {
+                    bytes = mapper.getValue().writeValueAsBytes(payload.getValue());
+                }
+                double micros = (System.nanoTime() - start) / 1000.0 / MEASURE_ROUNDS;
+                if (jsonBytes == 0) {
+                    jsonBytes = bytes.length;
+                    jsonMicros = micros;
+                }
+                System.out.printf("  %-8s %10d bytes (%5.1f%%)  %10.1f us/op (%5.1f%%)%n", mapper.getKey(),
+                        bytes.length, 100.0 * bytes.length / jsonBytes, micros, 100.0 * micros / jsonMicros);
+            }
+        }
+    }
+
+    /*
+     * 与应用内JacksonConfig相同的配置，只换底层格式
+     */
+    private static ObjectMapper mapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false))
+                .factory(factory)
+                .build();
+    }
+
+    private static List<AchievementTable> achievements(int count) {
+        List<AchievementTable> achievements = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            AchievementTable achievement = new AchievementTable();
+            achievement.setAchievementId(i);
+            achievement.setAchievementName("基于深度学习的遥感影像识别方法" + i);
+            achievement.setAchievementCategory(i % 3 == 0 ? "专利" : i % 3 == 1 ? "论文" : "其他成果");
+            achievement.setAchievementForm("研究报告");
+            achievement.setAchievementBelongingOrganization(i % 20);
+            achievement.setProjectId(i % 50);
+            achievement.setAchievementVersion("v1." + (i % 5));
+            achievement.setAchievementIntro("本成果提出了一种面向多源遥感数据的目标识别方法，通过多尺度特征融合提升小目标检测精度。");
+            achievement.setUserId(i % 100);
+            achievement.setUploadTime("2024-12-11 10:50:06");
+            achievement.setAchievementDownloadCount(i * 7 % 1000);
+            achievement.setSearchCount(i * 13 % 5000);
+            achievement.setTableStatus(true);
+            achievement.setOrganizationName("测绘研究所");
+            achievement.setUserName("user" + (i % 100));
+            achievement.setAuditFlag(1);
+            achievement.setSubjectCategory("测绘科学与技术");
+            achievement.setTechnologyCategory("人工智能");
+            achievements.add(achievement);
+        }
+        return achievements;
+    }
+
+    private static List<Map<String, Object>> statistics(int days, int hours) {
+        List<Map<String, Object>> statistics = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            for (int hour = 0; hour < hours; hour++) {
+                Map<String, Object> point = new LinkedHashMap<>();
+                point.put("day", day);
+                point.put("hour", hour);
+                point.put("downloadCount", (day * 31 + hour * 7) % 500);
+                point.put("searchCount", (day * 17 + hour * 3) % 2000);
+                point.put("ratio", ((day + hour) % 100) / 100.0);
+                statistics.add(point);
+            }
+        }
+        return statistics;
+    }
+}